@@ -1,54 +1,90 @@
 package data.analyse;
 
-import org.streaminer.stream.quantile.Frugal2U;
-import org.streaminer.stream.quantile.IQuantiles;
-import org.streaminer.stream.quantile.QuantilesException;
-import org.streaminer.stream.quantile.WindowSketchQuantiles;
-
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Created by jeka01 on 06/09/16.
+ *
+ * Analyses the output of a benchmark run: a single file or a directory tree of part files as written by
+ * Flink's RollingSink, Storm's HdfsBolt or Spark's saveAsTextFiles. Files are parsed in parallel on a fork/join
+ * pool, one {@link OutputStats} per file, and the per-file stats are merged into one report.
  */
-public class DataAnalyser {
+public class DataAnalyser extends RecursiveTask<OutputStats> {
 
-    private BufferedReader br = null;
-    private  double[] quantiles;
-    private IQuantiles<Integer> instance;
+    private final List<Path> files;
+    private final String engine;
 
-    private DataAnalyser(String inputFilePath, double[] quantiles) throws FileNotFoundException {
-        br = new BufferedReader(new FileReader(inputFilePath));
-        this.quantiles = quantiles;
+    private DataAnalyser(List<Path> files, String engine) {
+        this.files = files;
+        this.engine = engine;
     }
 
-    public static void analyse(String inputFilePath,double[] quantiles) throws IOException, QuantilesException {
-        DataAnalyser analyser = new DataAnalyser(inputFilePath, quantiles);
-        analyser.insertValues();
-        analyser.printQuantiles();
-    }
-    private void printQuantiles() throws QuantilesException {
-        for (double q : quantiles) {
-            System.out.println(q + ": " + instance.getQuantile(q));
+    @Override
+    protected OutputStats compute() {
+        if (files.size() == 1) {
+            OutputStats stats = new OutputStats();
+            try {
+                new OutputFileParser(engine).parse(files.get(0), stats);
+            } catch (IOException e) {
+                throw new UncheckedIOException(files.get(0).toString(), e);
+            }
+            return stats;
         }
-
+        if (files.isEmpty()) {
+            return new OutputStats();
+        }
+        int middle = files.size() / 2;
+        DataAnalyser left = new DataAnalyser(files.subList(0, middle), engine);
+        DataAnalyser right = new DataAnalyser(files.subList(middle, files.size()), engine);
+        left.fork();
+        OutputStats stats = right.compute();
+        return left.join().merge(stats);
     }
 
-    private void insertValues() throws QuantilesException, IOException {
-        instance = new Frugal2U(quantiles, 0);
-        String sCurrentLine;
-        while ((sCurrentLine = br.readLine()) != null) {
-            Integer i = new Integer(sCurrentLine);
-            instance.offer(i);
+    /**
+     * Output files below {@code inputPath}. Like manager.py's concat_files_in_dir, anything under
+     * {@code _temporary} is skipped, as are hidden and marker files such as {@code _SUCCESS} or {@code .crc}.
+     */
+    public static List<Path> outputFiles(String inputPath) throws IOException {
+        try (Stream<Path> paths = Files.walk(Paths.get(inputPath))) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(path -> !path.toString().contains("_temporary"))
+                    .filter(path -> !path.getFileName().toString().startsWith(".")
+                            && !path.getFileName().toString().startsWith("_"))
+                    .sorted()
+                    .collect(Collectors.toCollection(ArrayList::new));
         }
     }
 
+    public static OutputStats analyse(String inputPath, String engine) throws IOException {
+        List<Path> files = outputFiles(inputPath);
+        System.out.println("Analysing " + files.size() + " files under " + inputPath);
+        return ForkJoinPool.commonPool().invoke(new DataAnalyser(files, engine));
+    }
 
+    public static void analyse(String inputPath) throws IOException {
+        analyse(inputPath, "flink").print();
+    }
 
-    public static void main(String[] args) throws IOException, QuantilesException {
-        DataAnalyser.analyse("/Users/jeka01/Documents/workspaces/benchmarking/streaming-benchmarks-master/output/flink/flink-8000-2000.txt",
-                new double[]{0.05, 0.25, 0.5, 0.75, 0.95});
+    /**
+     * Arguments: output file or directory and optionally the engine that wrote the output, storm, flink or spark
+     * (default flink).
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: DataAnalyser <output file or directory> [storm|flink|spark]");
+            System.exit(1);
+        }
+        analyse(args[0], args.length > 1 ? args[1] : "flink").print();
     }
 }
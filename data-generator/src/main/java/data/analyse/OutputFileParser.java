@@ -0,0 +1,156 @@
+package data.analyse;
+
+import benchmark.common.codec.GeoKeys;
+import benchmark.common.sink.MappedLatencyLog;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Streams one engine output file into {@link OutputStats}. The lines written by the engines are recognised by
+ * their first field, tuple parentheses are ignored:
+ * <ul>
+ *   <li>a single number: the latency, as written to the latency sink</li>
+ *   <li>key first: windowed aggregation output, the latency is the second field, the event timestamp is
+ *   field 5 for Flink and Spark ({@code (geo,latency,price,count,ts,start_ts)}) and field 3 for Storm
+ *   ({@code geo,latency,ts,avg_price,window_size,start_ts}) and the send time of the input is field 6</li>
+ *   <li>number first: join output {@code (latency,ts,start_ts)}</li>
+ * </ul>
+ * The latency against the send time is derived from the event timestamp and start_ts where both are present.
+ * Lines are parsed from a reused byte buffer, only keys outside {@link GeoKeys} allocate. Binary
+ * {@link MappedLatencyLog} files of the {@code file} result sink are read record by record.
+ */
+public class OutputFileParser {
+    public static final String STORM = "storm";
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final int MAX_FIELDS = 8;
+
+    private static final int KEYED_START_TS_FIELD = 5;
+    private static final int JOIN_START_TS_FIELD = 2;
+
+    private final int keyedTsField;
+    private byte[] buffer = new byte[BUFFER_BYTES];
+    private final int[] fieldStart = new int[MAX_FIELDS];
+    private final int[] fieldEnd = new int[MAX_FIELDS];
+
+    /**
+     * @param engine engine that wrote the output, selects the timestamp column of aggregation records
+     */
+    public OutputFileParser(String engine) {
+        this.keyedTsField = STORM.equals(engine) ? 2 : 4;
+    }
+
+    public void parse(Path file, OutputStats stats) throws IOException {
+        if (MappedLatencyLog.isLog(file)) {
+            MappedLatencyLog.read(file, (latency, ts, startTs) -> stats.add(null, latency, ts, startTs));
+            return;
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            int filled = 0;
+            int read;
+            while ((read = in.read(buffer, filled, buffer.length - filled)) >= 0) {
+                filled += read;
+                int lineStart = 0;
+                for (int i = 0; i < filled; i++) {
+                    if (buffer[i] == '\n') {
+                        parseLine(lineStart, i, stats);
+                        lineStart = i + 1;
+                    }
+                }
+                filled -= lineStart;
+                System.arraycopy(buffer, lineStart, buffer, 0, filled);
+                if (filled == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+            }
+            if (filled > 0) {
+                parseLine(0, filled, stats);
+            }
+        }
+    }
+
+    private void parseLine(int start, int end, OutputStats stats) {
+        int fields = 0;
+        int fieldFrom = start;
+        for (int i = start; i <= end && fields < MAX_FIELDS; i++) {
+            if (i == end || buffer[i] == ',') {
+                fieldStart[fields] = fieldFrom;
+                fieldEnd[fields] = i;
+                trim(fields);
+                fields++;
+                fieldFrom = i + 1;
+            }
+        }
+        if (fields == 1 && fieldStart[0] == fieldEnd[0]) {
+            return;
+        }
+        try {
+            if (fields == 1) {
+                stats.add(null, number(0), -1, -1);
+            } else if (!isNumber(0)) {
+                stats.add(key(0), number(1), fields > keyedTsField ? number(keyedTsField) : -1,
+                        fields > KEYED_START_TS_FIELD ? number(KEYED_START_TS_FIELD) : -1);
+            } else {
+                stats.add(null, number(0), number(1), fields > JOIN_START_TS_FIELD ? number(JOIN_START_TS_FIELD) : -1);
+            }
+        } catch (NumberFormatException e) {
+            stats.addMalformed();
+        }
+    }
+
+    private void trim(int field) {
+        while (fieldStart[field] < fieldEnd[field] && isBlank(buffer[fieldStart[field]])) {
+            fieldStart[field]++;
+        }
+        while (fieldEnd[field] > fieldStart[field] && isBlank(buffer[fieldEnd[field] - 1])) {
+            fieldEnd[field]--;
+        }
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '(' || b == ')';
+    }
+
+    private boolean isNumber(int field) {
+        int i = fieldStart[field];
+        if (i < fieldEnd[field] && buffer[i] == '-') {
+            i++;
+        }
+        return i < fieldEnd[field] && buffer[i] >= '0' && buffer[i] <= '9';
+    }
+
+    private long number(int field) {
+        int i = fieldStart[field];
+        boolean negative = i < fieldEnd[field] && buffer[i] == '-';
+        if (negative) {
+            i++;
+        }
+        if (i == fieldEnd[field]) {
+            throw new NumberFormatException("Empty field");
+        }
+        long value = 0;
+        for (; i < fieldEnd[field]; i++) {
+            byte b = buffer[i];
+            if (b < '0' || b > '9') {
+                throw new NumberFormatException("Not a number in field " + field);
+            }
+            value = value * 10 + (b - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    private String key(int field) {
+        int length = fieldEnd[field] - fieldStart[field];
+        if (length == 2) {
+            int id = GeoKeys.id((char) buffer[fieldStart[field]], (char) buffer[fieldStart[field] + 1]);
+            if (id >= 0) {
+                return GeoKeys.name(id);
+            }
+        }
+        return new String(buffer, fieldStart[field], length, StandardCharsets.UTF_8);
+    }
+}
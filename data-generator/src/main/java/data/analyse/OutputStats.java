@@ -0,0 +1,113 @@
+package data.analyse;
+
+import benchmark.common.latency.LatencyRecorder;
+import data.sink.model.CalculateLatency;
+import org.HdrHistogram.Histogram;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencies of a set of engine output records: the overall distribution, outputs and latency per second of
+ * output time and the distribution per key. Filled by one thread, then merged with the stats of other files.
+ */
+public class OutputStats {
+    private static final int COUNT = 0;
+    private static final int LATENCY_SUM = 1;
+    private static final int LATENCY_MAX = 2;
+
+    private CalculateLatency latency;
+    private TreeMap<Long, long[]> timeline = new TreeMap<>();
+    private Map<String, Histogram> perKey = new HashMap<>();
+    private long records = 0;
+    private long malformed = 0;
+
+    public OutputStats() {
+        this.latency = new CalculateLatency();
+    }
+
+    /**
+     * @param key     output key, null if the record has none
+     * @param eventTs event timestamp the latency was computed from, or -1 if the record has none
+     * @param startTs send time of the input the result was computed from, or -1 if the record has none
+     */
+    public void add(String key, long latencyMs, long eventTs, long startTs) {
+        records++;
+        if (eventTs >= 0 && startTs >= 0) {
+            latency.insertToModel(latencyMs, latencyMs + eventTs - startTs);
+        } else {
+            latency.insertToModel(latencyMs);
+        }
+        if (eventTs >= 0) {
+            long second = TimeUnit.MILLISECONDS.toSeconds(eventTs + latencyMs);
+            long[] bucket = timeline.get(second);
+            if (bucket == null) {
+                bucket = new long[3];
+                timeline.put(second, bucket);
+            }
+            bucket[COUNT]++;
+            bucket[LATENCY_SUM] += latencyMs;
+            bucket[LATENCY_MAX] = Math.max(bucket[LATENCY_MAX], latencyMs);
+        }
+        if (key != null) {
+            Histogram histogram = perKey.get(key);
+            if (histogram == null) {
+                histogram = new Histogram(LatencyRecorder.SIGNIFICANT_DIGITS);
+                perKey.put(key, histogram);
+            }
+            histogram.recordValue(Math.max(latencyMs, 0));
+        }
+    }
+
+    public void addMalformed() {
+        malformed++;
+    }
+
+    public OutputStats merge(OutputStats other) {
+        latency.merge(other.latency);
+        for (Map.Entry<Long, long[]> entry : other.timeline.entrySet()) {
+            long[] bucket = timeline.get(entry.getKey());
+            if (bucket == null) {
+                timeline.put(entry.getKey(), entry.getValue());
+            } else {
+                bucket[COUNT] += entry.getValue()[COUNT];
+                bucket[LATENCY_SUM] += entry.getValue()[LATENCY_SUM];
+                bucket[LATENCY_MAX] = Math.max(bucket[LATENCY_MAX], entry.getValue()[LATENCY_MAX]);
+            }
+        }
+        for (Map.Entry<String, Histogram> entry : other.perKey.entrySet()) {
+            Histogram histogram = perKey.get(entry.getKey());
+            if (histogram == null) {
+                perKey.put(entry.getKey(), entry.getValue());
+            } else {
+                histogram.add(entry.getValue());
+            }
+        }
+        records += other.records;
+        malformed += other.malformed;
+        return this;
+    }
+
+    public void print() {
+        System.out.println(records + " records, " + malformed + " malformed lines");
+        latency.printResults();
+        if (!timeline.isEmpty()) {
+            System.out.println("second, outputs, mean latency, max latency");
+            long first = timeline.firstKey();
+            for (Map.Entry<Long, long[]> entry : timeline.entrySet()) {
+                long[] bucket = entry.getValue();
+                System.out.println((entry.getKey() - first) + ", " + bucket[COUNT] + ", "
+                        + bucket[LATENCY_SUM] / bucket[COUNT] + ", " + bucket[LATENCY_MAX]);
+            }
+        }
+        if (!perKey.isEmpty()) {
+            System.out.println("key, latency");
+            for (String key : new TreeSet<>(perKey.keySet())) {
+                System.out.println(key + ", " + LatencyRecorder.summary(perKey.get(key)));
+            }
+        }
+    }
+}
@@ -1,71 +1,61 @@
 package data.sink.model;
 
-import cern.jet.random.Normal;
-import cern.jet.random.engine.MersenneTwister64;
-import cern.jet.random.engine.RandomEngine;
-import org.jblas.util.Random;
-import org.streaminer.stream.quantile.Frugal2U;
-import org.streaminer.stream.quantile.IQuantiles;
-import org.streaminer.stream.quantile.QuantilesException;
+import benchmark.common.latency.LatencyRecorder;
+import org.HdrHistogram.Histogram;
 
 /**
  * Created by jeka01 on 05/09/16.
+ *
+ * Keeps two latency distributions of the results: against the event timestamp {@code ts}, what the engines
+ * measure, and against the time the generator actually sent the input, {@code send_ts}. With
+ * {@code datagenerator.timestamp: intended} the first is the latency against the intended emission time, free
+ * of coordinated omission, and the second the latency a closed loop measurement would have reported.
  */
 public class CalculateLatency {
-    private double[] quantiles = new double[]{0.05, 0.25, 0.5, 0.75, 0.95};
-    private IQuantiles<Integer> instance;
-    public CalculateLatency(){
-         instance = new Frugal2U(quantiles, 0);
-        RandomEngine r = new MersenneTwister64(0);
-        Normal dist = new Normal(100, 50, r);
-
+    private LatencyRecorder recorded = new LatencyRecorder();
+    private LatencyRecorder sent = new LatencyRecorder();
+
+    /**
+     * Records a latency whose send time is not known.
+     */
+    public void insertToModel(long val) {
+        recorded.recordValue(val);
     }
 
-    public  void insertToModel(int val)  {
-        instance.offer(val);
+    /**
+     * @param sendLatency latency of the same result against the send time of its input
+     */
+    public void insertToModel(long val, long sendLatency) {
+        recorded.recordValue(val);
+        sent.recordValue(sendLatency);
     }
 
-    public void printResults(){
-        try {
-            for (double q : quantiles) {
-                System.out.println(q + ": " + instance.getQuantile(q));
-            }
-        }
-        catch (Exception e){
-            e.printStackTrace();
+    /**
+     * Prints the latencies inserted since the previous call, they are kept for {@link #printResults()}.
+     */
+    public void printInterval(){
+        Histogram interval = recorded.intervalSnapshot();
+        System.out.println("interval " + LatencyRecorder.summary(interval));
+        Histogram sentInterval = sent.intervalSnapshot();
+        if (sentInterval.getTotalCount() > 0) {
+            System.out.println("interval against send time " + LatencyRecorder.summary(sentInterval));
         }
-
     }
 
+    /**
+     * Adds the latencies of another calculator, e.g. of another sink connection, to this one.
+     */
+    public void merge(CalculateLatency other){
+        recorded.merge(other.recorded);
+        sent.merge(other.sent);
+    }
 
-//    public static void main(String[] args){
-//        CalculateLatency cal = new CalculateLatency();
-//        long start = System.currentTimeMillis();
-//        long end = start + 10*1000; // 60 seconds * 1000 ms/sec
-//        while (System.currentTimeMillis() < end)
-//        {
-//            int i = cal.randInt(0,5);
-//            cal.insertToModel(i);
-//        }
-//        cal.printResults();
-//
-//    }
-//
-//    public  int randInt(int min, int max) {
-//
-//        // NOTE: This will (intentionally) not run as written so that folks
-//        // copy-pasting have to think about how to initialize their
-//        // Random instance.  Initialization of the Random instance is outside
-//        // the main scope of the question, but some decent options are to have
-//        // a field that is initialized once and then re-used as needed or to
-//        // use ThreadLocalRandom (if using at least Java 1.7).
-//        Random rand = new Random();
-//
-//        // nextInt is normally exclusive of the top value,
-//        // so add 1 to make it inclusive
-//        int randomNum = rand.nextInt((max - min) + 1) + min;
-//
-//        return randomNum;
-//    }
-
+    public void printResults(){
+        recorded.intervalSnapshot();
+        System.out.println("recorded " + LatencyRecorder.summary(recorded.total()));
+        sent.intervalSnapshot();
+        if (sent.total().getTotalCount() > 0) {
+            System.out.println("against send time " + LatencyRecorder.summary(sent.total()));
+        }
+    }
 }
@@ -5,45 +5,217 @@ import com.esotericsoftware.yamlbeans.YamlReader;
 import data.sink.model.CalculateLatency;
 
 import java.io.*;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Latency sink the engines write their output latencies to, one line per result with its latency against the event
+ * timestamp and, optionally after a comma, its latency against the send time of its input. A single selector
+ * thread serves any number of engine connections, parses the digits straight from the socket buffers and prints
+ * a report of both latencies and the throughput every {@code datasinksocket.report.interval.ms}, plus one for the
+ * whole run when the sink stops. The sink runs until it is killed, or for {@code datasinksocket.duration.s} if set.
+ */
 public class SinkSocket extends Thread {
-    private ServerSocket serverSocket;
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+
+    private ServerSocketChannel serverSocket;
+    private Selector selector;
+    private long reportInterval;
+    private long duration;
+    private CalculateLatency latencyCalculator;
+    private int connections = 0;
+    private long received = 0;
+    private long malformed = 0;
+    private volatile boolean running = true;
 
     public SinkSocket(int port) throws IOException {
-        serverSocket = new ServerSocket(port);
-        serverSocket.setSoTimeout(100000);
+        this(port, 1000, 0);
+    }
+
+    /**
+     * @param reportInterval milliseconds between two interval reports
+     * @param duration       milliseconds after which the sink stops, 0 to run until it is killed
+     */
+    public SinkSocket(int port, long reportInterval, long duration) throws IOException {
+        super("latency-sink");
+        this.reportInterval = reportInterval;
+        this.duration = duration;
+        this.latencyCalculator = new CalculateLatency();
+        selector = Selector.open();
+        serverSocket = ServerSocketChannel.open();
+        serverSocket.socket().bind(new InetSocketAddress(port));
+        serverSocket.configureBlocking(false);
+        serverSocket.register(selector, SelectionKey.OP_ACCEPT);
     }
 
     public void run() {
-        while (true) {
-            try {
-                System.out.println("Waiting for client on port " + serverSocket.getLocalPort() + "...");
-                Socket client = serverSocket.accept();
-                System.out.println("Just connected to " + client.getRemoteSocketAddress());
-                InputStreamReader inputstreamreader = new InputStreamReader(client.getInputStream());
-                BufferedReader bufferedreader = new BufferedReader(inputstreamreader);
-
-                CalculateLatency latencyCalculator = new CalculateLatency();
-                long start = System.currentTimeMillis();
-                long end = start + 2*1000; // 10 seconds * 1000 ms/sec
-                while (System.currentTimeMillis() < end)
-                {
-                    String s = bufferedreader.readLine();
-                    latencyCalculator.insertToModel(Integer.parseInt(s));
+        System.out.println("Waiting for clients on port " + serverSocket.socket().getLocalPort() + "...");
+        long start = System.currentTimeMillis();
+        long nextReport = start + reportInterval;
+        long lastReport = start;
+        long lastReceived = 0;
+        try {
+            while (running && (duration == 0 || System.currentTimeMillis() - start < duration)) {
+                selector.select(Math.max(1, nextReport - System.currentTimeMillis()));
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isReadable()) {
+                        read(key);
+                    }
                 }
-                latencyCalculator.printResults();
-                System.exit(1);
-
+                long now = System.currentTimeMillis();
+                if (now >= nextReport) {
+                    System.out.println(String.format("%d s: %d latencies/s over %d connections",
+                            TimeUnit.MILLISECONDS.toSeconds(now - start),
+                            (received - lastReceived) * 1000 / Math.max(now - lastReport, 1), connections));
+                    latencyCalculator.printInterval();
+                    lastReceived = received;
+                    lastReport = now;
+                    nextReport = now + reportInterval;
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            printResults(System.currentTimeMillis() - start);
+            try {
+                selector.close();
+                serverSocket.close();
             } catch (IOException e) {
                 e.printStackTrace();
-                break;
             }
         }
     }
 
+    /**
+     * Stops the selector loop, the final report is printed by the sink thread.
+     */
+    public void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void printResults(long runtime) {
+        System.out.println("---SINK ENDED--- after " + TimeUnit.MILLISECONDS.toSeconds(runtime) + " seconds, "
+                + received + " latencies, " + malformed + " malformed lines, "
+                + received * 1000 / Math.max(runtime, 1) + " latencies/s");
+        latencyCalculator.printResults();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel client = serverSocket.accept();
+        if (client == null) {
+            return;
+        }
+        client.configureBlocking(false);
+        client.register(selector, SelectionKey.OP_READ, new LineParser());
+        connections++;
+        System.out.println("Just connected to " + client.getRemoteAddress());
+    }
+
+    private void read(SelectionKey key) {
+        SocketChannel client = (SocketChannel) key.channel();
+        LineParser parser = (LineParser) key.attachment();
+        try {
+            int read;
+            while ((read = client.read(parser.buffer)) > 0) {
+                parser.buffer.flip();
+                parser.parse(parser.buffer);
+                parser.buffer.clear();
+            }
+            if (read < 0) {
+                parser.finish();
+                close(key);
+            }
+        } catch (IOException e) {
+            System.out.println("Connection lost: " + e.getMessage());
+            close(key);
+        }
+    }
+
+    private void close(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        connections--;
+    }
+
+    /**
+     * Parses the newline separated lines of one connection, one or two comma separated integers each. A number
+     * split across two reads is carried over in the parser state; lines with anything but optional signs, digits,
+     * blanks and a single comma between two numbers are counted as malformed.
+     */
+    private class LineParser {
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_BYTES);
+        private long value = 0;
+        private long first = 0;
+        private boolean negative = false;
+        private boolean digits = false;
+        private boolean second = false;
+        private boolean invalid = false;
+
+        void parse(ByteBuffer bytes) {
+            while (bytes.hasRemaining()) {
+                byte b = bytes.get();
+                if (b >= '0' && b <= '9') {
+                    value = value * 10 + (b - '0');
+                    digits = true;
+                } else if (b == '\n') {
+                    endLine();
+                } else if (b == ',' && digits && !second) {
+                    first = negative ? -value : value;
+                    second = true;
+                    value = 0;
+                    negative = false;
+                    digits = false;
+                } else if (b == '-' && !digits && !negative) {
+                    negative = true;
+                } else if (b != ' ' && b != '\r' && b != '\t') {
+                    invalid = true;
+                }
+            }
+        }
+
+        void finish() {
+            if (digits || negative || second || invalid) {
+                endLine();
+            }
+        }
+
+        private void endLine() {
+            if (digits && !invalid) {
+                if (second) {
+                    latencyCalculator.insertToModel(first, negative ? -value : value);
+                } else {
+                    latencyCalculator.insertToModel(negative ? -value : value);
+                }
+                received++;
+            } else if (negative || second || invalid) {
+                malformed++;
+            }
+            value = 0;
+            first = 0;
+            negative = false;
+            digits = false;
+            second = false;
+            invalid = false;
+        }
+    }
+
     public static void main(String[] args) throws YamlException, FileNotFoundException {
         if (args.length != 1) {
             System.out.println("Configuration file argument is needed");
@@ -55,9 +227,21 @@ public class SinkSocket extends Thread {
         Map map = (Map) object;
 
         int port = new Integer(map.get("datasinksocket.port").toString());
+        long reportInterval = new Long(map.getOrDefault("datasinksocket.report.interval.ms", 1000).toString());
+        long duration = TimeUnit.SECONDS.toMillis(new Long(map.getOrDefault("datasinksocket.duration.s", 0).toString()));
         try {
-            Thread t = new SinkSocket(port);
-            t.start();
+            final SinkSocket sink = new SinkSocket(port, reportInterval, duration);
+            sink.start();
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+                public void run() {
+                    sink.shutdown();
+                    try {
+                        sink.join(TimeUnit.SECONDS.toMillis(5));
+                    } catch (InterruptedException e) {
+                        // exiting anyway
+                    }
+                }
+            });
         } catch (IOException e) {
             e.printStackTrace();
         }
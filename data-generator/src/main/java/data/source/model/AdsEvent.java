@@ -4,13 +4,10 @@ package data.source.model;
  * Created by jeka01 on 02/09/16.
  */
 
-import org.fluttercode.datafactory.impl.DataFactory;
-import org.json.JSONObject;
+import benchmark.common.codec.GeoKeys;
 
 import java.io.Serializable;
-import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Created by jeka01 on 31/08/16.
@@ -18,45 +15,63 @@ import java.util.concurrent.ThreadLocalRandom;
 public class AdsEvent implements Serializable {
 
     public AdsEvent( Double partition) {
+        this(partition, 0, 1);
+    }
+
+    /**
+     * Splits the keys selected by {@code partition} into {@code slices} contiguous ranges and generates the
+     * {@code slice}-th one, so concurrent producers emit disjoint keys.
+     *
+     * @throws IllegalArgumentException if there are more slices than keys in the partition
+     */
+    public AdsEvent(Double partition, int slice, int slices) {
+        int from;
+        int count;
         if (partition > 0){
-            geoList = Arrays.copyOfRange(geoListAll, 0, (int) (geoListAll.length * partition));
+            from = 0;
+            count = (int) (geoListAll.length * partition);
         } else{
-            geoList = Arrays.copyOfRange(geoListAll, (int) (geoListAll.length * (1 + partition)), geoListAll.length);
+            from = (int) (geoListAll.length * (1 + partition));
+            count = geoListAll.length - from;
         }
-
+        if (count < slices) {
+            throw new IllegalArgumentException("Cannot split the " + count + " keys of partition " + partition
+                    + " into " + slices + " disjoint slices, use fewer producers or a larger partition");
+        }
+        geoOffset = from + count * slice / slices;
+        geoCount = from + count * (slice + 1) / slices - geoOffset;
+        rand = new Random(93285L + slice);
     }
 
     private int geoIndex = 0;
     private Random rand = new Random(93285L);
     //private Random rand = new Random();
-    private String[] geoListAll = {
-            "AF", "AX", "AL", "DZ", "AS", "AD", "AO", "AI", "AQ", "AG", "AR", "AM", "AW", "AC", "AU", "AT", "AZ", "BS", "BH", "BB",
-            "BD", "BY", "BE", "BZ", "BJ", "BM", "BT", "BW", "BO", "BA", "BV", "BR", "IO", "BN", "BG", "BF", "BI", "KH", "CM", "CA",
-            "CV", "KY", "CF", "TD", "CL", "CN", "CX", "CC", "CO", "KM", "CG", "CD", "CK", "CR", "CI", "HR", "CU", "CY", "CZ", "CS",
-            "DK", "DJ", "DM", "DO", "TP", "EC", "EG", "SV", "GQ", "ER", "EE", "ET", "EU", "FK", "FO", "FJ", "FI", "FR", "FX", "GF",
-            "PF", "TF", "MK", "GA", "GM", "GE", "DE", "GH", "GI", "GB", "GR", "GL", "GD", "GP", "GU", "GT", "GG", "GN", "GW", "GY"};
-    private String[] geoList = null;
+    private String[] geoListAll = GeoKeys.ALL;
+    private int geoOffset;
+    private int geoCount;
 
-    public String generateJson() {
+    public void generate(Event event) {
 
         //geo
-        String geo = null;
-            geoIndex = geoIndex % geoList.length;
-            geo = geoList[geoIndex];
+            geoIndex = geoIndex % geoCount;
+            event.key = geoOffset + geoIndex;
             geoIndex++;
 
         //price
         float minX = 5.0f;
         float maxX = 100.0f;
-        float finalX = rand.nextFloat() * (maxX - minX) + minX;
-        String price = Float.toString(finalX);
+        event.price = rand.nextFloat() * (maxX - minX) + minX;
 
-        String json = "{ \"key\":\"" + geo + "\",\"value\":\"" + price + "\"";
+        event.ts = System.currentTimeMillis();
+        event.sendTs = event.ts;
+    }
 
-            return json +  ",\"ts\": \"" + System.currentTimeMillis() + "\"}";
+    public String generateJson() {
+        Event event = new Event();
+        generate(event);
+        return event.toJson();
     }
 
 
 
 }
-
@@ -0,0 +1,44 @@
+package data.source.model;
+
+import benchmark.common.codec.BinaryEventCodec;
+import benchmark.common.codec.JsonEventCodec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Mutable ad event produced by {@link AdsEvent} and encoded by the generator's sender thread.
+ */
+public class Event {
+    /**
+     * Upper bound of the bytes {@link #writeJsonLine(ByteBuffer)} writes for one event.
+     */
+    public static final int MAX_JSON_LINE_BYTES = 128;
+
+    public int key;
+    public float price;
+    public long ts;
+    /**
+     * Wall clock time at which the sender encoded the event, sent next to {@link #ts}.
+     */
+    public long sendTs;
+    /**
+     * {@code System.nanoTime()} at which the rate schedule intended to emit the event, never sent to the engines.
+     */
+    public long intended;
+
+    public String toJson() {
+        ByteBuffer line = ByteBuffer.allocate(MAX_JSON_LINE_BYTES);
+        JsonEventCodec.encode(line, key, price, ts, sendTs);
+        return new String(line.array(), 0, line.position(), StandardCharsets.US_ASCII);
+    }
+
+    public void writeJsonLine(ByteBuffer out) {
+        JsonEventCodec.encode(out, key, price, ts, sendTs);
+        out.put((byte) '\n');
+    }
+
+    public void writeBinary(ByteBuffer out) {
+        BinaryEventCodec.encode(out, key, price, ts, sendTs);
+    }
+}
@@ -1,14 +1,22 @@
 package data.source.socket;
 
+import benchmark.common.codec.BinaryEventCodec;
 import com.esotericsoftware.yamlbeans.YamlReader;
 import data.source.model.AdsEvent;
+import data.source.model.Event;
+import org.HdrHistogram.Histogram;
 
 import java.io.*;
 import java.net.InetAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
 import java.util.concurrent.*;
 import java.util.logging.FileHandler;
 import java.util.logging.Logger;
@@ -18,20 +26,42 @@ import java.util.logging.SimpleFormatter;
  * Created by jeka01 on 02/09/16.
  */
 public class DataGenerator extends Thread {
+    /**
+     * {@code datagenerator.timestamp} values: stamp {@code ts} when the event is created, with the time the rate
+     * schedule intended to emit it, or when the sender encodes it. Every event also carries the time the sender
+     * encoded it as {@code send_ts}.
+     */
+    static final String CREATED_TS = "created";
+    static final String INTENDED_TS = "intended";
+    static final String SEND_TS = "send";
+
     private int benchmarkCount;
-    private long sleepTime;
+    private RatePacer pacer;
+    private boolean intendedTs;
+    private long disorderMs;
+    private double disorderFraction;
+    private Random disorder = new Random(7841L);
+    // wall clock and nanoTime read together, to turn intended nanoTimes into epoch milliseconds
+    private long epochMillis;
+    private long epochNanos;
     private static Double partition;
-    private BlockingQueue<String> buffer;
+    private List<EventRingBuffer> buffers;
     private AdsEvent adsEvent;
     private HashMap<Long, Integer> bufferSizeAtTime = new HashMap<>();
 
     private HashMap<Long,Integer> dataGenRate = new HashMap<>();
 
-    private DataGenerator(HashMap conf, BlockingQueue<String> buffer) throws IOException {
-        this.buffer = buffer;
+    /**
+     * @param buffers rings of the connections this producer feeds, each receives {@code benchmarking.count} events
+     */
+    private DataGenerator(HashMap conf, List<EventRingBuffer> buffers, AdsEvent adsEvent) throws IOException {
+        this.buffers = buffers;
         this.benchmarkCount = new Integer(conf.get("benchmarking.count").toString());
-        this.sleepTime = new Long(conf.get("datagenerator.sleep").toString());
-        adsEvent = new AdsEvent( partition);
+        this.pacer = new RatePacer(RateProfile.fromConfig(conf));
+        this.intendedTs = INTENDED_TS.equals(conf.getOrDefault("datagenerator.timestamp", CREATED_TS).toString());
+        this.disorderMs = new Long(conf.getOrDefault("datagenerator.disorder.ms", 0).toString());
+        this.disorderFraction = new Double(conf.getOrDefault("datagenerator.disorder.fraction", 1).toString());
+        this.adsEvent = adsEvent;
     }
 
     public void run() {
@@ -44,39 +74,106 @@ public class DataGenerator extends Thread {
     }
 
 
+    /**
+     * Puts one event into every ring. A producer with a single ring waits for a free slot; one that feeds several
+     * does not let a slow connection hold back the others, it skips the event for a full ring and counts it.
+     *
+     * @return the number of events published
+     */
+    private int nextEvent(long intended) {
+        int published = 0;
+        for (EventRingBuffer buffer : buffers) {
+            Event event = buffers.size() == 1 ? buffer.claim() : buffer.tryClaim();
+            if (event == null) {
+                buffer.skip();
+                continue;
+            }
+            adsEvent.generate(event);
+            event.intended = intended;
+            if (intendedTs) {
+                event.ts = epochMillis + TimeUnit.NANOSECONDS.toMillis(intended - epochNanos);
+            }
+            disorder(event);
+            buffer.publish();
+            published++;
+        }
+        return published;
+    }
+
+    /**
+     * Moves the timestamp of {@code datagenerator.disorder.fraction} of the events up to
+     * {@code datagenerator.disorder.ms} into the past, so that event time engines see out of order input.
+     * Timestamps stamped by the sender, {@code datagenerator.timestamp: send}, stay in order.
+     */
+    private void disorder(Event event) {
+        if (disorderMs > 0 && disorder.nextDouble() < disorderFraction) {
+            event.ts -= (long) (disorder.nextDouble() * (disorderMs + 1));
+        }
+    }
+
+    private int bufferSize() {
+        int size = 0;
+        for (EventRingBuffer buffer : buffers) {
+            size += buffer.size();
+        }
+        return size;
+    }
+
     private void sendTuples(int tupleCount) throws Exception {
         long currTime = System.currentTimeMillis();
+        int generated = 0;
         int tempVal = 0;
-        if (sleepTime != 0) {
-            for (int i = 0; i < tupleCount; ) {
-                Thread.sleep(sleepTime);
-                for (int b = 0; b < 1 && i < tupleCount; b++, i++) {
-                    buffer.put(adsEvent.generateJson());
-                    if (i % 1000 == 0){
-                        long interval = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
-                        int bufferSize = buffer.size();
-                        bufferSizeAtTime.put(interval, bufferSize);
-                        dataGenRate.put(interval, i - tempVal);
-                        tempVal = i;
-                    }
-                }
+        epochMillis = System.currentTimeMillis();
+        epochNanos = System.nanoTime();
+        pacer.start();
+        for (int i = 0; i < tupleCount; i++) {
+            generated += nextEvent(pacer.acquire());
+            if (i % 1000 == 0){
+                long interval = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+                int bufferSize = bufferSize();
+                bufferSizeAtTime.put(interval, bufferSize);
+                dataGenRate.put(interval, generated - tempVal);
+                tempVal = generated;
+            }
+        }
+        for (EventRingBuffer buffer : buffers) {
+            buffer.close();
+        }
+        long runtime = Math.max(System.currentTimeMillis() - currTime, 1);
+        System.out.println("Benchmark producer data rate is " + generated * 1000L / runtime + " ps");
+    }
+
+    /**
+     * Accepts the engine connections: one on each of {@code datasourcesocket.ports} when
+     * {@code datagenerator.listen} is "ports", otherwise {@code datagenerator.connections} (default 1) on
+     * {@code datasourcesocket.port}.
+     */
+    private static List<SocketChannel> acceptConnections(HashMap conf, List<ServerSocketChannel> listeners) throws IOException {
+        List<Integer> ports = new ArrayList<>();
+        int perPort;
+        if ("ports".equals(conf.getOrDefault("datagenerator.listen", "port").toString())) {
+            for (Object port : (List) conf.get("datasourcesocket.ports")) {
+                ports.add(new Integer(port.toString()));
             }
+            perPort = 1;
         } else {
-            for (int i = 0; i < tupleCount; ) {
-                for (int b = 0; b < 1 && i < tupleCount; b++, i++) {
-                    buffer.put(adsEvent.generateJson());
-                    if (i % 1000 == 0){
-                        long interval = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
-                        int bufferSize = buffer.size();
-                        bufferSizeAtTime.put(interval, bufferSize);
-                        dataGenRate.put(interval, i - tempVal);
-                        tempVal = i;
-                    }
-                }
+            ports.add(new Integer(conf.get("datasourcesocket.port").toString()));
+            perPort = new Integer(conf.getOrDefault("datagenerator.connections", 1).toString());
+        }
+        List<SocketChannel> connections = new ArrayList<>();
+        for (Integer port : ports) {
+            ServerSocketChannel serverSocket = ServerSocketChannel.open();
+            serverSocket.socket().bind(new InetSocketAddress(port));
+            for (int c = 0; c < perPort; c++) {
+                System.out.println("Waiting for client on port " + port + "...");
+                SocketChannel out = serverSocket.accept();
+                out.socket().setTcpNoDelay(true);
+                System.out.println("Just connected to " + out.getRemoteAddress());
+                connections.add(out);
+                listeners.add(serverSocket);
             }
         }
-        long runtime = (currTime - System.currentTimeMillis()) / 1000;
-        System.out.println("Benchmark producer data rate is " + tupleCount / runtime + " ps");
+        return connections;
     }
 
     public static void main(String[] args) throws Exception {
@@ -85,63 +182,201 @@ public class DataGenerator extends Thread {
         YamlReader reader = new YamlReader(new FileReader(confFilePath));
         Object object = reader.read();
         HashMap conf = (HashMap) object;
+        // checked before the engines connect, the producers are only started once every connection is accepted
+        Object configuredProducers = conf.get("datagenerator.producers");
+        if (configuredProducers != null && new Integer(configuredProducers.toString()) < 1) {
+            throw new IllegalArgumentException("datagenerator.producers must be at least 1, got " + configuredProducers);
+        }
 
-        Integer port = new Integer(conf.get("datasourcesocket.port").toString());
-        ServerSocket serverSocket = new ServerSocket(port);
-        serverSocket.setSoTimeout(900000);
-        System.out.println("Waiting for client on port " + serverSocket.getLocalPort() + "...");
-        Socket server = serverSocket.accept();
-        System.out.println("Just connected to " + server.getRemoteSocketAddress());
-        PrintWriter out = new PrintWriter(server.getOutputStream(), true);
-        int bufferSize = new Integer(conf.get("benchmarking.count").toString());
-        BlockingQueue<String> buffer = new ArrayBlockingQueue<String>(bufferSize);    // new LinkedBlockingQueue<>();
+        List<ServerSocketChannel> listeners = new ArrayList<>();
+        List<SocketChannel> connections = acceptConnections(conf, listeners);
+        int bufferSize = new Integer(conf.getOrDefault("datagenerator.buffer.size", 1 << 16).toString());
+        int producers = configuredProducers == null ? connections.size()
+                : Math.min(connections.size(), new Integer(configuredProducers.toString()));
         try {
-            Thread generator = new DataGenerator(conf, buffer );
-            generator.start();
-            Thread bufferReader = new BufferReader(buffer, conf, out, serverSocket);
-            bufferReader.start();
+            List<List<EventRingBuffer>> producerBuffers = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                producerBuffers.add(new ArrayList<EventRingBuffer>());
+            }
+            List<BufferReader> senders = new ArrayList<>();
+            for (int c = 0; c < connections.size(); c++) {
+                EventRingBuffer buffer = new EventRingBuffer(bufferSize);
+                producerBuffers.get(c % producers).add(buffer);
+                String name = listeners.get(c).socket().getLocalPort() + "#" + c;
+                senders.add(new BufferReader(buffer, conf, connections.get(c), listeners.get(c), name));
+            }
+            for (int p = 0; p < producers; p++) {
+                Thread generator = new DataGenerator(conf, producerBuffers.get(p), new AdsEvent(partition, p, producers));
+                generator.start();
+            }
+            for (BufferReader bufferReader : senders) {
+                bufferReader.start();
+            }
+            new ThroughputReporter(senders).start();
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 }
 
+/**
+ * Sends the generated events to the connected engine. Events are read from the ring in batches and encoded
+ * into a direct buffer that is written once it is full or once the oldest unsent event waited
+ * {@code datagenerator.send.linger.ms}.
+ */
 class BufferReader extends Thread {
-    private BlockingQueue<String> buffer;
+    private EventRingBuffer buffer;
     private Logger logger = Logger.getLogger("MyLog");
-    private PrintWriter out;
-    private ServerSocket serverSocket;
-    private int benchmarkCount;
+    private SocketChannel out;
+    private ServerSocketChannel serverSocket;
+    private String name;
+    private boolean binary;
+    private int batchSize;
+    private int recordBytes;
+    private long lingerNanos;
+    private ByteBuffer sendBuffer;
+    private int frameStart = -1;
+    private int framedRecords = 0;
+    private long oldestUnsent = 0;
+    private volatile long writeCalls = 0;
+    private volatile long sent = 0;
+    private boolean sendTs;
+    // microseconds between the intended emission time of an event and its encoding into the send buffer
+    private Histogram sendLag = new Histogram(3);
     private HashMap<Long,Integer> thoughputCount = new HashMap<>();
-    public BufferReader(BlockingQueue<String> buffer, HashMap conf, PrintWriter out, ServerSocket serverSocket) {
+    public BufferReader(EventRingBuffer buffer, HashMap conf, SocketChannel out, ServerSocketChannel serverSocket, String name) {
+        super("sender-" + name);
         this.buffer = buffer;
         this.out = out;
         this.serverSocket = serverSocket;
-        this.benchmarkCount = new Integer(conf.get("benchmarking.count").toString());
+        this.name = name;
+        this.binary = "binary".equals(conf.getOrDefault("datasourcesocket.codec", "json").toString());
+        this.batchSize = new Integer(conf.getOrDefault("datasourcesocket.batchsize", 0).toString());
+        this.recordBytes = binary ? BinaryEventCodec.RECORD_BYTES : Event.MAX_JSON_LINE_BYTES;
+        int sendBufferBytes = 1024 * new Integer(conf.getOrDefault("datagenerator.send.buffer.kb", 64).toString());
+        this.sendBuffer = ByteBuffer.allocateDirect(Math.max(sendBufferBytes, recordBytes + BinaryEventCodec.FRAME_HEADER_BYTES));
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(new Long(conf.getOrDefault("datagenerator.send.linger.ms", 1).toString()));
+        this.sendTs = DataGenerator.SEND_TS.equals(conf.getOrDefault("datagenerator.timestamp", DataGenerator.CREATED_TS).toString());
+    }
+
+    public String connectionName() {
+        return name;
+    }
+
+    public EventRingBuffer buffer() {
+        return buffer;
+    }
+
+    public long sentCount() {
+        return sent;
+    }
+
+    public long writeCalls() {
+        return writeCalls;
+    }
+
+    private void encode(Event event) throws IOException {
+        if (sendBuffer.remaining() < recordBytes + BinaryEventCodec.FRAME_HEADER_BYTES) {
+            flush();
+        }
+        if (binary && batchSize > 0 && frameStart < 0) {
+            frameStart = sendBuffer.position();
+            sendBuffer.putInt(0); // record count, patched in closeFrame()
+        }
+        if (binary) {
+            event.writeBinary(sendBuffer);
+        } else {
+            event.writeJsonLine(sendBuffer);
+        }
+        if (oldestUnsent == 0) {
+            // first record since the last flush, which may have been the size triggered one above
+            oldestUnsent = System.nanoTime();
+        }
+        framedRecords++;
+        if (framedRecords >= batchSize) {
+            closeFrame();
+        }
+    }
+
+    private void closeFrame() {
+        if (frameStart >= 0) {
+            sendBuffer.putInt(frameStart, framedRecords);
+        }
+        frameStart = -1;
+        framedRecords = 0;
+    }
+
+    private void flush() throws IOException {
+        closeFrame();
+        sendBuffer.flip();
+        while (sendBuffer.hasRemaining()) {
+            out.write(sendBuffer);
+            writeCalls++;
+        }
+        sendBuffer.clear();
+        oldestUnsent = 0;
     }
 
     public void run() {
         try {
             long timeStart = System.currentTimeMillis();
+            long intervalStart = System.nanoTime();
 
             int tempVal = 0;
-            for (int i = 0; i < benchmarkCount; i++) {
-                String tuple = buffer.take();
-                out.println(tuple);
-                if (i % 1000 == 0 ){
+            int maxDrain = sendBuffer.capacity() / recordBytes;
+            int i = 0;
+            while (true) {
+                // read before polling, so that a closed ring is known to be drained when nothing is available
+                boolean closed = buffer.isClosed();
+                long wait = oldestUnsent == 0 ? lingerNanos : oldestUnsent + lingerNanos - System.nanoTime();
+                int drained = Math.min(buffer.available(closed ? 0 : Math.max(wait, 0)), maxDrain);
+                if (drained == 0) {
+                    if (closed) {
+                        break;
+                    }
+                    if (sendBuffer.position() > 0) {
+                        flush();
+                    }
+                    continue;
+                }
+                long sendNanos = System.nanoTime();
+                long sendMillis = System.currentTimeMillis();
+                for (int d = 0; d < drained; d++) {
+                    Event event = buffer.get(d);
+                    sendLag.recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMicros(sendNanos - event.intended)));
+                    event.sendTs = sendMillis;
+                    if (sendTs) {
+                        event.ts = sendMillis;
+                    }
+                    encode(event);
+                }
+                buffer.release(drained);
+                i += drained;
+                sent = i;
+                if (oldestUnsent != 0 && System.nanoTime() - oldestUnsent >= lingerNanos) {
+                    flush();
+                }
+                long now = System.nanoTime();
+                if (now - intervalStart >= TimeUnit.SECONDS.toNanos(1)) {
                     thoughputCount.put(TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()), i - tempVal);
                     tempVal = i;
-                    logger.info(i + " tuples sent from buffer");
+                    intervalStart = now;
                 }
             }
+            flush();
             long timeEnd = System.currentTimeMillis();
-            long runtime = (timeEnd - timeStart) / 1000;
-            long throughput = benchmarkCount / runtime;
+            long runtime = Math.max(timeEnd - timeStart, 1);
+            long throughput = i * 1000L / runtime;
 
-            logger.info("---BENCHMARK ENDED--- on " + runtime + " seconds with " + throughput + " throughput "
+            logger.info(name + " ---BENCHMARK ENDED--- on " + runtime / 1000 + " seconds with " + throughput + " throughput "
+                    + String.format("%.4f", (double) writeCalls / Math.max(i, 1)) + " write calls per tuple "
+                    + buffer.skipped() + " events skipped on a full ring,"
                     + " node : " + InetAddress.getLocalHost().getHostName());
-            logger.info("Waiting for client on port " + serverSocket.getLocalPort() + "...");
-            Socket server = serverSocket.accept();
+            logger.info(name + " send lag behind intended time (us): p50 " + sendLag.getValueAtPercentile(50)
+                    + " p99 " + sendLag.getValueAtPercentile(99) + " p99.9 " + sendLag.getValueAtPercentile(99.9)
+                    + " max " + sendLag.getMaxValue());
+            logger.info("Waiting for client on port " + serverSocket.socket().getLocalPort() + "...");
+            serverSocket.accept();
 
 
         } catch (Exception e) {
@@ -174,4 +409,47 @@ class BufferReader extends Thread {
     }
 }
 
+/**
+ * Logs the aggregate and per-connection send rate of all senders once per second.
+ */
+class ThroughputReporter extends Thread {
+    private Logger logger = Logger.getLogger("MyLog");
+    private List<BufferReader> senders;
+
+    public ThroughputReporter(List<BufferReader> senders) {
+        super("throughput-reporter");
+        this.senders = senders;
+        setDaemon(true);
+    }
 
+    public void run() {
+        long[] lastSent = new long[senders.size()];
+        long[] lastWrites = new long[senders.size()];
+        long last = System.nanoTime();
+        try {
+            while (true) {
+                Thread.sleep(1000);
+                long now = System.nanoTime();
+                double seconds = (now - last) / 1e9;
+                long total = 0;
+                StringBuilder perConnection = new StringBuilder();
+                for (int c = 0; c < senders.size(); c++) {
+                    BufferReader sender = senders.get(c);
+                    long sent = sender.sentCount();
+                    long writes = sender.writeCalls();
+                    long delta = sent - lastSent[c];
+                    total += delta;
+                    perConnection.append(String.format("%n  %s: %d tuples/s, %.4f write calls per tuple, %d/%d events queued, %d skipped",
+                            sender.connectionName(), (long) (delta / seconds), (double) (writes - lastWrites[c]) / Math.max(delta, 1),
+                            sender.buffer().size(), sender.buffer().capacity(), sender.buffer().skipped()));
+                    lastSent[c] = sent;
+                    lastWrites[c] = writes;
+                }
+                logger.info("aggregate " + (long) (total / seconds) + " tuples/s over " + senders.size() + " connections" + perConnection);
+                last = now;
+            }
+        } catch (InterruptedException e) {
+            // stopped
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package data.source.socket;
+
+import data.source.model.Event;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded single producer, single consumer ring of preallocated {@link Event} slots, in the style of the
+ * Disruptor. The producer fills a slot returned by {@link #claim()} and makes it visible with {@link #publish()},
+ * the consumer reads up to {@link #available(long)} slots with {@link #get(int)} and hands them back with
+ * {@link #release(int)}. No locks are taken and no events are allocated after construction.
+ */
+public class EventRingBuffer {
+
+    private static final int SPIN_TRIES = 100;
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final Event[] slots;
+    private final int mask;
+
+    // next sequence the producer publishes, written by the producer only
+    private final Sequence tail = new Sequence();
+    // next sequence the consumer reads, written by the consumer only
+    private final Sequence head = new Sequence();
+
+    // producer side copy of head, refreshed only when the ring looks full
+    private long cachedHead = 0;
+    // consumer side copy of tail, refreshed only when the ring looks empty
+    private long cachedTail = 0;
+
+    // events the producer skipped because the ring was full, written by the producer only
+    private volatile long skipped = 0;
+    private volatile boolean closed = false;
+
+    /**
+     * @param capacity rounded up to the next power of two
+     */
+    public EventRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        slots = new Event[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Event();
+        }
+        mask = size - 1;
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * Number of published but not yet released events, safe to call from any thread.
+     */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    /**
+     * Returns the next free slot, waiting while the ring is full. Producer thread only.
+     */
+    public Event claim() {
+        long next = tail.get();
+        if (next - cachedHead >= slots.length) {
+            int tries = 0;
+            while (next - (cachedHead = head.get()) >= slots.length) {
+                tries = idle(tries);
+            }
+        }
+        return slots[(int) next & mask];
+    }
+
+    /**
+     * Returns the next free slot, or null without waiting if the ring is full. Producer thread only.
+     */
+    public Event tryClaim() {
+        long next = tail.get();
+        if (next - cachedHead >= slots.length && next - (cachedHead = head.get()) >= slots.length) {
+            return null;
+        }
+        return slots[(int) next & mask];
+    }
+
+    /**
+     * Counts an event the producer dropped instead of waiting for a slot. Producer thread only.
+     */
+    public void skip() {
+        skipped = skipped + 1;
+    }
+
+    public long skipped() {
+        return skipped;
+    }
+
+    /**
+     * Tells the consumer that nothing is published after the events already in the ring. Producer thread only.
+     */
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Whether the producer is done, the events published before are visible once this returns true.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Makes the slot returned by the last {@link #claim()} or {@link #tryClaim()} visible to the consumer.
+     * Producer thread only.
+     */
+    public void publish() {
+        tail.lazySet(tail.get() + 1);
+    }
+
+    /**
+     * Waits up to {@code timeoutNanos} for published events. Consumer thread only.
+     *
+     * @return the number of events that can be read, 0 if none arrived in time
+     */
+    public int available(long timeoutNanos) {
+        long current = head.get();
+        if (cachedTail > current) {
+            return (int) (cachedTail - current);
+        }
+        long deadline = System.nanoTime() + timeoutNanos;
+        int tries = 0;
+        while ((cachedTail = tail.get()) == current) {
+            if (System.nanoTime() - deadline >= 0) {
+                return 0;
+            }
+            tries = idle(tries);
+        }
+        return (int) (cachedTail - current);
+    }
+
+    /**
+     * @param offset position relative to the oldest unreleased event, below the last {@link #available(long)}
+     */
+    public Event get(int offset) {
+        return slots[(int) (head.get() + offset) & mask];
+    }
+
+    /**
+     * Hands the {@code count} oldest events back to the producer. Consumer thread only.
+     */
+    public void release(int count) {
+        head.lazySet(head.get() + count);
+    }
+
+    private static int idle(int tries) {
+        if (tries < SPIN_TRIES) {
+            return tries + 1;
+        }
+        if (tries < 2 * SPIN_TRIES) {
+            Thread.yield();
+            return tries + 1;
+        }
+        LockSupport.parkNanos(PARK_NANOS);
+        return tries;
+    }
+
+    /**
+     * Sequence counter padded so that head and tail do not share a cache line.
+     */
+    @SuppressWarnings("unused")
+    private static class Sequence extends AtomicLong {
+        private long p1, p2, p3, p4, p5, p6, p7;
+    }
+}
@@ -0,0 +1,56 @@
+package data.source.socket;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open loop pacer for one producer. Every event has an intended emission time on a {@code System.nanoTime()}
+ * schedule derived from the {@link RateProfile}; {@link #acquire()} waits until that time and returns it.
+ * Waiting parks while the gap is long and spins for the last {@value #SPIN_NANOS} ns, so sub-microsecond
+ * inter-arrival times are met. The schedule never slips: a producer that fell behind, because of GC or a full
+ * ring, emits back to back until it has caught up instead of lowering the offered load.
+ */
+public class RatePacer {
+
+    private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final RateProfile profile;
+    private final boolean unthrottled;
+    private long start;
+    // intended time of the next event relative to start, fractional so that rates do not round to whole ns
+    private double offset;
+    // last clock reading, only refreshed while the producer is ahead of the schedule
+    private long now;
+
+    public RatePacer(RateProfile profile) {
+        this.profile = profile;
+        this.unthrottled = Double.isInfinite(profile.rate(0));
+    }
+
+    public void start() {
+        start = System.nanoTime();
+        offset = 0;
+        now = start;
+    }
+
+    /**
+     * Waits for the next slot of the schedule.
+     *
+     * @return the intended {@code System.nanoTime()} of the event
+     */
+    public long acquire() {
+        if (unthrottled) {
+            return System.nanoTime();
+        }
+        long slot = start + (long) offset;
+        while (slot - now > 0) {
+            long gap = slot - (now = System.nanoTime());
+            if (gap > SPIN_NANOS) {
+                LockSupport.parkNanos(gap - SPIN_NANOS);
+            }
+        }
+        double rate = profile.rate(slot - start);
+        offset += rate > 0 ? 1e9 / rate : TimeUnit.MILLISECONDS.toNanos(1);
+        return slot;
+    }
+}
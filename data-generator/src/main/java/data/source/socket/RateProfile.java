@@ -0,0 +1,98 @@
+package data.source.socket;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Target event rate of one generator stream over time, declared in the benchmark config:
+ * <pre>
+ *   datagenerator.rate: 1000000            # events per second on every connection
+ *   datagenerator.rate.profile: constant   # constant, step, ramp, sine or spike
+ *   datagenerator.rate.period.s: 10
+ *   datagenerator.rate.magnitude: 2
+ * </pre>
+ * <ul>
+ *   <li>constant: always {@code rate}</li>
+ *   <li>step: {@code rate}, multiplied by {@code magnitude} once {@code period.s} elapsed</li>
+ *   <li>ramp: linear from {@code rate} to {@code rate * magnitude} over {@code period.s}, then flat</li>
+ *   <li>sine: {@code rate * (1 + amplitude * sin(2 pi t / period.s))}, {@code amplitude} defaults to 0.5</li>
+ *   <li>spike: {@code rate}, multiplied by {@code magnitude} for {@code spike.ms} (default 1000) at the start of
+ *   every period, like the spikes of main.c</li>
+ * </ul>
+ * Without {@code datagenerator.rate} the legacy {@code datagenerator.sleep} is honoured: 0 means unthrottled,
+ * otherwise one event every {@code sleep} milliseconds.
+ */
+public abstract class RateProfile {
+
+    public static final double UNTHROTTLED = Double.POSITIVE_INFINITY;
+
+    /**
+     * @return events per second at {@code elapsedNanos} after the start of the run, {@link #UNTHROTTLED} for no limit
+     */
+    public abstract double rate(long elapsedNanos);
+
+    public static RateProfile fromConfig(HashMap conf) {
+        final double base;
+        if (conf.get("datagenerator.rate") != null) {
+            base = new Double(conf.get("datagenerator.rate").toString());
+        } else {
+            long sleep = new Long(conf.getOrDefault("datagenerator.sleep", 0).toString());
+            base = sleep == 0 ? UNTHROTTLED : 1000.0 / sleep;
+        }
+        if (base <= 0 || Double.isInfinite(base)) {
+            return constant(UNTHROTTLED);
+        }
+        String profile = conf.getOrDefault("datagenerator.rate.profile", "constant").toString();
+        final long period = TimeUnit.MILLISECONDS.toNanos(
+                (long) (1000 * new Double(conf.getOrDefault("datagenerator.rate.period.s", 10).toString())));
+        final double magnitude = new Double(conf.getOrDefault("datagenerator.rate.magnitude", 2).toString());
+        switch (profile) {
+            case "constant":
+                return constant(base);
+            case "step":
+                return new RateProfile() {
+                    @Override
+                    public double rate(long elapsedNanos) {
+                        return elapsedNanos < period ? base : base * magnitude;
+                    }
+                };
+            case "ramp":
+                return new RateProfile() {
+                    @Override
+                    public double rate(long elapsedNanos) {
+                        double progress = Math.min(1.0, (double) elapsedNanos / period);
+                        return base + base * (magnitude - 1) * progress;
+                    }
+                };
+            case "sine":
+                final double amplitude = new Double(conf.getOrDefault("datagenerator.rate.amplitude", 0.5).toString());
+                return new RateProfile() {
+                    @Override
+                    public double rate(long elapsedNanos) {
+                        double phase = 2 * Math.PI * (elapsedNanos % period) / period;
+                        return base * (1 + amplitude * Math.sin(phase));
+                    }
+                };
+            case "spike":
+                final long spike = TimeUnit.MILLISECONDS.toNanos(
+                        new Long(conf.getOrDefault("datagenerator.rate.spike.ms", 1000).toString()));
+                return new RateProfile() {
+                    @Override
+                    public double rate(long elapsedNanos) {
+                        return elapsedNanos % period < spike ? base * magnitude : base;
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("Unknown datagenerator.rate.profile: " + profile);
+        }
+    }
+
+    public static RateProfile constant(final double rate) {
+        return new RateProfile() {
+            @Override
+            public double rate(long elapsedNanos) {
+                return rate;
+            }
+        };
+    }
+}
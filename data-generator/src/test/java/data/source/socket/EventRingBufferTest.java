@@ -0,0 +1,115 @@
+package data.source.socket;
+
+import data.source.model.Event;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EventRingBufferTest {
+
+    @Test
+    public void capacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(2, new EventRingBuffer(1).capacity());
+        assertEquals(8, new EventRingBuffer(5).capacity());
+        assertEquals(8, new EventRingBuffer(8).capacity());
+    }
+
+    @Test
+    public void emptyRingTimesOut() {
+        EventRingBuffer ring = new EventRingBuffer(4);
+        assertEquals(0, ring.available(0));
+        assertEquals(0, ring.available(TimeUnit.MILLISECONDS.toNanos(1)));
+    }
+
+    @Test
+    public void slotsWrapAroundInOrder() {
+        EventRingBuffer ring = new EventRingBuffer(4);
+        long next = 0;
+        long expected = 0;
+        // several laps, with batches that straddle the end of the slot array
+        for (int lap = 0; lap < 10; lap++) {
+            for (int i = 0; i < 3; i++) {
+                ring.claim().ts = next++;
+                ring.publish();
+            }
+            assertEquals(3, ring.size());
+            int available = ring.available(0);
+            assertEquals(3, available);
+            for (int i = 0; i < available; i++) {
+                assertEquals(expected++, ring.get(i).ts);
+            }
+            ring.release(available);
+            assertEquals(0, ring.size());
+        }
+    }
+
+    @Test
+    public void slotsAreReused() {
+        EventRingBuffer ring = new EventRingBuffer(2);
+        Event first = ring.claim();
+        ring.publish();
+        ring.claim();
+        ring.publish();
+        ring.available(0);
+        ring.release(2);
+        assertTrue(first == ring.claim());
+    }
+
+    @Test
+    public void tryClaimReturnsNullWhenFull() {
+        EventRingBuffer ring = new EventRingBuffer(2);
+        for (int i = 0; i < 2; i++) {
+            ring.tryClaim().ts = i;
+            ring.publish();
+        }
+        assertNull(ring.tryClaim());
+        ring.skip();
+        assertEquals(1, ring.skipped());
+        ring.available(0);
+        ring.release(1);
+        assertNotNull(ring.tryClaim());
+    }
+
+    @Test
+    public void closedRingIsDrainedBeforeItReadsEmpty() {
+        EventRingBuffer ring = new EventRingBuffer(4);
+        ring.claim().ts = 1;
+        ring.publish();
+        ring.close();
+        assertTrue(ring.isClosed());
+        assertEquals(1, ring.available(0));
+        ring.release(1);
+        assertEquals(0, ring.available(0));
+    }
+
+    @Test
+    public void producerWaitsForConsumerWhenFull() throws InterruptedException {
+        final EventRingBuffer ring = new EventRingBuffer(2);
+        final int events = 100000;
+        Thread producer = new Thread() {
+            public void run() {
+                for (int i = 0; i < events; i++) {
+                    ring.claim().ts = i;
+                    ring.publish();
+                }
+            }
+        };
+        producer.start();
+        long expected = 0;
+        while (expected < events) {
+            int available = ring.available(TimeUnit.SECONDS.toNanos(10));
+            assertTrue(available > 0 && available <= ring.capacity());
+            for (int i = 0; i < available; i++) {
+                assertEquals(expected++, ring.get(i).ts);
+            }
+            ring.release(available);
+        }
+        producer.join();
+        assertEquals(0, ring.size());
+    }
+}
@@ -0,0 +1,54 @@
+package flink.benchmark;
+
+import org.apache.flink.api.common.functions.FoldFunction;
+import org.apache.flink.api.common.functions.MapFunction;
+import org.apache.flink.api.java.tuple.Tuple4;
+import org.apache.flink.api.java.tuple.Tuple6;
+
+/**
+ * Mutable price average of a window, folded in place from (geo, ts, price, start_ts) events so that adding an
+ * event to a window allocates nothing. Keeps the highest event timestamp and the send timestamp of the event
+ * that carried it.
+ */
+public class AvgAccumulator {
+    public String key;
+    public double sum;
+    public long count;
+    public long maxTs;
+    public long startTs;
+
+    public AvgAccumulator() {
+    }
+
+    public void add(String key, double sum, long count, long ts, long startTs) {
+        this.key = key;
+        this.sum += sum;
+        this.count += count;
+        if (ts >= maxTs) {
+            this.maxTs = ts;
+            this.startTs = startTs;
+        }
+    }
+
+    /**
+     * The (geo, ts, avg_price, count, window_size, start_ts) record the window reduce used to emit.
+     */
+    public Tuple6<String, Long, Double, Integer, Integer, Long> toTuple() {
+        return new Tuple6<String, Long, Double, Integer, Integer, Long>(key, maxTs, sum / count, (int) count, (int) count, startTs);
+    }
+
+    public static class Fold implements FoldFunction<Tuple4<String, Long, Double, Long>, AvgAccumulator> {
+        @Override
+        public AvgAccumulator fold(AvgAccumulator accumulator, Tuple4<String, Long, Double, Long> event) {
+            accumulator.add(event.f0, event.f2, 1, event.f1, event.f3);
+            return accumulator;
+        }
+    }
+
+    public static class ToTuple implements MapFunction<AvgAccumulator, Tuple6<String, Long, Double, Integer, Integer, Long>> {
+        @Override
+        public Tuple6<String, Long, Double, Integer, Integer, Long> map(AvgAccumulator accumulator) {
+            return accumulator.toTuple();
+        }
+    }
+}
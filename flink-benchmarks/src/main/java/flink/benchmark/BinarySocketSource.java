@@ -0,0 +1,40 @@
+package flink.benchmark;
+
+import benchmark.common.codec.BinaryEventReader;
+import org.apache.flink.api.java.tuple.Tuple4;
+import org.apache.flink.streaming.api.functions.source.SourceFunction;
+
+import java.net.Socket;
+
+/**
+ * Reads {@link benchmark.common.codec.BinaryEventCodec} records from one generator endpoint and emits
+ * (geo, ts, price, start_ts) tuples, the same shape the json deserializer produces.
+ */
+public class BinarySocketSource implements SourceFunction<Tuple4<String, Long, Double, Long>> {
+
+    private final String host;
+    private final int port;
+    private final int batchSize;
+    private volatile boolean isRunning = true;
+
+    public BinarySocketSource(String host, int port, int batchSize) {
+        this.host = host;
+        this.port = port;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void run(SourceContext<Tuple4<String, Long, Double, Long>> ctx) throws Exception {
+        try (Socket socket = new Socket(host, port)) {
+            BinaryEventReader reader = new BinaryEventReader(socket.getInputStream(), batchSize);
+            while (isRunning && reader.next()) {
+                ctx.collect(new Tuple4<String, Long, Double, Long>(reader.geo(), reader.ts(), (double) reader.value(), reader.sendTs()));
+            }
+        }
+    }
+
+    @Override
+    public void cancel() {
+        isRunning = false;
+    }
+}
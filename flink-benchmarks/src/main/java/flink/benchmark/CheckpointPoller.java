@@ -0,0 +1,188 @@
+package flink.benchmark;
+
+import benchmark.common.latency.LatencyRecorder;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+
+/**
+ * Polls the JobManager web interface for the checkpoints of the running job called {@code jobName}, which only
+ * the JobManager knows the size of. Every completed checkpoint is printed to the run output as its id, trigger
+ * time, duration and size, with the bytes buffered during alignment where the JobManager reports them (Flink
+ * 1.2 and later), and appended to {@code csvPath} if given. {@link CheckpointStats} adds the barrier delay seen
+ * at the sink, alignment included, to the job result. Durations and sizes are summarised by {@link #summary()}.
+ */
+public class CheckpointPoller implements Runnable {
+    private static final Logger LOG = LoggerFactory.getLogger(CheckpointPoller.class);
+
+    private static final long POLL_INTERVAL_MS = 5000;
+    private static final int TIMEOUT_MS = 2000;
+    /**
+     * Polls without finding the job before warning, a job is usually running within a few seconds.
+     */
+    private static final int LOOKUP_WARN_POLLS = 6;
+
+    private final String webUrl;
+    private final String jobName;
+    private final String csvPath;
+    private final LatencyRecorder durations = new LatencyRecorder();
+    private String jobId;
+    private long lastId = -1;
+    private long checkpoints;
+    private long totalBytes;
+    private long maxBytes;
+    private int lookups;
+    private int failures;
+
+    /**
+     * @param webUrl  the JobManager web interface, {@code flink.web.url}
+     * @param csvPath file the checkpoints are appended to as "id,timestamp,duration_ms,size_bytes,alignment_bytes",
+     *                null for the run output only
+     */
+    public CheckpointPoller(String webUrl, String jobName, String csvPath) {
+        this.webUrl = webUrl.endsWith("/") ? webUrl.substring(0, webUrl.length() - 1) : webUrl;
+        this.jobName = jobName;
+        this.csvPath = csvPath;
+    }
+
+    /**
+     * Starts polling on a daemon thread until the JVM exits.
+     */
+    public Thread start() {
+        Thread thread = new Thread(this, "checkpoint-poller");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    @Override
+    public void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                poll();
+            } catch (IOException | RuntimeException e) {
+                if (failures++ == 0) {
+                    LOG.warn("Polling {} for checkpoints failed, retrying every {} ms: {}", webUrl, POLL_INTERVAL_MS,
+                            e.toString());
+                } else {
+                    LOG.debug("Polling {} failed: {}", webUrl, e.toString());
+                }
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reports the checkpoints completed since the previous call.
+     */
+    public synchronized void poll() throws IOException {
+        if (jobId == null) {
+            JSONArray jobs = get("/joboverview/running").optJSONArray("jobs");
+            for (int i = 0; jobs != null && i < jobs.length(); i++) {
+                if (jobName.equals(jobs.getJSONObject(i).optString("name"))) {
+                    jobId = jobs.getJSONObject(i).getString("jid");
+                }
+            }
+            if (jobId == null) {
+                if (++lookups == LOOKUP_WARN_POLLS) {
+                    LOG.warn("No running job called '{}' at {} after {} polls, its checkpoints are not reported",
+                            jobName, webUrl, lookups);
+                }
+                return;
+            }
+        }
+        JSONArray history = get("/jobs/" + jobId + "/checkpoints").optJSONArray("history");
+        if (history == null) {
+            return;
+        }
+        long newest = lastId;
+        for (int i = 0; i < history.length(); i++) {
+            JSONObject checkpoint = history.getJSONObject(i);
+            long id = checkpoint.getLong("id");
+            // Flink 1.2 and later also list pending and failed checkpoints
+            if (id <= lastId || !checkpoint.optString("status", "COMPLETED").equals("COMPLETED")) {
+                continue;
+            }
+            long duration = checkpoint.optLong("duration", checkpoint.optLong("end_to_end_duration"));
+            long size = checkpoint.optLong("size", checkpoint.optLong("state_size"));
+            long alignment = checkpoint.optLong("alignment_buffered", -1);
+            report(id, checkpoint.optLong("timestamp", checkpoint.optLong("trigger_timestamp")), duration, size, alignment);
+            newest = Math.max(newest, id);
+        }
+        lastId = newest;
+    }
+
+    /**
+     * Reports the checkpoints completed since the last poll once the job is over, and warns if the job was never
+     * found, e.g. because the web interface is not at {@code flink.web.url}.
+     */
+    public void finish() {
+        try {
+            poll();
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Final poll of {} failed, the last checkpoints may be missing: {}", webUrl, e.toString());
+        }
+        synchronized (this) {
+            if (jobId == null) {
+                LOG.warn("Job '{}' was never found at {}, no checkpoints were reported", jobName, webUrl);
+            }
+        }
+    }
+
+    private void report(long id, long timestamp, long duration, long size, long alignment) throws IOException {
+        checkpoints++;
+        totalBytes += size;
+        maxBytes = Math.max(maxBytes, size);
+        durations.recordValue(duration);
+        System.out.println("checkpoint " + id + " duration " + duration + " ms size " + size + " bytes"
+                + (alignment < 0 ? "" : " alignment buffered " + alignment + " bytes"));
+        if (csvPath != null) {
+            try (PrintWriter csv = new PrintWriter(new FileWriter(csvPath, true))) {
+                csv.println(id + "," + timestamp + "," + duration + "," + size + "," + alignment);
+            }
+        }
+    }
+
+    public synchronized long checkpoints() {
+        return checkpoints;
+    }
+
+    public synchronized long averageBytes() {
+        return checkpoints == 0 ? 0 : totalBytes / checkpoints;
+    }
+
+    /**
+     * Count, size and duration distribution of the checkpoints reported so far.
+     */
+    public synchronized String summary() {
+        durations.intervalSnapshot();
+        return checkpoints + " checkpoints, average size " + averageBytes() + " bytes, max size " + maxBytes
+                + " bytes, duration (ms) " + LatencyRecorder.summary(durations.total());
+    }
+
+    private JSONObject get(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(webUrl + path).openConnection();
+        connection.setConnectTimeout(TIMEOUT_MS);
+        connection.setReadTimeout(TIMEOUT_MS);
+        try (InputStream in = connection.getInputStream();
+             Scanner body = new Scanner(in, StandardCharsets.UTF_8.name()).useDelimiter("\\A")) {
+            return new JSONObject(body.hasNext() ? body.next() : "{}");
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package flink.benchmark;
+
+import benchmark.common.latency.LatencyRecorder;
+import org.apache.flink.api.common.functions.RichMapFunction;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.runtime.state.CheckpointListener;
+import org.apache.flink.streaming.api.checkpoint.Checkpointed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pass-through map in front of the result sink that times the checkpoints as seen at the end of the pipeline:
+ * the barrier delay, from the checkpoint trigger to its barrier reaching this subtask, which includes the
+ * alignment of every exactly-once operator on the way, and the duration, from the trigger to the completion
+ * notification. Every checkpoint is logged and both times are kept in a {@link LatencyRecorder}, summarised when
+ * the job ends, exposed as the gauges "lastBarrierDelayMs" and "lastCheckpointDurationMs" and added to the
+ * {@link LatencyAccumulator}s {@value #BARRIER_DELAY_ACCUMULATOR} and {@value #DURATION_ACCUMULATOR} of the job
+ * result. Checkpoint sizes are only known to the JobManager, see {@link CheckpointPoller}.
+ */
+public class CheckpointStats<T> extends RichMapFunction<T, T> implements Checkpointed<Long>, CheckpointListener {
+    private static final Logger LOG = LoggerFactory.getLogger(CheckpointStats.class);
+
+    public static final String BARRIER_DELAY_ACCUMULATOR = "checkpointBarrierDelay";
+    public static final String DURATION_ACCUMULATOR = "checkpointDuration";
+
+    private transient Map<Long, Long> triggered;
+    private transient LatencyRecorder barrierDelays;
+    private transient LatencyRecorder durations;
+    private transient LatencyAccumulator barrierDelayResult;
+    private transient LatencyAccumulator durationResult;
+    private transient volatile long lastBarrierDelay;
+    private transient volatile long lastDuration;
+    private transient long records;
+
+    @Override
+    public void open(Configuration parameters) throws Exception {
+        triggered = new HashMap<>();
+        barrierDelays = new LatencyRecorder();
+        durations = new LatencyRecorder();
+        barrierDelayResult = new LatencyAccumulator();
+        durationResult = new LatencyAccumulator();
+        getRuntimeContext().addAccumulator(BARRIER_DELAY_ACCUMULATOR, barrierDelayResult);
+        getRuntimeContext().addAccumulator(DURATION_ACCUMULATOR, durationResult);
+        MetricGroup metrics = getRuntimeContext().getMetricGroup();
+        metrics.gauge("lastBarrierDelayMs", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return lastBarrierDelay;
+            }
+        });
+        metrics.gauge("lastCheckpointDurationMs", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return lastDuration;
+            }
+        });
+    }
+
+    @Override
+    public T map(T value) {
+        records++;
+        return value;
+    }
+
+    @Override
+    public Long snapshotState(long checkpointId, long checkpointTimestamp) {
+        lastBarrierDelay = Math.max(0, System.currentTimeMillis() - checkpointTimestamp);
+        barrierDelays.recordValue(lastBarrierDelay);
+        barrierDelayResult.add(lastBarrierDelay);
+        triggered.put(checkpointId, checkpointTimestamp);
+        LOG.info("checkpoint {} of subtask {}: barrier delay {} ms", checkpointId,
+                getRuntimeContext().getIndexOfThisSubtask(), lastBarrierDelay);
+        return records;
+    }
+
+    @Override
+    public void restoreState(Long state) {
+        records = state;
+    }
+
+    @Override
+    public void notifyCheckpointComplete(long checkpointId) {
+        Long timestamp = triggered.remove(checkpointId);
+        if (timestamp == null) {
+            return;
+        }
+        lastDuration = Math.max(0, System.currentTimeMillis() - timestamp);
+        durations.recordValue(lastDuration);
+        durationResult.add(lastDuration);
+        // checkpoints subsumed by this one will not be notified
+        triggered.keySet().removeIf(id -> id < checkpointId);
+        LOG.info("checkpoint {} of subtask {}: duration {} ms", checkpointId,
+                getRuntimeContext().getIndexOfThisSubtask(), lastDuration);
+    }
+
+    @Override
+    public void close() {
+        if (durations != null) {
+            barrierDelays.intervalSnapshot();
+            durations.intervalSnapshot();
+            LOG.info("checkpoint barrier delay (ms) {}", LatencyRecorder.summary(barrierDelays.total()));
+            LOG.info("checkpoint duration (ms) {}", LatencyRecorder.summary(durations.total()));
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package flink.benchmark;
+
+import benchmark.common.window.PaneWindowState;
+import org.apache.flink.api.java.tuple.Tuple4;
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.streaming.api.operators.AbstractStreamOperator;
+import org.apache.flink.streaming.api.operators.ChainingStrategy;
+import org.apache.flink.streaming.api.operators.OneInputStreamOperator;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Pass-through operator behind the timestamp assigner that watches what event time does to the sliding windows
+ * downstream, which Flink's window operator does not report. Registers per subtask the gauges
+ * <ul>
+ * <li>"lateRecords": records whose last window was already cleaned up when they arrived, i.e. whose window end
+ * plus the allowed lateness is not after the watermark, the records a window operator drops silently;</li>
+ * <li>"watermarkLagMs": wall clock minus the watermark, -1 before the first one;</li>
+ * <li>"windowsHeld": the (key, window) pairs the records of this subtask keep open, one fold accumulator each,
+ * from the first record of a window to its end plus the allowed lateness passing the watermark.</li>
+ * </ul>
+ * The windows see the smallest watermark of all their inputs, not the one of this subtask, so with several
+ * sources both counts are upper bounds, exact when the watermarks advance together. The keys of a window are
+ * tracked per pane, the gcd of length and slide, and the windows are counted at most once per second.
+ */
+public class EventTimeMonitor extends AbstractStreamOperator<Tuple4<String, Long, Double, Long>>
+        implements OneInputStreamOperator<Tuple4<String, Long, Double, Long>, Tuple4<String, Long, Double, Long>> {
+
+    private static final long COUNT_INTERVAL_MS = 1000;
+    /**
+     * Key of every record in an all-window.
+     */
+    private static final String NO_KEY = "";
+
+    private final long lengthMs;
+    private final long slideMs;
+    private final long allowedLatenessMs;
+    private final boolean keyed;
+
+    private transient long paneMs;
+    private transient Map<Long, Set<String>> panes;
+    private transient long lastPane;
+    private transient Set<String> lastPaneKeys;
+    private transient long lastCount;
+    private transient volatile long watermark;
+    private transient volatile long late;
+    private transient volatile long windowsHeld;
+
+    /**
+     * @param keyed false for an all-window, whose records count as one key
+     */
+    public EventTimeMonitor(long lengthMs, long slideMs, long allowedLatenessMs, boolean keyed) {
+        this.lengthMs = lengthMs;
+        this.slideMs = slideMs;
+        this.allowedLatenessMs = allowedLatenessMs;
+        this.keyed = keyed;
+        setChainingStrategy(ChainingStrategy.ALWAYS);
+    }
+
+    @Override
+    public void open() throws Exception {
+        super.open();
+        paneMs = PaneWindowState.paneMs(lengthMs, slideMs);
+        panes = new HashMap<>();
+        lastPane = Long.MIN_VALUE;
+        watermark = Long.MIN_VALUE;
+        MetricGroup metrics = getRuntimeContext().getMetricGroup();
+        metrics.gauge("lateRecords", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return late;
+            }
+        });
+        metrics.gauge("watermarkLagMs", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                long current = watermark;
+                return current == Long.MIN_VALUE ? -1 : System.currentTimeMillis() - current;
+            }
+        });
+        metrics.gauge("windowsHeld", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return windowsHeld;
+            }
+        });
+    }
+
+    @Override
+    public void processElement(StreamRecord<Tuple4<String, Long, Double, Long>> element) throws Exception {
+        long ts = element.getTimestamp();
+        if (cleanupTime(lastWindowStart(ts)) <= watermark) {
+            late++;
+        } else {
+            long pane = Math.floorDiv(ts, paneMs);
+            if (pane != lastPane) {
+                lastPaneKeys = panes.get(pane);
+                if (lastPaneKeys == null) {
+                    lastPaneKeys = new HashSet<>();
+                    panes.put(pane, lastPaneKeys);
+                }
+                lastPane = pane;
+            }
+            lastPaneKeys.add(keyed ? element.getValue().f0 : NO_KEY);
+        }
+        output.collect(element);
+    }
+
+    @Override
+    public void processWatermark(Watermark mark) throws Exception {
+        watermark = mark.getTimestamp();
+        Iterator<Map.Entry<Long, Set<String>>> it = panes.entrySet().iterator();
+        while (it.hasNext()) {
+            long pane = it.next().getKey();
+            if (cleanupTime(lastWindowStart(pane * paneMs)) <= watermark) {
+                it.remove();
+                if (pane == lastPane) {
+                    lastPane = Long.MIN_VALUE;
+                }
+            }
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastCount >= COUNT_INTERVAL_MS) {
+            windowsHeld = countWindows();
+            lastCount = now;
+        }
+        output.emitWatermark(mark);
+    }
+
+    /**
+     * (key, window) pairs with a record and not yet cleaned up.
+     */
+    private long countWindows() {
+        Map<Long, Set<String>> windows = new HashMap<>();
+        for (Map.Entry<Long, Set<String>> pane : panes.entrySet()) {
+            long paneStart = pane.getKey() * paneMs;
+            // the windows covering a pane start within length of its end, at multiples of the slide
+            for (long start = lastWindowStart(paneStart); start > paneStart + paneMs - 1 - lengthMs; start -= slideMs) {
+                if (cleanupTime(start) <= watermark) {
+                    break;
+                }
+                Set<String> keys = windows.get(start);
+                if (keys == null) {
+                    keys = new HashSet<>();
+                    windows.put(start, keys);
+                }
+                keys.addAll(pane.getValue());
+            }
+        }
+        long held = 0;
+        for (Set<String> keys : windows.values()) {
+            held += keys.size();
+        }
+        return held;
+    }
+
+    private long lastWindowStart(long ts) {
+        return ts - Math.floorMod(ts, slideMs);
+    }
+
+    /**
+     * Watermark at which Flink purges the window starting at {@code start}, its max timestamp plus the lateness.
+     */
+    private long cleanupTime(long start) {
+        return start + lengthMs - 1 + allowedLatenessMs;
+    }
+}
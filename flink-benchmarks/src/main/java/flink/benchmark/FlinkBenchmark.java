@@ -5,26 +5,47 @@
 package flink.benchmark;
 
 import benchmark.common.CommonConfig;
+import benchmark.common.codec.JsonEventCodec;
+import benchmark.common.latency.LatencyRecorder;
+import benchmark.common.sink.ResultSinkFactory;
+import benchmark.common.window.PaneWindowState;
 import data.source.model.AdsEvent;
+import org.HdrHistogram.Histogram;
+import org.apache.flink.api.common.JobExecutionResult;
 import org.apache.flink.api.common.functions.JoinFunction;
 import org.apache.flink.api.common.functions.MapFunction;
-import org.apache.flink.api.common.functions.ReduceFunction;
 import org.apache.flink.api.common.functions.RichMapFunction;
+import org.apache.flink.api.common.typeinfo.BasicTypeInfo;
 import org.apache.flink.api.java.functions.KeySelector;
 import org.apache.flink.api.java.tuple.*;
+import org.apache.flink.api.java.typeutils.TupleTypeInfo;
 import org.apache.flink.api.java.utils.ParameterTool;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.contrib.streaming.state.RocksDBStateBackend;
+import org.apache.flink.runtime.state.filesystem.FsStateBackend;
+import org.apache.flink.runtime.state.memory.MemoryStateBackend;
+import org.apache.flink.streaming.api.CheckpointingMode;
 import org.apache.flink.streaming.api.TimeCharacteristic;
+import org.apache.flink.streaming.api.datastream.AllWindowedStream;
 import org.apache.flink.streaming.api.datastream.DataStream;
+import org.apache.flink.streaming.api.datastream.WindowedStream;
 import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
 import org.apache.flink.streaming.api.functions.source.SourceFunction;
+import org.apache.flink.streaming.api.functions.timestamps.BoundedOutOfOrdernessTimestampExtractor;
+import org.apache.flink.streaming.api.windowing.assigners.SlidingEventTimeWindows;
 import org.apache.flink.streaming.api.windowing.assigners.SlidingProcessingTimeWindows;
 import org.apache.flink.streaming.api.windowing.time.Time;
+import org.apache.flink.streaming.api.windowing.windows.TimeWindow;
 import org.apache.flink.streaming.connectors.fs.RollingSink;
-import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * To Run:  flink run target/flink-benchmarks-0.1.0-FlinkBenchmark.jar  --confPath "../conf/benchmarkConf.yaml"
@@ -42,11 +63,41 @@ public class FlinkBenchmark {
         String confFilePath = parameterTool.getRequired("confPath");
         CommonConfig.initializeConfig(confFilePath);
 
-        //TODO parametertool, checkpoint flush rate, kafka zookeeper configurations
+        //TODO parametertool, kafka zookeeper configurations
 
         StreamExecutionEnvironment env = StreamExecutionEnvironment.getExecutionEnvironment();
+        buildJob(env);
+        CheckpointPoller poller = null;
+        if (checkpointing()) {
+            String csv = null;
+            if (CommonConfig.OUTPUT_SINK().equals(CommonConfig.FILE_SINK)) {
+                File dir = new File(CommonConfig.OUTPUT_FILE_DIR());
+                dir.mkdirs();
+                csv = new File(dir, "checkpoints.csv").getPath();
+            }
+            poller = new CheckpointPoller(CommonConfig.FLINK_WEB_URL(), StreamExecutionEnvironment.DEFAULT_JOB_NAME, csv);
+            poller.start();
+        }
+        JobExecutionResult result = env.execute();
+        if (poller != null) {
+            poller.finish();
+            System.out.println("checkpoints: " + poller.summary());
+            Histogram barrierDelays = result.getAccumulatorResult(CheckpointStats.BARRIER_DELAY_ACCUMULATOR);
+            if (barrierDelays != null) {
+                System.out.println("checkpoint barrier delay at the sink (ms): " + LatencyRecorder.summary(barrierDelays));
+            }
+        }
+
+    }
+
+    /**
+     * Configures the environment and adds the job of {@code benchmarking.usecase}.
+     */
+    static void buildJob(StreamExecutionEnvironment env) throws Exception {
         env.setBufferTimeout(CommonConfig.FLUSH_RATE());
-        env.setStreamTimeCharacteristic(TimeCharacteristic.ProcessingTime);
+        configureCheckpointing(env);
+        env.setStreamTimeCharacteristic(eventTime() ? TimeCharacteristic.EventTime : TimeCharacteristic.ProcessingTime);
+        warnUncheckpointedState();
 
 
         if (CommonConfig.BENCHMARKING_USECASE().equals(CommonConfig.AGGREGATION_USECASE)) {
@@ -62,13 +113,76 @@ public class FlinkBenchmark {
         else {
             throw new Exception("Please specify use-case name");
         }
+    }
 
-        env.execute();
 
+    private static boolean checkpointing(){
+        return CommonConfig.FLINK_CHECKPOINT_INTERVAL_MS() > 0;
     }
 
+    /**
+     * Checkpoints every {@code flink.checkpoint.interval.ms}, 0 to disable, in {@code flink.checkpoint.mode}
+     * "exactlyonce" (aligned barriers) or "atleastonce", to the {@code flink.state.backend}: "memory", "fs" or
+     * "rocksdb" with its checkpoints in {@code flink.checkpoint.dir} and its working files in
+     * {@code flink.rocksdb.local.dir}. The socket sources cannot replay and the pane and hash join operators keep
+     * their state outside Flink, the checkpoints measure the cost, not a recovery guarantee.
+     */
+    private static void configureCheckpointing(StreamExecutionEnvironment env) throws IOException {
+        if (!checkpointing()) {
+            return;
+        }
+        env.enableCheckpointing(CommonConfig.FLINK_CHECKPOINT_INTERVAL_MS(),
+                CommonConfig.FLINK_CHECKPOINT_MODE().equals(CommonConfig.AT_LEAST_ONCE)
+                        ? CheckpointingMode.AT_LEAST_ONCE : CheckpointingMode.EXACTLY_ONCE);
+        String backend = CommonConfig.FLINK_STATE_BACKEND();
+        if (backend.equals(CommonConfig.ROCKSDB_BACKEND)) {
+            RocksDBStateBackend rocksDB = new RocksDBStateBackend(CommonConfig.FLINK_CHECKPOINT_DIR());
+            if (CommonConfig.FLINK_ROCKSDB_LOCAL_DIR() != null) {
+                rocksDB.setDbStoragePath(CommonConfig.FLINK_ROCKSDB_LOCAL_DIR());
+            }
+            env.setStateBackend(rocksDB);
+        } else if (backend.equals(CommonConfig.FS_BACKEND)) {
+            env.setStateBackend(new FsStateBackend(CommonConfig.FLINK_CHECKPOINT_DIR()));
+        } else if (backend.equals(CommonConfig.MEMORY_BACKEND)) {
+            env.setStateBackend(new MemoryStateBackend());
+        } else {
+            throw new IllegalArgumentException("Unsupported flink.state.backend: " + backend);
+        }
+        LOG.info("Checkpointing every {} ms, {} to the {} state backend", CommonConfig.FLINK_CHECKPOINT_INTERVAL_MS(),
+                CommonConfig.FLINK_CHECKPOINT_MODE(), backend);
+    }
+
+    /**
+     * Tells in the run output that the checkpoints leave out the window or join state when the pane or hash join
+     * operator is used, so their durations and sizes are not comparable to those of Flink's own windows.
+     */
+    private static void warnUncheckpointedState() {
+        if (!checkpointing() || eventTime()) {
+            return;
+        }
+        String operator = null;
+        if (CommonConfig.BENCHMARKING_USECASE().equals(CommonConfig.AGGREGATION_USECASE)
+                && CommonConfig.FLINK_WINDOW_OPERATOR().equals(CommonConfig.FLINK_PANE_WINDOW)) {
+            operator = "pane window";
+        } else if (CommonConfig.BENCHMARKING_USECASE().equals(CommonConfig.JOIN_USECASE)
+                && CommonConfig.FLINK_JOIN_OPERATOR().equals(CommonConfig.FLINK_HASH_JOIN)) {
+            operator = "hash join";
+        }
+        if (operator != null) {
+            String warning = "WARNING: the " + operator + " operator keeps its state outside Flink, the checkpoints"
+                    + " do not include it and their duration and size are not comparable to Flink's windows";
+            LOG.warn(warning);
+            System.out.println(warning);
+        }
+    }
 
     private static void dummyConsumer(StreamExecutionEnvironment env){
+        if (CommonConfig.DATASOURCE_CODEC().equals(CommonConfig.BINARY_CODEC)) {
+            RollingSink sink = new RollingSink<String>(CommonConfig.FLINK_OUTPUT());
+            sink.setBatchSize(1024 * CommonConfig.OUTPUT_BATCHSIZE_KB());
+            eventStream(env).filter(t->false).addSink(sink);
+            return;
+        }
         DataStream<String> socketSource = null;
         for (String host : CommonConfig.DATASOURCE_HOSTS()) {
             for (int port: CommonConfig.DATASOURCE_PORTS()){
@@ -88,64 +202,190 @@ public class FlinkBenchmark {
 
 
 
-    private static void windowedJoin(StreamExecutionEnvironment env){
-        class Deserializer implements MapFunction<String, Tuple4<String, Long, Double, Long>>{
-            @Override
-            public Tuple4<String, Long, Double, Long> map(String s) throws Exception {
-                JSONObject obj = new JSONObject(s);
-                String geo = obj.getString("key");
-                Double price = obj.getDouble("value");
-                Long ts =  obj.getLong("ts");
-                return new Tuple4<String, Long, Double, Long>(geo, ts , price, System.currentTimeMillis());
-            }
+    /**
+     * Adds the sink selected with {@code output.sink}: a RollingSink of the tuples by default, or a
+     * {@link ResultSinkFunction} reading the latency, event timestamp and send timestamp from the given fields.
+     * With checkpointing the results pass {@link CheckpointStats} first. {@code output.sink: accumulator} only
+     * collects the latencies in a {@link LatencyAccumulatorSink}.
+     */
+    private static <T extends Tuple> void addResultSink(DataStream<T> stream, int latencyField, int tsField, int startTsField){
+        if (checkpointing()) {
+            stream = stream.map(new CheckpointStats<T>()).returns(stream.getType());
+        }
+        if (CommonConfig.OUTPUT_SINK().equals(CommonConfig.ACCUMULATOR_SINK)) {
+            stream.addSink(new LatencyAccumulatorSink<T>(latencyField));
+            return;
+        }
+        ResultSinkFactory sinks = ResultSinkFactory.fromConfig();
+        if (sinks.isEnabled()) {
+            stream.addSink(new ResultSinkFunction<T>(sinks, latencyField, tsField, startTsField));
+            return;
+        }
+        RollingSink sink = new RollingSink<String>(CommonConfig.FLINK_OUTPUT());
+        sink.setBatchSize(1024 * CommonConfig.OUTPUT_BATCHSIZE_KB()); // this is 400 MB,
 
+        stream.addSink(sink);
+    }
+
+    private static class Deserializer extends RichMapFunction<String, Tuple4<String, Long, Double, Long>>{
+        private transient JsonEventCodec codec;
+
+        @Override
+        public void open(Configuration parameters) throws Exception {
+            codec = new JsonEventCodec();
         }
-        DataStream<String> joinStream1 = null;
-        DataStream<String> joinStream2 = null;
 
-        for (String host: CommonConfig.DATASOURCE_HOSTS()) {
-            for (int i = 0; i < CommonConfig.DATASOURCE_PORTS().size(); i++){
-                int port = CommonConfig.DATASOURCE_PORTS().get(i);
-                DataStream<String> socketSource_i = env.socketTextStream(host, port);
-                if (i % 2 == 0) {
-                    joinStream1 = joinStream1 == null ? socketSource_i : joinStream1.union(socketSource_i);
-                } else {
-                    joinStream2 = joinStream2 == null ? socketSource_i : joinStream2.union(socketSource_i);
+        @Override
+        public Tuple4<String, Long, Double, Long> map(String s) throws Exception {
+            JsonEventCodec obj = codec.parse(s);
+            return new Tuple4<String, Long, Double, Long>(obj.geo(), obj.ts() , obj.value(), obj.sendTs());
+        }
+
+    }
+
+    /**
+     * Deserialized (geo, ts, price, start_ts) stream of one generator endpoint, read with the configured codec.
+     */
+    private static DataStream<Tuple4<String, Long, Double, Long>> eventStream(StreamExecutionEnvironment env, String host, int port){
+        if (CommonConfig.DATASOURCE_CODEC().equals(CommonConfig.BINARY_CODEC)) {
+            return withTimestamps(env.addSource(new BinarySocketSource(host, port, CommonConfig.DATASOURCE_BATCHSIZE())));
+        }
+        return withTimestamps(env.socketTextStream(host, port).map(new Deserializer()));
+    }
+
+    private static boolean eventTime(){
+        return CommonConfig.FLINK_TIME_CHARACTERISTIC().equals(CommonConfig.EVENT_TIME);
+    }
+
+    /**
+     * In event time, {@code flink.time.characteristic: event}, stamps the records of one endpoint with their
+     * {@code ts} and emits watermarks {@code flink.watermark.lag.ms} behind the largest one seen. Records later than
+     * the watermark plus {@code flink.allowed.lateness.ms} are dropped by the windows, the lag and the lateness add to
+     * the measured latency and to the records the windows hold, see the window_size column of the output. An
+     * {@link EventTimeMonitor} chained to the assigner reports the late records, the watermark lag and the windows
+     * held per subtask.
+     */
+    private static DataStream<Tuple4<String, Long, Double, Long>> withTimestamps(DataStream<Tuple4<String, Long, Double, Long>> events){
+        if (!eventTime()) {
+            return events;
+        }
+        DataStream<Tuple4<String, Long, Double, Long>> stamped =
+                events.assignTimestampsAndWatermarks(new EventTimestamps(CommonConfig.FLINK_WATERMARK_LAG_MS()));
+        // the window join has no allowed lateness
+        boolean join = CommonConfig.BENCHMARKING_USECASE().equals(CommonConfig.JOIN_USECASE);
+        return stamped.transform("event_time_monitor", stamped.getType(),
+                new EventTimeMonitor(CommonConfig.SLIDING_WINDOW_LENGTH(), CommonConfig.SLIDING_WINDOW_SLIDE(),
+                        join ? 0 : CommonConfig.FLINK_ALLOWED_LATENESS_MS(),
+                        !CommonConfig.BENCHMARKING_USECASE().equals(CommonConfig.ALLWINDOWED_AGGREGATION_USECASE)))
+                .setParallelism(stamped.getParallelism());
+    }
+
+    private static class EventTimestamps extends BoundedOutOfOrdernessTimestampExtractor<Tuple4<String, Long, Double, Long>> {
+
+        EventTimestamps(long lagMs) {
+            super(Time.milliseconds(lagMs));
+        }
+
+        @Override
+        public long extractTimestamp(Tuple4<String, Long, Double, Long> event) {
+            return event.f1;
+        }
+    }
+
+    private static DataStream<Tuple4<String, Long, Double, Long>> eventStream(StreamExecutionEnvironment env){
+        return eventStream(env, CommonConfig.DATASOURCE_HOSTS(), CommonConfig.DATASOURCE_PORTS());
+    }
+
+    /**
+     * Events of every host and port. {@code flink.source: parallel} reads them with one {@link ParallelSocketSource}
+     * of up to {@code parallelism} subtasks, otherwise every endpoint is a source of its own and the streams are
+     * unioned. {@code flink.source: generator} ignores the endpoints and generates the events in the job with a
+     * {@link GeneratorSource} of {@code flink.generator.rate} events per second and subtask, for
+     * {@code flink.generator.duration.s}.
+     */
+    private static DataStream<Tuple4<String, Long, Double, Long>> eventStream(StreamExecutionEnvironment env, List<String> hosts, List<Integer> ports){
+        if (CommonConfig.FLINK_SOURCE().equals(CommonConfig.FLINK_GENERATOR_SOURCE)) {
+            return withTimestamps(env.addSource(new GeneratorSource(CommonConfig.FLINK_GENERATOR_RATE(),
+                    TimeUnit.SECONDS.toMillis(CommonConfig.FLINK_GENERATOR_DURATION_S()))));
+        }
+        if (CommonConfig.FLINK_SOURCE().equals(CommonConfig.FLINK_PARALLEL_SOURCE)) {
+            List<String> endpoints = new ArrayList<>();
+            for (String host : hosts) {
+                for (Integer port : ports) {
+                    endpoints.add(host + ":" + port);
                 }
             }
+            return withTimestamps(env.addSource(new ParallelSocketSource(endpoints,
+                    CommonConfig.DATASOURCE_CODEC().equals(CommonConfig.BINARY_CODEC), CommonConfig.DATASOURCE_BATCHSIZE()))
+                    .setParallelism(Math.min(CommonConfig.PARALLELISM(), endpoints.size())));
+        }
+        DataStream<Tuple4<String, Long, Double, Long>> events = null;
+        for (String host : hosts) {
+            for (Integer port: ports){
+                DataStream<Tuple4<String, Long, Double, Long>> events_i = eventStream(env, host, port);
+                events = events == null ? events_i : events.union(events_i);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Joins the even and the odd generator ports on geo over a sliding window. {@code flink.join.operator: hash}
+     * uses the {@link HashJoinOperator} that filters pairs as it finds them instead of the window join's cross
+     * product, processing time only.
+     * <p>
+     * The two modes are not comparable by output count or rate: the hash join emits each pair of events once,
+     * while the window join emits it once per window both events fall in, up to length / slide times.
+     */
+    private static void windowedJoin(StreamExecutionEnvironment env){
+        // read here, on the client, and shipped with the filter rather than read from the config by every task
+        final int filterFactor = CommonConfig.JOIN_FILTER_FACTOR();
+        List<Integer> leftPorts = new ArrayList<>();
+        List<Integer> rightPorts = new ArrayList<>();
+        for (int i = 0; i < CommonConfig.DATASOURCE_PORTS().size(); i++) {
+            (i % 2 == 0 ? leftPorts : rightPorts).add(CommonConfig.DATASOURCE_PORTS().get(i));
+        }
+        DataStream<Tuple4<String, Long, Double, Long>> projectedStream1 = eventStream(env, CommonConfig.DATASOURCE_HOSTS(), leftPorts);
+        DataStream<Tuple4<String, Long, Double, Long>> projectedStream2 = eventStream(env, CommonConfig.DATASOURCE_HOSTS(), rightPorts);
+
+        DataStream< Tuple2<Long, Long>> joinedStream;
+        if (CommonConfig.FLINK_JOIN_OPERATOR().equals(CommonConfig.FLINK_HASH_JOIN) && !eventTime()) {
+            joinedStream = projectedStream1.connect(projectedStream2).keyBy(0, 0).transform("sliding_join",
+                    new TupleTypeInfo<Tuple2<Long, Long>>(BasicTypeInfo.LONG_TYPE_INFO, BasicTypeInfo.LONG_TYPE_INFO),
+                    new HashJoinOperator(CommonConfig.SLIDING_WINDOW_LENGTH(),
+                            PaneWindowState.paneMs(CommonConfig.SLIDING_WINDOW_LENGTH(), CommonConfig.SLIDING_WINDOW_SLIDE()),
+                            filterFactor, CommonConfig.JOIN_MAX_KEY_EVENTS()));
+        } else {
+            joinedStream = projectedStream1.join(projectedStream2).
+                    where(new KeySelector<Tuple4<String, Long, Double, Long>, String>() {
+
+                        @Override
+                        public String getKey(Tuple4<String, Long, Double, Long> tuple) throws Exception {
+                            return tuple.f0;
+                        }
+                    }).
+                    equalTo(new KeySelector<Tuple4<String, Long, Double, Long>, String>() {
+                        @Override
+                        public String getKey(Tuple4<String, Long, Double, Long> tuple) throws Exception {
+                            return tuple.f0;
+                        }
+                    }).
+                    window(eventTime()
+                            ? SlidingEventTimeWindows.of(Time.milliseconds(CommonConfig.SLIDING_WINDOW_LENGTH()), Time.milliseconds(CommonConfig.SLIDING_WINDOW_SLIDE()))
+                            : SlidingProcessingTimeWindows.of(Time.milliseconds(CommonConfig.SLIDING_WINDOW_LENGTH()), Time.milliseconds(CommonConfig.SLIDING_WINDOW_SLIDE())))
+                    .apply(new JoinFunction<Tuple4<String, Long, Double, Long>, Tuple4<String, Long, Double, Long>, Tuple2<Long, Long>>() {
+
+                        @Override
+                        public Tuple2<Long, Long> join(Tuple4<String, Long, Double, Long> t1, Tuple4<String, Long, Double, Long> t2) throws Exception {
+                            Long latency = Math.max(t1.f1,t2.f1);
+                            Long startTS =  latency == t1.f1 ? t1.f3 : t2.f3;
+                            return new Tuple2<>(latency, startTS);
+                        }
+                    }).filter(x -> x.f1 % filterFactor == 0);
         }
 
-        DataStream<Tuple4<String, Long, Double, Long>> projectedStream1 = joinStream1.map(new Deserializer());
-        DataStream<Tuple4<String, Long, Double, Long>> projectedStream2 = joinStream2.map(new Deserializer());
-
-        DataStream< Tuple2<Long, Long>> joinedStream = projectedStream1.join(projectedStream2).
-                where(new KeySelector<Tuple4<String, Long, Double, Long>, String>() {
-
-                    @Override
-                    public String getKey(Tuple4<String, Long, Double, Long> tuple) throws Exception {
-                        return tuple.f0;
-                    }
-                }).
-                equalTo(new KeySelector<Tuple4<String, Long, Double, Long>, String>() {
-                    @Override
-                    public String getKey(Tuple4<String, Long, Double, Long> tuple) throws Exception {
-                        return tuple.f0;
-                    }
-                }).
-                window(SlidingProcessingTimeWindows.of(Time.milliseconds(CommonConfig.SLIDING_WINDOW_LENGTH()), Time.milliseconds(CommonConfig.SLIDING_WINDOW_SLIDE())))
-                .apply(new JoinFunction<Tuple4<String, Long, Double, Long>, Tuple4<String, Long, Double, Long>, Tuple2<Long, Long>>() {
-
-                    @Override
-                    public Tuple2<Long, Long> join(Tuple4<String, Long, Double, Long> t1, Tuple4<String, Long, Double, Long> t2) throws Exception {
-                        Long latency = Math.max(t1.f1,t2.f1);
-                        Long startTS =  latency == t1.f1 ? t1.f3 : t2.f3;
-                        return new Tuple2<>(latency, startTS);
-                    }
-                });
-
-
-        DataStream<Tuple3<Long, Long, Long>> resultingStream = joinedStream.filter(x -> x.f1 % CommonConfig.JOIN_FILTER_FACTOR() == 0)
-                .map(new MapFunction<Tuple2<Long, Long>, Tuple3<Long, Long, Long>>() {
+
+        DataStream<Tuple3<Long, Long, Long>> resultingStream = joinedStream.map(new MapFunction<Tuple2<Long, Long>, Tuple3<Long, Long, Long>>() {
             @Override
             public Tuple3<Long, Long, Long> map(Tuple2<Long, Long> l) throws Exception {
                 return new Tuple3< Long, Long, Long>( System.currentTimeMillis()  - l.f0, l.f0, l.f1);
@@ -154,50 +394,36 @@ public class FlinkBenchmark {
 
 
 
-        RollingSink sink = new RollingSink<String>(CommonConfig.FLINK_OUTPUT());
-        sink.setBatchSize(1024 * CommonConfig.OUTPUT_BATCHSIZE_KB()); // this is 400 MB,
-
-        resultingStream.addSink(sink);
+        addResultSink(resultingStream, 0, 1, 2);
 
     }
 
 
 
 
+    /**
+     * Averages prices per key over a sliding window. {@code flink.window.operator: pane} uses the
+     * {@link PaneWindowAvgOperator} that shares panes between overlapping windows, otherwise a Flink window folds
+     * the events into one {@link AvgAccumulator} per window. Panes need processing time.
+     */
     private static void keyedWindowedAggregationBenchmark(StreamExecutionEnvironment env){
-        DataStream<String> socketSource = null;
-        for (String host : CommonConfig.DATASOURCE_HOSTS()) {
-            for (Integer port: CommonConfig.DATASOURCE_PORTS()){
-                DataStream<String> socketSource_i = env.socketTextStream(host, port);
-                socketSource = socketSource == null ? socketSource_i : socketSource.union(socketSource_i);
+        DataStream<Tuple6<String, Long, Double, Integer,Integer, Long>> aggregatedStream;
+        if (CommonConfig.FLINK_WINDOW_OPERATOR().equals(CommonConfig.FLINK_PANE_WINDOW) && !eventTime()) {
+            aggregatedStream = eventStream(env).keyBy(0).transform("sliding_avg",
+                    new TupleTypeInfo<Tuple6<String, Long, Double, Integer, Integer, Long>>(
+                            BasicTypeInfo.STRING_TYPE_INFO, BasicTypeInfo.LONG_TYPE_INFO, BasicTypeInfo.DOUBLE_TYPE_INFO,
+                            BasicTypeInfo.INT_TYPE_INFO, BasicTypeInfo.INT_TYPE_INFO, BasicTypeInfo.LONG_TYPE_INFO),
+                    new PaneWindowAvgOperator(CommonConfig.SLIDING_WINDOW_LENGTH(), CommonConfig.SLIDING_WINDOW_SLIDE()));
+        } else {
+            WindowedStream<Tuple4<String, Long, Double, Long>, Tuple, TimeWindow> windowedStream = eventStream(env).keyBy(0)
+                    .timeWindow(Time.milliseconds(CommonConfig.SLIDING_WINDOW_LENGTH()), Time.milliseconds(CommonConfig.SLIDING_WINDOW_SLIDE()));
+            if (eventTime()) {
+                windowedStream = windowedStream.allowedLateness(Time.milliseconds(CommonConfig.FLINK_ALLOWED_LATENESS_MS()));
             }
+            aggregatedStream = windowedStream.fold(new AvgAccumulator(), new AvgAccumulator.Fold())
+                    .map(new AvgAccumulator.ToTuple());
         }
 
-        DataStream<Tuple6<String, Long, Double, Integer,Integer, Long>> messageStream = socketSource.map(new MapFunction<String, Tuple6<String, Long, Double, Integer,Integer, Long>>() {
-                    @Override
-                    public Tuple6<String, Long, Double, Integer,Integer, Long> map(String s) throws Exception {
-                        JSONObject obj = new JSONObject(s);
-                        String geo = obj.getString("key");
-                        Double price = obj.getDouble("value");
-                        Long ts =  obj.getLong("ts");
-                        return new Tuple6<String, Long, Double, Integer,Integer, Long>(geo, ts , price, 1 ,1, System.currentTimeMillis());
-                    }
-                });
-
-        DataStream<Tuple6<String, Long, Double, Integer,Integer, Long>> aggregatedStream = messageStream.keyBy(0)
-                .timeWindow(Time.milliseconds(CommonConfig.SLIDING_WINDOW_LENGTH()), Time.milliseconds(CommonConfig.SLIDING_WINDOW_SLIDE())).
-                        reduce(new ReduceFunction<Tuple6<String, Long, Double, Integer,Integer, Long>>() {
-                            @Override
-                            public Tuple6<String, Long, Double, Integer,Integer, Long> reduce(Tuple6<String, Long, Double, Integer,Integer, Long> t1, Tuple6<String, Long, Double, Integer,Integer, Long> t2) throws Exception {
-                                Double avgPrice = (t1.f3 * t1.f2 + t2.f3 * t2.f2) / t1.f3 + t2.f3;
-                                Integer avgCount = t1.f3 + t2.f3;
-                                Integer windowCount = t1.f4 + t2.f4;
-                                Long ts = Math.max(t1.f1, t2.f1);
-                                Long startTS = ts == t1.f1 ? t1.f5 : t2.f5;
-                                return new Tuple6<String, Long, Double, Integer,Integer, Long>(t1.f0, ts, avgPrice, avgCount,windowCount, startTS);
-                            }
-                        });
-
 
         DataStream<Tuple6<String, Long, Double,Integer,Long, Long>> mappedStream = aggregatedStream.map(new MapFunction<Tuple6<String, Long, Double, Integer, Integer, Long>, Tuple6<String, Long, Double, Integer, Long, Long>>() {
             @Override
@@ -207,10 +433,7 @@ public class FlinkBenchmark {
         });
 
 
-        RollingSink sink = new RollingSink<String>(CommonConfig.FLINK_OUTPUT());
-        sink.setBatchSize(1024 * CommonConfig.OUTPUT_BATCHSIZE_KB()); // this is 400 MB,
-
-        mappedStream.addSink(sink);
+        addResultSink(mappedStream, 1, 4, 5);
     }
 
 
@@ -219,38 +442,14 @@ public class FlinkBenchmark {
 
 
     private static void allWindowedAggregationBenchmark(StreamExecutionEnvironment env){
-        DataStream<String> socketSource = null;
-        for (String host : CommonConfig.DATASOURCE_HOSTS()) {
-            for (Integer port: CommonConfig.DATASOURCE_PORTS()){
-                DataStream<String> socketSource_i = env.socketTextStream(host, port);
-                socketSource = socketSource == null ? socketSource_i : socketSource.union(socketSource_i);
-            }
+        AllWindowedStream<Tuple4<String, Long, Double, Long>, TimeWindow> windowedStream = eventStream(env)
+                .timeWindowAll(Time.milliseconds(CommonConfig.SLIDING_WINDOW_LENGTH()), Time.milliseconds(CommonConfig.SLIDING_WINDOW_SLIDE()));
+        if (eventTime()) {
+            windowedStream = windowedStream.allowedLateness(Time.milliseconds(CommonConfig.FLINK_ALLOWED_LATENESS_MS()));
         }
-
-        DataStream<Tuple6<String, Long, Double, Integer,Integer, Long>> messageStream = socketSource.map(new MapFunction<String, Tuple6<String, Long, Double, Integer,Integer, Long>>() {
-            @Override
-            public Tuple6<String, Long, Double, Integer,Integer, Long> map(String s) throws Exception {
-                JSONObject obj = new JSONObject(s);
-                String geo = obj.getString("key");
-                Double price = obj.getDouble("value");
-                Long ts =  obj.getLong("ts");
-                return new Tuple6<String, Long, Double, Integer,Integer, Long>(geo, ts , price, 1 ,1, System.currentTimeMillis());
-            }
-        });
-
-        DataStream<Tuple6<String, Long, Double, Integer,Integer, Long>> aggregatedStream = messageStream
-                .timeWindowAll(Time.milliseconds(CommonConfig.SLIDING_WINDOW_LENGTH()), Time.milliseconds(CommonConfig.SLIDING_WINDOW_SLIDE())).
-                        reduce(new ReduceFunction<Tuple6<String, Long, Double, Integer,Integer, Long>>() {
-                            @Override
-                            public Tuple6<String, Long, Double, Integer,Integer, Long> reduce(Tuple6<String, Long, Double, Integer,Integer, Long> t1, Tuple6<String, Long, Double, Integer,Integer, Long> t2) throws Exception {
-                                Double avgPrice = (t1.f3 * t1.f2 + t2.f3 * t2.f2) / t1.f3 + t2.f3;
-                                Integer avgCount = t1.f3 + t2.f3;
-                                Integer windowCount = t1.f4 + t2.f4;
-                                Long ts = Math.max(t1.f1, t2.f1);
-                                Long startTS = ts == t1.f1 ? t1.f5 : t2.f5;
-                                return new Tuple6<String, Long, Double, Integer,Integer, Long>(t1.f0, ts, avgPrice, avgCount,windowCount, startTS);
-                            }
-                        });
+        DataStream<Tuple6<String, Long, Double, Integer,Integer, Long>> aggregatedStream = windowedStream
+                .fold(new AvgAccumulator(), new AvgAccumulator.Fold())
+                .map(new AvgAccumulator.ToTuple());
 
 
         DataStream<Tuple6<String, Long, Double,Integer,Long, Long>> mappedStream = aggregatedStream.map(new MapFunction<Tuple6<String, Long, Double, Integer, Integer, Long>, Tuple6<String, Long, Double, Integer, Long, Long>>() {
@@ -261,10 +460,7 @@ public class FlinkBenchmark {
         });
 
 
-        RollingSink sink = new RollingSink<String>(CommonConfig.FLINK_OUTPUT());
-        sink.setBatchSize(1024 * CommonConfig.OUTPUT_BATCHSIZE_KB()); // this is 400 MB,
-
-        mappedStream.addSink(sink);
+        addResultSink(mappedStream, 1, 4, 5);
     }
 
 
@@ -0,0 +1,106 @@
+package flink.benchmark;
+
+import benchmark.common.CommonConfig;
+import benchmark.common.latency.LatencyRecorder;
+import org.HdrHistogram.Histogram;
+import org.apache.flink.api.common.JobExecutionResult;
+import org.apache.flink.api.java.utils.ParameterTool;
+import org.apache.flink.configuration.ConfigConstants;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the configured use case on a local mini cluster once per combination of {@code flink.sweep.buffer.timeouts},
+ * {@code flink.sweep.network.buffers} and {@code flink.sweep.parallelism}, each list defaulting to the single value
+ * of a normal run, and prints a table of throughput and latency percentiles per combination. The events come from
+ * the in-job {@link GeneratorSource}, so every run lasts {@code flink.generator.duration.s} and needs no generator
+ * process, and the latencies are collected in a {@link LatencyAccumulator} instead of being written out. The
+ * throughput is the sum of the rates of the generator subtasks between their first and their last emit. With
+ * {@code flink.checkpoint.interval.ms} set, every row also has the number of checkpoints, their average size
+ * polled from the web interface of the mini cluster, and the p99 of their duration and of the barrier delay at
+ * the sink from {@link CheckpointStats}.
+ * <p>
+ * To Run: java -cp target/flink-benchmarks-0.1.0.jar flink.benchmark.FlinkSweep --confPath ../conf/benchmarkConf.yaml
+ */
+public class FlinkSweep {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FlinkSweep.class);
+
+    public static void main(String[] args) throws Exception {
+        if (args == null || args.length != 2) {
+            throw new Exception("configuration file parameter is needed. Ex: --confPath ../conf/benchmarkConf.yaml");
+        }
+        CommonConfig.initializeConfig(ParameterTool.fromArgs(args).getRequired("confPath"));
+        CommonConfig.set("flink.source", CommonConfig.FLINK_GENERATOR_SOURCE);
+        CommonConfig.set("output.sink", CommonConfig.ACCUMULATOR_SINK);
+
+        List<String> rows = new ArrayList<>();
+        for (long parallelism : CommonConfig.FLINK_SWEEP_PARALLELISM()) {
+            for (long buffers : CommonConfig.FLINK_SWEEP_NETWORK_BUFFERS()) {
+                for (long timeout : CommonConfig.FLINK_SWEEP_BUFFER_TIMEOUTS()) {
+                    rows.add(run(timeout, buffers, (int) parallelism));
+                    LOG.info("{}", rows.get(rows.size() - 1));
+                }
+            }
+        }
+
+        StringBuilder percentiles = new StringBuilder();
+        for (double percentile : LatencyRecorder.PERCENTILES) {
+            percentiles.append(String.format(" %9s", "p" + percentile));
+        }
+        System.out.println(String.format("%10s %8s %11s %12s %10s", "timeout_ms", "buffers", "parallelism",
+                "events/s", "results") + percentiles + String.format(" %9s %6s %12s %9s %11s", "max",
+                "ckpts", "ckpt_bytes", "ckpt_p99", "barrier_p99"));
+        for (String row : rows) {
+            System.out.println(row);
+        }
+    }
+
+    private static String run(long timeout, long buffers, int parallelism) throws Exception {
+        CommonConfig.set("flush.rate", timeout);
+        CommonConfig.set("parallelism", parallelism);
+        Configuration configuration = new Configuration();
+        configuration.setInteger(ConfigConstants.TASK_MANAGER_NETWORK_NUM_BUFFERS_KEY, (int) buffers);
+        String name = "sweep timeout " + timeout + " buffers " + buffers + " parallelism " + parallelism;
+        CheckpointPoller poller = null;
+        if (CommonConfig.FLINK_CHECKPOINT_INTERVAL_MS() > 0) {
+            // the checkpoint sizes are only known to the JobManager
+            configuration.setBoolean(ConfigConstants.LOCAL_START_WEBSERVER, true);
+            poller = new CheckpointPoller(CommonConfig.FLINK_WEB_URL(), name, null);
+        }
+        StreamExecutionEnvironment env = StreamExecutionEnvironment.createLocalEnvironment(parallelism, configuration);
+        FlinkBenchmark.buildJob(env);
+        Thread polling = poller == null ? null : poller.start();
+        JobExecutionResult result;
+        try {
+            result = env.execute(name);
+        } finally {
+            if (polling != null) {
+                polling.interrupt();
+                poller.finish();
+            }
+        }
+
+        // the job's runtime would include deployment and shut down, the sources time their own emits
+        Double eventRate = result.getAccumulatorResult(GeneratorSource.RATE_ACCUMULATOR);
+        Histogram latencies = result.getAccumulatorResult(LatencyAccumulatorSink.ACCUMULATOR);
+        StringBuilder row = new StringBuilder(String.format("%10d %8d %11d %12d %10d", timeout, buffers, parallelism,
+                eventRate == null ? 0 : eventRate.longValue(), latencies == null ? 0 : latencies.getTotalCount()));
+        for (double percentile : LatencyRecorder.PERCENTILES) {
+            row.append(String.format(" %9d", latencies == null ? 0 : latencies.getValueAtPercentile(percentile)));
+        }
+        row.append(String.format(" %9d", latencies == null ? 0 : latencies.getMaxValue()));
+        Histogram durations = result.getAccumulatorResult(CheckpointStats.DURATION_ACCUMULATOR);
+        Histogram barrierDelays = result.getAccumulatorResult(CheckpointStats.BARRIER_DELAY_ACCUMULATOR);
+        row.append(String.format(" %6d %12d %9d %11d", poller == null ? 0 : poller.checkpoints(),
+                poller == null ? 0 : poller.averageBytes(),
+                durations == null ? 0 : durations.getValueAtPercentile(99),
+                barrierDelays == null ? 0 : barrierDelays.getValueAtPercentile(99)));
+        return row.toString();
+    }
+}
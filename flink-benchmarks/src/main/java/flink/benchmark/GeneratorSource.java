@@ -0,0 +1,73 @@
+package flink.benchmark;
+
+import benchmark.common.codec.GeoKeys;
+import data.source.model.AdsEvent;
+import data.source.model.Event;
+import data.source.socket.RatePacer;
+import data.source.socket.RateProfile;
+import org.apache.flink.api.common.accumulators.DoubleCounter;
+import org.apache.flink.api.common.accumulators.LongCounter;
+import org.apache.flink.api.java.tuple.Tuple4;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.streaming.api.functions.source.RichParallelSourceFunction;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates ad events inside the job, for runs without a data generator process. Every subtask produces a
+ * disjoint slice of the keys at {@code rate} events per second, 0 for unthrottled, on the open loop schedule of
+ * the data generator, and stops after {@code durationMs} so that the job finishes. The events emitted are counted
+ * in the accumulator {@value #ACCUMULATOR}, and every subtask adds its rate between its first and its last emit
+ * to {@value #RATE_ACCUMULATOR}, events per second free of the job's start up and shut down time.
+ */
+public class GeneratorSource extends RichParallelSourceFunction<Tuple4<String, Long, Double, Long>> {
+
+    public static final String ACCUMULATOR = "events";
+    public static final String RATE_ACCUMULATOR = "eventRate";
+
+    private final double rate;
+    private final long durationMs;
+    private volatile boolean isRunning = true;
+
+    public GeneratorSource(double rate, long durationMs) {
+        this.rate = rate;
+        this.durationMs = durationMs;
+    }
+
+    @Override
+    public void run(SourceContext<Tuple4<String, Long, Double, Long>> ctx) throws Exception {
+        LongCounter emitted = new LongCounter();
+        getRuntimeContext().addAccumulator(ACCUMULATOR, emitted);
+        DoubleCounter eventRate = new DoubleCounter();
+        getRuntimeContext().addAccumulator(RATE_ACCUMULATOR, eventRate);
+        AdsEvent ads = new AdsEvent(1.0, getRuntimeContext().getIndexOfThisSubtask(),
+                getRuntimeContext().getNumberOfParallelSubtasks());
+        Event event = new Event();
+        RatePacer pacer = new RatePacer(RateProfile.constant(rate > 0 ? rate : RateProfile.UNTHROTTLED));
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMs);
+        long count = 0;
+        long firstEmit = 0;
+        long lastEmit = 0;
+        pacer.start();
+        while (isRunning && pacer.acquire() - end < 0) {
+            ads.generate(event);
+            synchronized (ctx.getCheckpointLock()) {
+                ctx.collect(new Tuple4<String, Long, Double, Long>(GeoKeys.name(event.key), event.ts,
+                        (double) event.price, event.ts));
+                emitted.add(1L);
+            }
+            lastEmit = System.nanoTime();
+            if (count++ == 0) {
+                firstEmit = lastEmit;
+            }
+        }
+        if (count > 1) {
+            eventRate.add((count - 1) * 1e9 / (lastEmit - firstEmit));
+        }
+    }
+
+    @Override
+    public void cancel() {
+        isRunning = false;
+    }
+}
@@ -0,0 +1,161 @@
+package flink.benchmark;
+
+import benchmark.common.codec.GeoKeys;
+import benchmark.common.join.JoinKeyBuckets;
+import benchmark.common.join.JoinSide;
+import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.api.java.tuple.Tuple4;
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.streaming.api.operators.AbstractStreamOperator;
+import org.apache.flink.streaming.api.operators.ChainingStrategy;
+import org.apache.flink.streaming.api.operators.TwoInputStreamOperator;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.runtime.operators.Triggerable;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+
+/**
+ * Processing time windowed equi join of two (geo, ts, price, start_ts) streams on geo, the Flink counterpart of
+ * Storm's symmetric hash join bolt. Runs on connected streams keyed by geo. Every arriving event probes the
+ * other side for events of its key that arrived within the window length, then is added to its own side, so
+ * each pair is checked once and only pairs passing the {@code filterFactor} filter are emitted, as (ts,
+ * start_ts) of their newer event. Nothing is materialised per pair, the work follows the output rather than the
+ * cross product of a window.
+ * <p>
+ * Keys of the {@link GeoKeys} dictionary are slots of an array, other keys go to a map, see {@link JoinSide}. Per
+ * key and side the ts and start_ts of the events are kept in the primitive arrays of {@link JoinKeyBuckets},
+ * bucketed by arrival time; expired buckets are dropped as a whole and, with {@code maxKeyEvents} greater than
+ * zero, the oldest bucket of a key is dropped early once the key holds more events. A timer evicts idle keys
+ * every second. The state is not checkpointed.
+ * <p>
+ * Registers the gauges "joinStateEvents", "joinKeys", "droppedEvents" and "outputRate" (pairs per second).
+ */
+public class HashJoinOperator extends AbstractStreamOperator<Tuple2<Long, Long>>
+        implements TwoInputStreamOperator<Tuple4<String, Long, Double, Long>, Tuple4<String, Long, Double, Long>, Tuple2<Long, Long>>,
+        Triggerable, JoinKeyBuckets.Pairs {
+
+    private static final long EVICTION_INTERVAL_MS = 1000;
+
+    private final long lengthMs;
+    private final long bucketMs;
+    private final int filterFactor;
+    private final int maxKeyEvents;
+
+    private transient JoinSide left;
+    private transient JoinSide right;
+    private transient long watermark1;
+    private transient long watermark2;
+    private transient long emitted;
+    private transient long lastEmitted;
+    private transient volatile long outputRate;
+    private transient volatile long stateEvents;
+    private transient volatile long dropped;
+
+    /**
+     * @param maxKeyEvents events kept per key and side, 0 for no limit besides the window
+     */
+    public HashJoinOperator(long lengthMs, long bucketMs, int filterFactor, int maxKeyEvents) {
+        this.lengthMs = lengthMs;
+        this.bucketMs = bucketMs;
+        this.filterFactor = filterFactor;
+        this.maxKeyEvents = maxKeyEvents;
+        setChainingStrategy(ChainingStrategy.ALWAYS);
+    }
+
+    @Override
+    public void open() throws Exception {
+        super.open();
+        // the bucket currently filled plus the ones still overlapping the window
+        int buckets = (int) ((lengthMs + bucketMs - 1) / bucketMs) + 1;
+        left = new JoinSide(buckets, maxKeyEvents);
+        right = new JoinSide(buckets, maxKeyEvents);
+        watermark1 = Long.MIN_VALUE;
+        watermark2 = Long.MIN_VALUE;
+        MetricGroup metrics = getRuntimeContext().getMetricGroup();
+        metrics.gauge("joinStateEvents", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return stateEvents;
+            }
+        });
+        metrics.gauge("joinKeys", new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return left.keys() + right.keys();
+            }
+        });
+        metrics.gauge("droppedEvents", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return dropped;
+            }
+        });
+        metrics.gauge("outputRate", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return outputRate;
+            }
+        });
+        registerTimer(System.currentTimeMillis() + EVICTION_INTERVAL_MS, this);
+    }
+
+    @Override
+    public void processElement1(StreamRecord<Tuple4<String, Long, Double, Long>> element) throws Exception {
+        join(element.getValue(), left, right);
+    }
+
+    @Override
+    public void processElement2(StreamRecord<Tuple4<String, Long, Double, Long>> element) throws Exception {
+        join(element.getValue(), right, left);
+    }
+
+    private void join(Tuple4<String, Long, Double, Long> event, JoinSide own, JoinSide other) {
+        long now = System.currentTimeMillis();
+        long oldest = (now - lengthMs) / bucketMs;
+        String geo = event.f0;
+        int id = JoinSide.id(geo);
+        long ts = event.f1;
+        long startTs = event.f3;
+        JoinKeyBuckets candidates = other.get(id, geo);
+        if (candidates != null) {
+            emitted += candidates.probe(oldest, ts, startTs, filterFactor, this);
+        }
+        int evicted = own.getOrCreate(id, geo).add(now / bucketMs, ts, startTs);
+        if (evicted > 0) {
+            dropped += evicted;
+        }
+    }
+
+    @Override
+    public void emit(long ts, long startTs) {
+        output.collect(new StreamRecord<>(new Tuple2<Long, Long>(ts, startTs)));
+    }
+
+    @Override
+    public void processWatermark1(Watermark mark) throws Exception {
+        watermark1 = mark.getTimestamp();
+        emitWatermark();
+    }
+
+    @Override
+    public void processWatermark2(Watermark mark) throws Exception {
+        watermark2 = mark.getTimestamp();
+        emitWatermark();
+    }
+
+    private void emitWatermark() {
+        long watermark = Math.min(watermark1, watermark2);
+        if (watermark > Long.MIN_VALUE) {
+            output.emitWatermark(new Watermark(watermark));
+        }
+    }
+
+    @Override
+    public void trigger(long timestamp) throws Exception {
+        long oldest = (System.currentTimeMillis() - lengthMs) / bucketMs;
+        stateEvents = left.evictIdleKeys(oldest) + right.evictIdleKeys(oldest);
+        outputRate = (emitted - lastEmitted) * 1000 / EVICTION_INTERVAL_MS;
+        lastEmitted = emitted;
+        registerTimer(timestamp + EVICTION_INTERVAL_MS, this);
+    }
+}
@@ -0,0 +1,45 @@
+package flink.benchmark;
+
+import benchmark.common.latency.LatencyRecorder;
+import org.HdrHistogram.Histogram;
+import org.apache.flink.api.common.accumulators.Accumulator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Flink accumulator of latencies in milliseconds, an HdrHistogram with the precision and range of
+ * {@link LatencyRecorder}. The subtask histograms are merged into the job result.
+ */
+public class LatencyAccumulator implements Accumulator<Long, Histogram> {
+
+    private static final long HIGHEST_TRACKABLE_MS = TimeUnit.HOURS.toMillis(1);
+
+    private Histogram histogram = new Histogram(1, HIGHEST_TRACKABLE_MS, LatencyRecorder.SIGNIFICANT_DIGITS);
+
+    @Override
+    public void add(Long latencyMs) {
+        histogram.recordValue(Math.min(Math.max(latencyMs, 0), HIGHEST_TRACKABLE_MS));
+    }
+
+    @Override
+    public Histogram getLocalValue() {
+        return histogram;
+    }
+
+    @Override
+    public void resetLocal() {
+        histogram.reset();
+    }
+
+    @Override
+    public void merge(Accumulator<Long, Histogram> other) {
+        histogram.add(other.getLocalValue());
+    }
+
+    @Override
+    public LatencyAccumulator clone() {
+        LatencyAccumulator copy = new LatencyAccumulator();
+        copy.histogram = histogram.copy();
+        return copy;
+    }
+}
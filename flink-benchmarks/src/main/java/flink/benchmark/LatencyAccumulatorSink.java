@@ -0,0 +1,33 @@
+package flink.benchmark;
+
+import org.apache.flink.api.java.tuple.Tuple;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.streaming.api.functions.sink.RichSinkFunction;
+
+/**
+ * Records the latency field of every result into the {@link LatencyAccumulator} {@value #ACCUMULATOR}, which
+ * the job result returns. Used by {@link FlinkSweep} to collect the latencies of a run without any output.
+ */
+public class LatencyAccumulatorSink<T extends Tuple> extends RichSinkFunction<T> {
+
+    public static final String ACCUMULATOR = "latency";
+
+    private final int latencyField;
+    private transient LatencyAccumulator latencies;
+
+    public LatencyAccumulatorSink(int latencyField) {
+        this.latencyField = latencyField;
+    }
+
+    @Override
+    public void open(Configuration parameters) throws Exception {
+        latencies = new LatencyAccumulator();
+        getRuntimeContext().addAccumulator(ACCUMULATOR, latencies);
+    }
+
+    @Override
+    public void invoke(T value) throws Exception {
+        Long latency = value.getField(latencyField);
+        latencies.add(latency);
+    }
+}
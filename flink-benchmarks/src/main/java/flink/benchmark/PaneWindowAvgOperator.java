@@ -0,0 +1,70 @@
+package flink.benchmark;
+
+import benchmark.common.window.PaneWindowState;
+import org.apache.flink.api.java.tuple.Tuple4;
+import org.apache.flink.api.java.tuple.Tuple6;
+import org.apache.flink.streaming.api.operators.AbstractStreamOperator;
+import org.apache.flink.streaming.api.operators.ChainingStrategy;
+import org.apache.flink.streaming.api.operators.OneInputStreamOperator;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.runtime.operators.Triggerable;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+
+/**
+ * Processing time sliding window average per key that shares panes between overlapping windows, the Flink
+ * counterpart of Storm's pane window bolt. Runs after a keyBy on "geo" and keeps the keys of its subtask in a
+ * {@link PaneWindowState}: every event updates one pane instead of the {@code length / slide} windows it belongs
+ * to, and the state holds one partial per key and pane. Emits the (geo, ts, avg_price, count, window_size,
+ * start_ts) records of the window reduce. Panes are closed by arriving events and by a timer at every pane end.
+ * The state is not checkpointed.
+ */
+public class PaneWindowAvgOperator
+        extends AbstractStreamOperator<Tuple6<String, Long, Double, Integer, Integer, Long>>
+        implements OneInputStreamOperator<Tuple4<String, Long, Double, Long>, Tuple6<String, Long, Double, Integer, Integer, Long>>,
+        Triggerable, PaneWindowState.Emitter {
+
+    private final long lengthMs;
+    private final long slideMs;
+    private transient PaneWindowState window;
+    private transient long paneMs;
+
+    public PaneWindowAvgOperator(long lengthMs, long slideMs) {
+        this.lengthMs = lengthMs;
+        this.slideMs = slideMs;
+        setChainingStrategy(ChainingStrategy.ALWAYS);
+    }
+
+    @Override
+    public void open() throws Exception {
+        super.open();
+        window = new PaneWindowState(lengthMs, slideMs);
+        paneMs = PaneWindowState.paneMs(lengthMs, slideMs);
+        long now = System.currentTimeMillis();
+        window.advance(now, this);
+        registerTimer(now - now % paneMs + paneMs, this);
+    }
+
+    @Override
+    public void processElement(StreamRecord<Tuple4<String, Long, Double, Long>> element) throws Exception {
+        window.advance(System.currentTimeMillis(), this);
+        Tuple4<String, Long, Double, Long> event = element.getValue();
+        window.add(event.f0, event.f2, 1, event.f1, event.f3);
+    }
+
+    @Override
+    public void processWatermark(Watermark mark) throws Exception {
+        output.emitWatermark(mark);
+    }
+
+    @Override
+    public void trigger(long timestamp) throws Exception {
+        window.advance(System.currentTimeMillis(), this);
+        registerTimer(timestamp + paneMs, this);
+    }
+
+    @Override
+    public void emit(String key, long ts, double sum, long count, long startTs) {
+        output.collect(new StreamRecord<>(new Tuple6<String, Long, Double, Integer, Integer, Long>(
+                key, ts, sum / count, (int) count, (int) count, startTs)));
+    }
+}
@@ -0,0 +1,281 @@
+package flink.benchmark;
+
+import benchmark.common.codec.BinaryEventCodec;
+import benchmark.common.codec.GeoKeys;
+import benchmark.common.codec.JsonEventCodec;
+import org.apache.flink.api.java.tuple.Tuple4;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.streaming.api.functions.source.RichParallelSourceFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Parallel source over a list of generator endpoints, {@code host:port} strings. Subtask i of n reads the
+ * endpoints i, i + n, ... on one selector, each into its own reusable heap buffer, and decodes json lines or
+ * {@link BinaryEventCodec} records straight into (geo, ts, price, start_ts) tuples, without a String per line.
+ * The records of one read are emitted under a single checkpoint lock. A closed or failed connection is reopened
+ * with an exponential backoff, like Storm's {@code SocketRecordReader}, until the source is cancelled.
+ * <p>
+ * Registers the gauges "ingestRate" (records per second over the last second), "ingestLagMs" (wall clock minus
+ * the ts of the last record), "fullReadsPercent" and "reconnects" per subtask. Java does not expose the bytes
+ * waiting in the socket receive buffer, a read that fills the whole buffer is the sign that more were waiting:
+ * "fullReadsPercent" is the share of such reads over the last second, near 100 when the subtask falls behind
+ * the generator and the kernel buffers back up.
+ */
+public class ParallelSocketSource extends RichParallelSourceFunction<Tuple4<String, Long, Double, Long>> {
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelSocketSource.class);
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final long SELECT_TIMEOUT_MS = 100;
+    private static final long MIN_BACKOFF_MS = 100;
+    private static final long MAX_BACKOFF_MS = 5000;
+
+    private final List<String> endpoints;
+    private final boolean binary;
+    private final boolean framed;
+    private volatile boolean isRunning = true;
+
+    private transient JsonEventCodec json;
+    private transient volatile long rate;
+    private transient volatile long lastTs;
+    private transient volatile long fullReadsPercent;
+    private transient volatile long reconnects;
+    private transient long reads;
+    private transient long fullReads;
+
+    /**
+     * @param batchSize the {@code datasourcesocket.batchsize} the generator was started with, binary records are
+     *                  length-prefixed when it is greater than zero
+     */
+    public ParallelSocketSource(List<String> endpoints, boolean binary, int batchSize) {
+        this.endpoints = new ArrayList<>(endpoints);
+        this.binary = binary;
+        this.framed = binary && batchSize > 0;
+    }
+
+    @Override
+    public void open(Configuration parameters) throws Exception {
+        json = new JsonEventCodec();
+        MetricGroup metrics = getRuntimeContext().getMetricGroup();
+        metrics.gauge("ingestRate", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return rate;
+            }
+        });
+        metrics.gauge("ingestLagMs", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return lastTs == 0 ? 0 : System.currentTimeMillis() - lastTs;
+            }
+        });
+        metrics.gauge("fullReadsPercent", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return fullReadsPercent;
+            }
+        });
+        metrics.gauge("reconnects", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return reconnects;
+            }
+        });
+    }
+
+    @Override
+    public void run(SourceContext<Tuple4<String, Long, Double, Long>> ctx) throws Exception {
+        int subtask = getRuntimeContext().getIndexOfThisSubtask();
+        int subtasks = getRuntimeContext().getNumberOfParallelSubtasks();
+        List<Connection> disconnected = new ArrayList<>();
+        for (int i = subtask; i < endpoints.size(); i += subtasks) {
+            disconnected.add(new Connection(endpoints.get(i)));
+        }
+        try (Selector selector = Selector.open()) {
+            long count = 0;
+            long lastCount = 0;
+            long nextRate = System.currentTimeMillis() + 1000;
+            while (isRunning) {
+                connect(selector, disconnected);
+                selector.select(SELECT_TIMEOUT_MS);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        int emitted = read(key, ctx);
+                        if (emitted < 0) {
+                            disconnect(key, disconnected, "closed by the generator");
+                        } else {
+                            count += emitted;
+                        }
+                    } catch (IOException e) {
+                        disconnect(key, disconnected, "failed: " + e);
+                    }
+                }
+                long now = System.currentTimeMillis();
+                if (now >= nextRate) {
+                    rate = (count - lastCount) * 1000 / (now - nextRate + 1000);
+                    fullReadsPercent = reads == 0 ? 0 : fullReads * 100 / reads;
+                    reads = 0;
+                    fullReads = 0;
+                    lastCount = count;
+                    nextRate = now + 1000;
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens the connections whose backoff has passed, a failed attempt doubles the backoff up to
+     * {@link #MAX_BACKOFF_MS}.
+     */
+    private void connect(Selector selector, List<Connection> disconnected) {
+        long now = System.currentTimeMillis();
+        Iterator<Connection> it = disconnected.iterator();
+        while (it.hasNext()) {
+            Connection connection = it.next();
+            if (connection.nextAttempt > now) {
+                continue;
+            }
+            if (connection.attempts++ > 0) {
+                reconnects++;
+            }
+            String[] endpoint = connection.endpoint.split(":");
+            try {
+                SocketChannel channel = SocketChannel.open(new InetSocketAddress(endpoint[0], Integer.parseInt(endpoint[1])));
+                channel.configureBlocking(false);
+                channel.register(selector, SelectionKey.OP_READ, connection);
+                connection.buffer.clear();
+                connection.remainingInFrame = 0;
+                connection.backoff = MIN_BACKOFF_MS;
+                it.remove();
+                LOG.info("Subtask {} connected to {}", getRuntimeContext().getIndexOfThisSubtask(), connection.endpoint);
+            } catch (IOException e) {
+                LOG.warn("Connection to {} failed: {}", connection.endpoint, e.toString());
+                connection.nextAttempt = now + connection.backoff;
+                connection.backoff = Math.min(connection.backoff * 2, MAX_BACKOFF_MS);
+            }
+        }
+    }
+
+    private void disconnect(SelectionKey key, List<Connection> disconnected, String reason) {
+        Connection connection = (Connection) key.attachment();
+        LOG.warn("Connection to {} {}", connection.endpoint, reason);
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            LOG.debug("Closing the connection to {} failed", connection.endpoint, e);
+        }
+        connection.nextAttempt = System.currentTimeMillis() + connection.backoff;
+        connection.backoff = Math.min(connection.backoff * 2, MAX_BACKOFF_MS);
+        disconnected.add(connection);
+    }
+
+    /**
+     * @return the number of records emitted, -1 if the generator closed the connection
+     */
+    private int read(SelectionKey key, SourceContext<Tuple4<String, Long, Double, Long>> ctx) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+        ByteBuffer buffer = connection.buffer;
+        if (channel.read(buffer) < 0) {
+            return -1;
+        }
+        reads++;
+        if (!buffer.hasRemaining()) {
+            fullReads++;
+        }
+        buffer.flip();
+        int emitted;
+        synchronized (ctx.getCheckpointLock()) {
+            emitted = binary ? drainRecords(connection, ctx) : drainLines(buffer, ctx);
+        }
+        buffer.compact();
+        if (!buffer.hasRemaining()) {
+            // a json line longer than the buffer
+            connection.buffer = ByteBuffer.allocate(buffer.capacity() * 2).put((ByteBuffer) buffer.flip());
+        }
+        return emitted;
+    }
+
+    private int drainRecords(Connection connection, SourceContext<Tuple4<String, Long, Double, Long>> ctx) {
+        ByteBuffer buffer = connection.buffer;
+        int emitted = 0;
+        while (true) {
+            if (framed && connection.remainingInFrame == 0) {
+                if (buffer.remaining() < BinaryEventCodec.FRAME_HEADER_BYTES) {
+                    return emitted;
+                }
+                connection.remainingInFrame = buffer.getInt();
+                continue;
+            }
+            if (buffer.remaining() < BinaryEventCodec.RECORD_BYTES) {
+                return emitted;
+            }
+            int offset = buffer.position();
+            long ts = BinaryEventCodec.ts(buffer, offset);
+            ctx.collect(new Tuple4<String, Long, Double, Long>(GeoKeys.name(BinaryEventCodec.key(buffer, offset)),
+                    ts, (double) BinaryEventCodec.value(buffer, offset), BinaryEventCodec.sendTs(buffer, offset)));
+            buffer.position(offset + BinaryEventCodec.RECORD_BYTES);
+            lastTs = ts;
+            emitted++;
+            if (framed) {
+                connection.remainingInFrame--;
+            }
+        }
+    }
+
+    private int drainLines(ByteBuffer buffer, SourceContext<Tuple4<String, Long, Double, Long>> ctx) {
+        byte[] bytes = buffer.array();
+        int start = buffer.position();
+        int limit = buffer.limit();
+        int emitted = 0;
+        for (int i = start; i < limit; i++) {
+            if (bytes[i] != '\n') {
+                continue;
+            }
+            int end = i > start && bytes[i - 1] == '\r' ? i - 1 : i;
+            if (end > start) {
+                json.parse(bytes, start, end - start);
+                ctx.collect(new Tuple4<String, Long, Double, Long>(json.geo(), json.ts(), json.value(), json.sendTs()));
+                lastTs = json.ts();
+                emitted++;
+            }
+            start = i + 1;
+        }
+        buffer.position(start);
+        return emitted;
+    }
+
+    @Override
+    public void cancel() {
+        isRunning = false;
+    }
+
+    private static class Connection {
+        final String endpoint;
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+        int remainingInFrame = 0;
+        int attempts = 0;
+        long nextAttempt = 0;
+        long backoff = MIN_BACKOFF_MS;
+
+        Connection(String endpoint) {
+            this.endpoint = endpoint;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package flink.benchmark;
+
+import benchmark.common.sink.ResultSink;
+import benchmark.common.sink.ResultSinkFactory;
+import org.apache.flink.api.java.tuple.Tuple;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.streaming.api.functions.sink.RichSinkFunction;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes result tuples to a {@link ResultSink} instead of the RollingSink. The latency, event timestamp and
+ * send timestamp are read from the given tuple fields, so one sink serves the aggregation and join outputs.
+ * A timer thread flushes the sink every {@link #FLUSH_INTERVAL_MS}, like the tick tuples of the Storm sink, so
+ * results buffered before the input goes idle still arrive; a failed flush fails the next invocation.
+ */
+public class ResultSinkFunction<T extends Tuple> extends RichSinkFunction<T> {
+    private static final long FLUSH_INTERVAL_MS = 1000;
+
+    private final ResultSinkFactory sinks;
+    private final int latencyField;
+    private final int tsField;
+    private final int startTsField;
+    private transient ResultSink sink;
+    private transient ScheduledExecutorService flusher;
+    private transient volatile IOException flushError;
+
+    public ResultSinkFunction(ResultSinkFactory sinks, int latencyField, int tsField, int startTsField) {
+        this.sinks = sinks;
+        this.latencyField = latencyField;
+        this.tsField = tsField;
+        this.startTsField = startTsField;
+    }
+
+    @Override
+    public void open(Configuration parameters) throws Exception {
+        String name = "flink-" + getRuntimeContext().getTaskName().replaceAll("\\W", "_")
+                + "-" + getRuntimeContext().getIndexOfThisSubtask();
+        sink = ResultSinkFactory.synchronize(sinks.create(name));
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "result-sink-flusher-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                sink.flush();
+            } catch (IOException e) {
+                flushError = e;
+            }
+        }, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void invoke(T value) throws Exception {
+        if (flushError != null) {
+            throw flushError;
+        }
+        Long latency = value.getField(latencyField);
+        Long ts = value.getField(tsField);
+        Long startTs = value.getField(startTsField);
+        sink.write(latency, ts, startTs);
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (flusher != null) {
+            flusher.shutdownNow();
+            flusher.awaitTermination(FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+        if (sink != null) {
+            sink.close();
+        }
+    }
+}
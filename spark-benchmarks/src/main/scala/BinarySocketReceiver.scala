@@ -0,0 +1,50 @@
+
+package spark.benchmark
+
+import java.net.Socket
+
+import benchmark.common.codec.BinaryEventReader
+import org.apache.spark.storage.StorageLevel
+import org.apache.spark.streaming.receiver.Receiver
+
+/**
+  * Receives binary records (see BinaryEventCodec) and stores them as (geo, ts, price, send_ts) tuples.
+  */
+class BinarySocketReceiver(host: String, port: Int, batchSize: Int)
+  extends Receiver[(String, Long, Double, Long)](StorageLevel.MEMORY_AND_DISK_2)  {
+
+  def onStart() {
+    // Start the thread that receives data over a connection
+    new Thread("Binary Socket Receiver") {
+      override def run() { receive() }
+    }.start()
+  }
+
+  def onStop() {
+    // The receiving thread stops by itself once isStopped() returns true
+  }
+
+  /** Create a socket connection and receive data until receiver is stopped */
+  private def receive() {
+    var socket: Socket = null
+    try {
+      socket = new Socket(host, port)
+      val reader = new BinaryEventReader(socket.getInputStream(), batchSize)
+      while (!isStopped && reader.next()) {
+        store((reader.geo(), reader.ts(), reader.value().toDouble, reader.sendTs()))
+      }
+      reader.close()
+      socket.close()
+
+      // Restart in an attempt to connect again when server is active again
+      restart("Trying to connect again")
+    } catch {
+      case e: java.net.ConnectException =>
+        // restart if could not connect to server
+        restart("Error connecting to " + host + ":" + port, e)
+      case t: Throwable =>
+        // restart if there is any other error
+        restart("Error receiving data", t)
+    }
+  }
+}
@@ -0,0 +1,169 @@
+package spark.benchmark
+
+import java.io.{BufferedReader, InputStreamReader}
+import java.net.Socket
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.atomic.AtomicLong
+
+import benchmark.common.CommonConfig
+import benchmark.common.codec.{BinaryEventReader, JsonEventCodec}
+import org.apache.log4j.Logger
+import org.apache.spark.sql.execution.streaming.{LongOffset, Offset, Source}
+import org.apache.spark.sql.sources.StreamSourceProvider
+import org.apache.spark.sql.types._
+import org.apache.spark.sql.{DataFrame, SQLContext}
+
+import scala.collection.mutable.ArrayBuffer
+
+/**
+  * Structured Streaming source over a list of generator endpoints, host:port strings, the counterpart of the DStream
+  * receivers. A thread per endpoint decodes json lines or BinaryEventCodec records into (geo, ts, price, start_ts)
+  * rows, start_ts being the send time of the generator, and appends them to a buffer. Every batch takes the rows appended since
+  * the previous one and drops them from the buffer, so nothing is replayed after a restart. Malformed json lines
+  * are counted and skipped. Spark 2.0 sources have no receivers, the endpoints are read on the driver.
+  *
+  * The buffer holds at most `capacity` rows, the reader threads block while it is full and the generators'
+  * sockets back up. The rows not yet taken by a batch are the backlog, logged every 10 seconds with the time the
+  * readers spent blocked.
+  */
+class GeneratorSocketSource(sqlContext: SQLContext, endpoints: Seq[String], binary: Boolean, batchSize: Int,
+                            capacity: Int) extends Source {
+
+  private val LOG = Logger.getLogger(classOf[GeneratorSocketSource])
+  private val WAIT_MS = 100L
+  private val REPORT_INTERVAL_MS = 10000L
+
+  @volatile private var stopped = false
+  private val sockets = endpoints.map(endpoint => {
+    val Array(host, port) = endpoint.split(":")
+    new Socket(host, port.toInt)
+  })
+  /** the rows from offset `dropped` on */
+  private val rows = new ArrayBuffer[(String, Long, Double, Long)]
+  private var dropped = 0L
+  private val malformed = new AtomicLong()
+  private var blockedNanos = 0L
+  private var nextReport = System.currentTimeMillis() + REPORT_INTERVAL_MS
+
+  endpoints.zip(sockets).foreach { case (endpoint, socket) =>
+    val thread = new Thread("Generator Socket Source " + endpoint) {
+      override def run() { receive(endpoint, socket) }
+    }
+    thread.setDaemon(true)
+    thread.start()
+  }
+
+  private def receive(endpoint: String, socket: Socket) {
+    try {
+      if (binary) {
+        val reader = new BinaryEventReader(socket.getInputStream(), batchSize)
+        while (!stopped && reader.next()) {
+          append(reader.geo(), reader.ts(), reader.value().toDouble, reader.sendTs())
+        }
+      } else {
+        val reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))
+        val codec = new JsonEventCodec()
+        var line = reader.readLine()
+        while (!stopped && line != null) {
+          if (parse(codec, line, endpoint)) append(codec.geo(), codec.ts(), codec.value(), codec.sendTs())
+          line = reader.readLine()
+        }
+      }
+      LOG.warn("Connection to " + endpoint + " closed")
+    } catch {
+      case t: Throwable => if (!stopped) LOG.error("Error receiving data from " + endpoint, t)
+    }
+  }
+
+  /** Decodes one json line. A malformed or truncated line is counted, only the first one is logged. */
+  private def parse(codec: JsonEventCodec, line: String, endpoint: String): Boolean = {
+    try {
+      codec.parse(line)
+      true
+    } catch {
+      case e: RuntimeException =>
+        if (malformed.getAndIncrement() == 0) LOG.warn("Skipping malformed json line from " + endpoint + ": " + e)
+        false
+    }
+  }
+
+  private def append(geo: String, ts: Long, price: Double, sendTs: Long) = synchronized {
+    if (rows.size >= capacity) {
+      val start = System.nanoTime()
+      while (rows.size >= capacity && !stopped) wait(WAIT_MS)
+      blockedNanos += System.nanoTime() - start
+    }
+    rows += ((geo, ts, price, sendTs))
+  }
+
+  /** Rows received but not yet taken by a batch. */
+  def backlog: Int = synchronized { rows.size }
+
+  /** Json lines skipped because they could not be decoded. */
+  def malformedLines: Long = malformed.get()
+
+  override def schema: StructType = GeneratorSocketSource.SCHEMA
+
+  override def getOffset: Option[Offset] = synchronized {
+    val end = dropped + rows.size
+    if (end == 0) None else Some(LongOffset(end - 1))
+  }
+
+  override def getBatch(start: Option[Offset], end: Offset): DataFrame = {
+    val data = synchronized {
+      val from = Math.max(start.map(_.asInstanceOf[LongOffset].offset + 1).getOrElse(0L), dropped)
+      val until = Math.max(end.asInstanceOf[LongOffset].offset + 1, from)
+      // the engine only asks for the rows after the last offset it has seen
+      rows.remove(0, (from - dropped).toInt)
+      val data = rows.slice(0, (until - from).toInt)
+      rows.remove(0, data.size)
+      dropped = until
+      notifyAll()
+      val now = System.currentTimeMillis()
+      if (now >= nextReport) {
+        LOG.info("backlog " + rows.size + " rows, readers blocked " + blockedNanos / 1000000 + " ms in the last "
+          + (now - nextReport + REPORT_INTERVAL_MS) / 1000 + " s, " + malformed.get() + " malformed lines")
+        blockedNanos = 0
+        nextReport = now + REPORT_INTERVAL_MS
+      }
+      data
+    }
+    sqlContext.createDataFrame(data)
+      .toDF(GeneratorSocketSource.SCHEMA.fieldNames: _*)
+  }
+
+  override def stop() {
+    synchronized {
+      stopped = true
+      notifyAll()
+    }
+    sockets.foreach(_.close())
+  }
+}
+
+object GeneratorSocketSource {
+  val SCHEMA = StructType(
+    StructField("geo", StringType) ::
+    StructField("ts", LongType, nullable = false) ::
+    StructField("price", DoubleType, nullable = false) ::
+    StructField("start_ts", LongType, nullable = false) :: Nil)
+}
+
+/**
+  * Creates a GeneratorSocketSource, use the class name as format. Options: "endpoints", comma separated host:port
+  * strings, "codec" and "batchsize" as datasourcesocket.codec and datasourcesocket.batchsize, and "capacity", the
+  * rows buffered before the readers block, as spark.source.capacity.
+  */
+class GeneratorSocketSourceProvider extends StreamSourceProvider {
+
+  override def sourceSchema(sqlContext: SQLContext, schema: Option[StructType], providerName: String,
+                            parameters: Map[String, String]): (String, StructType) =
+    ("generatorsocket", GeneratorSocketSource.SCHEMA)
+
+  override def createSource(sqlContext: SQLContext, metadataPath: String, schema: Option[StructType],
+                            providerName: String, parameters: Map[String, String]): Source =
+    new GeneratorSocketSource(sqlContext, parameters("endpoints").split(","),
+      parameters.getOrElse("codec", CommonConfig.JSON_CODEC) == CommonConfig.BINARY_CODEC,
+      parameters.getOrElse("batchsize", "0").toInt,
+      parameters.getOrElse("capacity", "1000000").toInt)
+}
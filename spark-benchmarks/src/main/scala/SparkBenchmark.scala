@@ -1,9 +1,10 @@
 package spark.benchmark
 
 import benchmark.common.CommonConfig
-import org.apache.spark.SparkConf
+import benchmark.common.codec.JsonEventCodec
+import benchmark.common.sink.ResultSinkFactory
+import org.apache.spark.{SparkConf, SparkEnv}
 import org.apache.spark.streaming.{Milliseconds, StreamingContext}
-import org.json.JSONObject
 import org.apache.log4j.{Level, Logger}
 import org.apache.spark.streaming.dstream.DStream
 
@@ -13,6 +14,10 @@ import scala.collection.JavaConversions._
 object SparkBenchmark {
   def main(args: Array[String]) {
     CommonConfig.initializeConfig(args(0));
+    if (CommonConfig.SPARK_API() == CommonConfig.SPARK_STRUCTURED) {
+      StructuredSparkBenchmark.run()
+      return
+    }
 
     val sparkConf = new SparkConf().setAppName("SparkBenchmark").setMaster(CommonConfig.SPARK_MASTER())
     val ssc = new StreamingContext(sparkConf, Milliseconds(CommonConfig.SPARK_BATCHTIME()))
@@ -37,20 +42,36 @@ object SparkBenchmark {
     var socketDataSource: DStream[String] = null;
     for (host <- CommonConfig.DATASOURCE_HOSTS()) {
       for(port <- CommonConfig.DATASOURCE_PORTS()){
-        val socketDataSource_i: DStream[String] = ssc.receiverStream(new SocketReceiver(host, port))
+        val socketDataSource_i: DStream[String] =
+          if (CommonConfig.DATASOURCE_CODEC() == CommonConfig.BINARY_CODEC) eventStream(ssc, host, port).map(_.toString)
+          else ssc.receiverStream(new SocketReceiver(host, port))
         socketDataSource = if (socketDataSource == null) socketDataSource_i else socketDataSource.union(socketDataSource_i)
       }
     }
     socketDataSource.filter(t=> false).saveAsTextFiles(CommonConfig.SPARK_OUTPUT());
   }
 
+  /** (geo, ts, price, send_ts) stream of one generator endpoint, read with the configured codec */
+  def eventStream(ssc: StreamingContext, host: String, port: Int): DStream[(String, Long, Double, Long)] = {
+    if (CommonConfig.DATASOURCE_CODEC() == CommonConfig.BINARY_CODEC)
+      ssc.receiverStream(new BinarySocketReceiver(host, port, CommonConfig.DATASOURCE_BATCHSIZE()))
+    else
+      ssc.receiverStream(new SocketReceiver(host, port)).mapPartitions(lines => {
+        val codec = new JsonEventCodec()
+        lines.map(s => {
+          val obj = codec.parse(s)
+          (obj.geo(), obj.ts(), obj.value(), obj.sendTs())
+        })
+      })
+  }
+
   def windowedJoin(ssc: StreamingContext) = {
-    var joinSource1: DStream[String] = null;
-    var joinSource2: DStream[String] = null;
+    var joinSource1: DStream[(String, Long, Double, Long)] = null;
+    var joinSource2: DStream[(String, Long, Double, Long)] = null;
     for (host <- CommonConfig.DATASOURCE_HOSTS()) {
       var index=0
       for(port <- CommonConfig.DATASOURCE_PORTS()) {
-        val socketDataSource_i: DStream[String] = ssc.receiverStream(new SocketReceiver(host, port ))
+        val socketDataSource_i = eventStream(ssc, host, port)
         if (index % 2 == 1) {
           joinSource1 = if (joinSource1 == null) socketDataSource_i else joinSource1.union(socketDataSource_i)
         }
@@ -75,35 +96,43 @@ object SparkBenchmark {
     })
       .filter(x => x._2 % CommonConfig.JOIN_FILTER_FACTOR() == 0).cache()
 
-    joinedStream.saveAsTextFiles(CommonConfig.SPARK_OUTPUT());
+    saveResults(joinedStream, (r: (Long, Long, Long)) => r)
 
   }
 
-  def deserialize(s:String) = {
-    val obj: JSONObject = new JSONObject(s)
-    val price: Double = obj.getDouble("value")
-    val geo: String = obj.getString("key")
-    val ts: Long =  obj.getLong("ts")
-    ((geo), (ts, System.currentTimeMillis()))
+  /**
+   * Writes the results to the sink selected with output.sink: text files by default, or one shared ResultSink per
+   * executor, fed with the (latency, ts, start_ts) of every result and flushed after every partition.
+   */
+  def saveResults[T](stream: DStream[T], fields: T => (Long, Long, Long)) = {
+    val sinks = ResultSinkFactory.fromConfig()
+    if (sinks.isEnabled())
+      stream.foreachRDD(rdd => rdd.foreachPartition(results => {
+        val sink = sinks.shared("spark-" + SparkEnv.get.executorId)
+        results.foreach(result => {
+          val (latency, ts, startTs) = fields(result)
+          sink.write(latency, ts, startTs)
+        })
+        sink.flush()
+      }))
+    else
+      stream.saveAsTextFiles(CommonConfig.SPARK_OUTPUT())
+  }
+
+  def deserialize(e: (String, Long, Double, Long)) = {
+    ((e._1), (e._2, e._4))
   }
 
   def keyedWindowedAggregationBenchmark(ssc: StreamingContext) = {
-    var socketDataSource: DStream[String] = null;
+    var socketDataSource: DStream[(String, Long, Double, Long)] = null;
     for (host <- CommonConfig.DATASOURCE_HOSTS()) {
       for(port <- CommonConfig.DATASOURCE_PORTS()){
-        val socketDataSource_i: DStream[String] = ssc.receiverStream(new SocketReceiver(host, port))
+        val socketDataSource_i = eventStream(ssc, host, port)
         socketDataSource = if (socketDataSource == null) socketDataSource_i else socketDataSource.union(socketDataSource_i)
       }
     }
 
-    val keyedStream = socketDataSource.map(s => {
-      val obj: JSONObject = new JSONObject(s)
-      val price: Double = obj.getDouble("value")
-      val geo: String = obj.getString("key")
-      val ts: Long =  obj.getLong("ts") ;
-
-      ((geo), (ts, price, 1, 1, System.currentTimeMillis()))
-    }).cache()
+    val keyedStream = socketDataSource.map(e => ((e._1), (e._2, e._3, 1, 1, e._4))).cache()
 
 
     val windowedStream = if (CommonConfig.SPARK_WINDOW_USE()) {
@@ -138,7 +167,7 @@ object SparkBenchmark {
                                                           tuple._2._1,
                                                           tuple._2._5))
 
-    mappedStream.saveAsTextFiles(CommonConfig.SPARK_OUTPUT());
+    saveResults(mappedStream, (r: (String, Long, Double, Int, Long, Long)) => (r._2, r._5, r._6))
     // resultStream.print();
 
   }
@@ -0,0 +1,121 @@
+package spark.benchmark
+
+import java.nio.file.Files
+
+import benchmark.common.CommonConfig
+import benchmark.common.sink.ResultSinkFactory
+import org.apache.spark.SparkEnv
+import org.apache.spark.sql.execution.streaming.Sink
+import org.apache.spark.sql.functions._
+import org.apache.spark.sql.sources.StreamSinkProvider
+import org.apache.spark.sql.streaming.{OutputMode, ProcessingTime}
+import org.apache.spark.sql.{DataFrame, Row, SQLContext, SparkSession}
+
+import scala.collection.JavaConversions._
+
+/**
+  * Structured Streaming variant of the benchmark, selected with spark.api: structured. Reads the generators with a
+  * GeneratorSocketSource and runs micro-batches back to back, or every spark.trigger.interval.ms, instead of at the
+  * fixed spark.batchtime of the DStream variant.
+  *
+  * Spark 2.0 only has complete output mode for aggregations and no watermarks, an aggregation in the query would
+  * keep every group of the run and write the whole result table on every trigger. The query therefore appends the
+  * raw events to a BatchResultSink, which aggregates each batch on its own, the result of the DStream variant
+  * without windows. Event time windows, spark.window.use, need the watermarks of Spark 2.1 and are rejected, as
+  * are the continuous trigger and stream-stream joins, which need Spark 2.3.
+  */
+object StructuredSparkBenchmark {
+
+  def run() = {
+    if (CommonConfig.SPARK_TRIGGER() == CommonConfig.SPARK_CONTINUOUS_TRIGGER)
+      throw new UnsupportedOperationException("The continuous trigger needs Spark 2.3, please use spark.trigger: "
+        + CommonConfig.SPARK_MICROBATCH_TRIGGER)
+    if (CommonConfig.BENCHMARKING_USECASE() == CommonConfig.AGGREGATION_USECASE && CommonConfig.SPARK_WINDOW_USE())
+      throw new UnsupportedOperationException("Event time windows need the watermarks of Spark 2.1, please set"
+        + " spark.window.use: false or use spark.api: " + CommonConfig.SPARK_DSTREAM)
+    val sinks = ResultSinkFactory.fromConfig()
+    if (!sinks.isEnabled())
+      throw new IllegalArgumentException("Structured Streaming results go to a ResultSink, please set output.sink")
+
+    val spark = SparkSession.builder().appName("StructuredSparkBenchmark").master(CommonConfig.SPARK_MASTER())
+      .config("spark.sql.shuffle.partitions", CommonConfig.PARALLELISM().toLong)
+      .getOrCreate()
+
+    val query = if (CommonConfig.BENCHMARKING_USECASE() == CommonConfig.AGGREGATION_USECASE)
+      eventStream(spark).writeStream.option("aggregate", "true")
+    else if (CommonConfig.BENCHMARKING_USECASE() == CommonConfig.JOIN_USECASE)
+      throw new UnsupportedOperationException("Joins of two streams need Spark 2.3, please use spark.api: "
+        + CommonConfig.SPARK_DSTREAM)
+    else if (CommonConfig.BENCHMARKING_USECASE() == CommonConfig.DUMMY_CONSUMER)
+      eventStream(spark).filter(lit(false)).writeStream
+    else throw new Exception("Please specify use-case name")
+
+    // the source drops what a batch took, there is nothing to recover from a checkpoint
+    query.outputMode("append")
+      .trigger(ProcessingTime(CommonConfig.SPARK_TRIGGER_INTERVAL_MS()))
+      .format(classOf[BatchResultSinkProvider].getName)
+      .option("checkpointLocation", Files.createTempDirectory("structured-benchmark").toString)
+      .start()
+      .awaitTermination()
+  }
+
+  /** (geo, ts, price, start_ts) rows of all generator endpoints */
+  def eventStream(spark: SparkSession): DataFrame = {
+    val endpoints = for (host <- CommonConfig.DATASOURCE_HOSTS(); port <- CommonConfig.DATASOURCE_PORTS())
+      yield host + ":" + port
+    spark.readStream.format(classOf[GeneratorSocketSourceProvider].getName)
+      .option("endpoints", endpoints.mkString(","))
+      .option("codec", CommonConfig.DATASOURCE_CODEC())
+      .option("batchsize", CommonConfig.DATASOURCE_BATCHSIZE().toLong)
+      .option("capacity", CommonConfig.SPARK_SOURCE_CAPACITY().toLong)
+      .load()
+  }
+
+  /**
+    * Average price per geo of the events of one batch. The ts and start_ts of a result are the latest of its group.
+    */
+  def keyedAggregation(events: DataFrame): DataFrame = {
+    events.groupBy(col("geo")).agg(avg("price").as("avg_price"), count("price").as("count"), max("ts").as("ts"),
+      max("start_ts").as("start_ts"))
+  }
+}
+
+/**
+  * Writes the (latency, ts, start_ts) of the rows of every batch, aggregated first with `aggregate`, to one shared
+  * ResultSink per executor and flushes it after every partition.
+  */
+class BatchResultSink(sinks: ResultSinkFactory, aggregate: Boolean) extends Sink {
+
+  override def addBatch(batchId: Long, data: DataFrame) {
+    val result = if (aggregate) StructuredSparkBenchmark.keyedAggregation(data) else data
+    // a local, the closure would otherwise capture the sink itself
+    val factory = sinks
+    result.foreachPartition((rows: Iterator[Row]) => BatchResultSink.write(factory, rows))
+  }
+}
+
+object BatchResultSink {
+
+  def write(sinks: ResultSinkFactory, rows: Iterator[Row]) {
+    val sink = sinks.shared("spark-" + SparkEnv.get.executorId)
+    try {
+      rows.foreach(row => {
+        val ts = row.getAs[Long]("ts")
+        sink.write(System.currentTimeMillis() - ts, ts, row.getAs[Long]("start_ts"))
+      })
+    } finally {
+      sink.flush()
+    }
+  }
+}
+
+/**
+  * Creates a BatchResultSink writing to the output.sink of the driver's configuration, use the class name as
+  * format. Options: "aggregate", whether each batch is aggregated per geo, false by default.
+  */
+class BatchResultSinkProvider extends StreamSinkProvider {
+
+  override def createSink(sqlContext: SQLContext, parameters: Map[String, String], partitionColumns: Seq[String],
+                          outputMode: OutputMode): Sink =
+    new BatchResultSink(ResultSinkFactory.fromConfig(), parameters.getOrElse("aggregate", "false").toBoolean)
+}
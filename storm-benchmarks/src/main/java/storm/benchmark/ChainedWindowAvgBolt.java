@@ -0,0 +1,27 @@
+package storm.benchmark;
+
+import org.apache.storm.topology.OutputFieldsDeclarer;
+import org.apache.storm.tuple.Fields;
+import org.apache.storm.tuple.Values;
+
+/**
+ * The sliding_avg and event_filter stages of the keyed aggregation in one bolt, like a chained Flink window and
+ * map: a {@link PaneWindowAvgBolt} that stamps the latency on the results itself, emitting the fields of
+ * {@link StormBenchmark.FinalTSBolt} straight to the sink.
+ */
+public class ChainedWindowAvgBolt extends PaneWindowAvgBolt {
+
+    public ChainedWindowAvgBolt(long lengthMs, long slideMs) {
+        super(lengthMs, slideMs);
+    }
+
+    @Override
+    public void emit(String key, long ts, double sum, long count, long startTs) {
+        _collector.emit(new Values(key, System.currentTimeMillis() - ts, ts, sum / count, (int) count, startTs));
+    }
+
+    @Override
+    public void declareOutputFields(OutputFieldsDeclarer declarer) {
+        declarer.declare(new Fields("geo", "ts", "ts_start", "avg_price", "window_size", "start_ts"));
+    }
+}
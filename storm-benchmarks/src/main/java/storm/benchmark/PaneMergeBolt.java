@@ -0,0 +1,104 @@
+package storm.benchmark;
+
+import benchmark.common.window.PaneWindowState;
+import org.apache.storm.generated.GlobalStreamId;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.topology.OutputFieldsDeclarer;
+import org.apache.storm.topology.base.BaseRichBolt;
+import org.apache.storm.tuple.Fields;
+import org.apache.storm.tuple.Tuple;
+import org.apache.storm.tuple.Values;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Merger stage of the two stage global aggregation. Receives one partial per {@link PanePartialBolt} task and
+ * pane, adds the partials of a pane to a {@link PaneWindowState} once every upstream task reported it, and emits
+ * the sliding window averages with the fields of {@link StormBenchmark.SlidingWindowAvgBolt}.
+ */
+public class PaneMergeBolt extends BaseRichBolt implements PaneWindowState.Emitter {
+
+    private final long lengthMs;
+    private final long slideMs;
+    private long _paneMs;
+    private OutputCollector _collector;
+    private PaneWindowState _window;
+    // last pane reported by every upstream task
+    private Map<Integer, Long> _reported;
+    // partials of panes not yet reported by every upstream task
+    private TreeMap<Long, List<Tuple>> _pending;
+
+    public PaneMergeBolt(long lengthMs, long slideMs) {
+        this.lengthMs = lengthMs;
+        this.slideMs = slideMs;
+    }
+
+    @Override
+    public void prepare(Map conf, TopologyContext context, OutputCollector collector) {
+        _collector = collector;
+        _paneMs = PaneWindowState.paneMs(lengthMs, slideMs);
+        _window = new PaneWindowState(lengthMs, slideMs);
+        _reported = new HashMap<>();
+        for (GlobalStreamId source : context.getThisSources().keySet()) {
+            for (Integer task : context.getComponentTasks(source.get_componentId())) {
+                _reported.put(task, -1L);
+            }
+        }
+        _pending = new TreeMap<>();
+    }
+
+    @Override
+    public void execute(Tuple tuple) {
+        long pane = tuple.getLong(0);
+        _reported.put(tuple.getSourceTask(), pane);
+        List<Tuple> partials = _pending.get(pane);
+        if (partials == null) {
+            partials = new ArrayList<>();
+            _pending.put(pane, partials);
+        }
+        partials.add(tuple);
+
+        long complete = Long.MAX_VALUE;
+        for (Long reported : _reported.values()) {
+            complete = Math.min(complete, reported);
+        }
+        while (!_pending.isEmpty() && _pending.firstKey() <= complete) {
+            Map.Entry<Long, List<Tuple>> entry = _pending.pollFirstEntry();
+            _window.advance(entry.getKey() * _paneMs, this);
+            for (Tuple partial : entry.getValue()) {
+                add(partial);
+                _collector.ack(partial);
+            }
+        }
+        if (complete >= 0 && complete < Long.MAX_VALUE) {
+            // every task is past this pane, close it without waiting for the next partial
+            _window.advance((complete + 1) * _paneMs, this);
+        }
+    }
+
+    private void add(Tuple partial) {
+        String[] keys = (String[]) partial.getValue(1);
+        double[] sums = (double[]) partial.getValue(2);
+        long[] counts = (long[]) partial.getValue(3);
+        long[] ts = (long[]) partial.getValue(4);
+        long startTs = partial.getLong(5);
+        for (int i = 0; i < keys.length; i++) {
+            _window.add(keys[i], sums[i], counts[i], ts[i], startTs);
+        }
+    }
+
+    @Override
+    public void emit(String key, long ts, double sum, long count, long startTs) {
+        _collector.emit(new Values(key, ts, sum / count, (int) count, startTs));
+    }
+
+    @Override
+    public void declareOutputFields(OutputFieldsDeclarer declarer) {
+        declarer.declare(new Fields("geo", "ts", "avg_price", "window_size", "start_ts"));
+    }
+}
@@ -0,0 +1,108 @@
+package storm.benchmark;
+
+import org.apache.storm.Config;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.topology.OutputFieldsDeclarer;
+import org.apache.storm.topology.base.BaseRichBolt;
+import org.apache.storm.tuple.Fields;
+import org.apache.storm.tuple.Tuple;
+import org.apache.storm.tuple.Values;
+import org.apache.storm.utils.TupleUtils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Combiner stage of the two stage global aggregation. Sums ("geo", "ts", "price", "start_ts") tuples per key
+ * over one pane of processing time and, once the pane ends, emits a single tuple with the partials of all keys:
+ * ("pane", "keys", "sums", "counts", "ts", "start_ts"). A pane with no input is still reported when the next
+ * tuple or tick arrives, so that {@link PaneMergeBolt} knows this task is done with it.
+ */
+public class PanePartialBolt extends BaseRichBolt {
+
+    private static final int INITIAL_KEYS = 128;
+
+    private final long paneMs;
+    private OutputCollector _collector;
+    private long _pane = -1;
+    private HashMap<String, Integer> _slots;
+    private String[] _keys;
+    private double[] _sums;
+    private long[] _counts;
+    private long[] _ts;
+    private long _startTs;
+
+    public PanePartialBolt(long paneMs) {
+        this.paneMs = paneMs;
+    }
+
+    @Override
+    public void prepare(Map conf, TopologyContext context, OutputCollector collector) {
+        _collector = collector;
+        _slots = new HashMap<>();
+        _keys = new String[INITIAL_KEYS];
+        _sums = new double[INITIAL_KEYS];
+        _counts = new long[INITIAL_KEYS];
+        _ts = new long[INITIAL_KEYS];
+    }
+
+    @Override
+    public void execute(Tuple tuple) {
+        long pane = System.currentTimeMillis() / paneMs;
+        if (pane > _pane) {
+            if (_pane >= 0) {
+                flush();
+            }
+            _pane = pane;
+        }
+        if (!TupleUtils.isTick(tuple)) {
+            String key = tuple.getString(0);
+            Integer boxed = _slots.get(key);
+            int slot;
+            if (boxed != null) {
+                slot = boxed;
+            } else {
+                slot = _slots.size();
+                if (slot == _keys.length) {
+                    _keys = Arrays.copyOf(_keys, slot * 2);
+                    _sums = Arrays.copyOf(_sums, slot * 2);
+                    _counts = Arrays.copyOf(_counts, slot * 2);
+                    _ts = Arrays.copyOf(_ts, slot * 2);
+                }
+                _keys[slot] = key;
+                _slots.put(key, slot);
+            }
+            _sums[slot] += tuple.getDouble(2);
+            _counts[slot]++;
+            _ts[slot] = Math.max(_ts[slot], tuple.getLong(1));
+            _startTs = Math.max(_startTs, tuple.getLong(3));
+        }
+        _collector.ack(tuple);
+    }
+
+    private void flush() {
+        int size = _slots.size();
+        _collector.emit(new Values(_pane, Arrays.copyOf(_keys, size), Arrays.copyOf(_sums, size),
+                Arrays.copyOf(_counts, size), Arrays.copyOf(_ts, size), _startTs));
+        _slots.clear();
+        Arrays.fill(_keys, 0, size, null);
+        Arrays.fill(_sums, 0, size, 0);
+        Arrays.fill(_counts, 0, size, 0);
+        Arrays.fill(_ts, 0, size, 0);
+        _startTs = 0;
+    }
+
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        Map<String, Object> conf = new HashMap<>();
+        conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, 1);
+        return conf;
+    }
+
+    @Override
+    public void declareOutputFields(OutputFieldsDeclarer declarer) {
+        declarer.declare(new Fields("pane", "keys", "sums", "counts", "ts", "start_ts"));
+    }
+}
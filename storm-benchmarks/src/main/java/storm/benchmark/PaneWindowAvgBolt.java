@@ -0,0 +1,66 @@
+package storm.benchmark;
+
+import benchmark.common.window.PaneWindowState;
+import org.apache.storm.Config;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.topology.OutputFieldsDeclarer;
+import org.apache.storm.topology.base.BaseRichBolt;
+import org.apache.storm.tuple.Fields;
+import org.apache.storm.tuple.Tuple;
+import org.apache.storm.tuple.Values;
+import org.apache.storm.utils.TupleUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sliding window average per key on top of {@link PaneWindowState}, an alternative to
+ * {@link StormBenchmark.SlidingWindowAvgBolt} that does not buffer the tuples of the window. It reads
+ * ("geo", "ts", "price", "start_ts") tuples and emits the same fields as the windowed bolt, only for keys with
+ * tuples in the window. Panes are closed by arriving tuples and, when the input is idle, by tick tuples.
+ */
+public class PaneWindowAvgBolt extends BaseRichBolt implements PaneWindowState.Emitter {
+
+    private final long lengthMs;
+    private final long slideMs;
+    protected OutputCollector _collector;
+    private PaneWindowState _window;
+
+    public PaneWindowAvgBolt(long lengthMs, long slideMs) {
+        this.lengthMs = lengthMs;
+        this.slideMs = slideMs;
+    }
+
+    @Override
+    public void prepare(Map conf, TopologyContext context, OutputCollector collector) {
+        _collector = collector;
+        _window = new PaneWindowState(lengthMs, slideMs);
+    }
+
+    @Override
+    public void execute(Tuple tuple) {
+        _window.advance(System.currentTimeMillis(), this);
+        if (!TupleUtils.isTick(tuple)) {
+            _window.add(tuple.getString(0), tuple.getDouble(2), 1, tuple.getLong(1), tuple.getLong(3));
+        }
+        _collector.ack(tuple);
+    }
+
+    @Override
+    public void emit(String key, long ts, double sum, long count, long startTs) {
+        _collector.emit(new Values(key, ts, sum / count, (int) count, startTs));
+    }
+
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        Map<String, Object> conf = new HashMap<>();
+        conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, 1);
+        return conf;
+    }
+
+    @Override
+    public void declareOutputFields(OutputFieldsDeclarer declarer) {
+        declarer.declare(new Fields("geo", "ts", "avg_price", "window_size", "start_ts"));
+    }
+}
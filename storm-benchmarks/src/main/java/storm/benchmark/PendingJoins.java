@@ -0,0 +1,193 @@
+package storm.benchmark;
+
+import java.util.HashMap;
+
+/**
+ * The pending joins of a {@link SingleJoinBolt}: a map by join id and a timing wheel of {@code slots} slots, one
+ * per tick, each holding the joins started in that tick in a doubly linked list. A join expires when the wheel
+ * comes round to its slot again, after between {@code slots - 1} and {@code slots} ticks. At most
+ * {@code maxPending} joins are pending: beyond that {@link #open(Object)} evicts the oldest one, or refuses the
+ * new one with {@code reject}. Expired and evicted joins are handed to the {@link Listener}; the caller decides
+ * what happens to their inputs.
+ *
+ * @param <I> the input kept per side, for reliable joins
+ */
+class PendingJoins<I> {
+
+    interface Listener<I> {
+        void expired(Join<I> join);
+
+        void evicted(Join<I> join);
+    }
+
+    /**
+     * A join waiting for some of its sides. With {@code keepInputs} it also keeps the input of every side that
+     * arrived, indexed by source.
+     */
+    static final class Join<I> {
+        final Object id;
+        final Object[] values;
+        private final Object[] inputs;
+        private int arrived;
+        private int slot;
+        private Join<I> prev;
+        private Join<I> next;
+
+        Join(Object id, int outFields, int sources, boolean keepInputs) {
+            this.id = id;
+            this.values = new Object[outFields];
+            this.inputs = keepInputs ? new Object[sources] : null;
+        }
+
+        boolean has(int source) {
+            return (arrived & (1 << source)) != 0;
+        }
+
+        /**
+         * @return the input of {@code source}, null if none arrived or inputs are not kept
+         */
+        @SuppressWarnings("unchecked")
+        I input(int source) {
+            return inputs == null ? null : (I) inputs[source];
+        }
+    }
+
+    private final HashMap<Object, Join<I>> pending = new HashMap<>();
+    private final Join<I>[] heads;
+    private final Join<I>[] tails;
+    private final int maxPending;
+    private final boolean reject;
+    private final int sources;
+    private final int outFields;
+    private final boolean keepInputs;
+    private final int complete;
+    private final Listener<I> listener;
+    private int slot;
+
+    /**
+     * @param reject whether a new join is refused, rather than the oldest evicted, once {@code maxPending} are pending
+     */
+    @SuppressWarnings("unchecked")
+    PendingJoins(int slots, int maxPending, boolean reject, int sources, int outFields, boolean keepInputs,
+                 Listener<I> listener) {
+        if (sources < 1 || sources > 31) {
+            throw new IllegalArgumentException("A join needs between 1 and 31 sources, got " + sources);
+        }
+        this.heads = new Join[slots];
+        this.tails = new Join[slots];
+        this.maxPending = maxPending;
+        this.reject = reject;
+        this.sources = sources;
+        this.outFields = outFields;
+        this.keepInputs = keepInputs;
+        this.complete = (1 << sources) - 1;
+        this.listener = listener;
+    }
+
+    Join<I> get(Object id) {
+        return pending.get(id);
+    }
+
+    /**
+     * Starts a join in the current slot, evicting the oldest pending one if full.
+     *
+     * @return null if full and the policy is to reject
+     */
+    Join<I> open(Object id) {
+        if (pending.size() >= maxPending) {
+            if (reject) {
+                return null;
+            }
+            evictOldest();
+        }
+        Join<I> join = new Join<>(id, outFields, sources, keepInputs);
+        pending.put(id, join);
+        link(join);
+        return join;
+    }
+
+    /**
+     * Records the arrival of {@code source}, its output values are for the caller to set.
+     *
+     * @return the input this one replaces, a side that arrived twice, or null
+     */
+    I arrive(Join<I> join, int source, I input) {
+        I replaced = join.has(source) ? join.input(source) : null;
+        join.arrived |= 1 << source;
+        if (join.inputs != null) {
+            join.inputs[source] = input;
+        }
+        return replaced;
+    }
+
+    boolean isComplete(Join<I> join) {
+        return join.arrived == complete;
+    }
+
+    /**
+     * Removes a join, e.g. once it is complete.
+     */
+    void remove(Join<I> join) {
+        pending.remove(join.id);
+        unlink(join);
+    }
+
+    /**
+     * Moves the wheel one slot on, the joins pending in the slot it moves to have outlived the timeout.
+     */
+    void tick() {
+        slot = (slot + 1) % heads.length;
+        Join<I> join = heads[slot];
+        heads[slot] = null;
+        tails[slot] = null;
+        while (join != null) {
+            Join<I> next = join.next;
+            pending.remove(join.id);
+            join.prev = null;
+            join.next = null;
+            listener.expired(join);
+            join = next;
+        }
+    }
+
+    int size() {
+        return pending.size();
+    }
+
+    private void evictOldest() {
+        for (int i = 1; i <= heads.length; i++) {
+            Join<I> oldest = heads[(slot + i) % heads.length];
+            if (oldest != null) {
+                remove(oldest);
+                listener.evicted(oldest);
+                return;
+            }
+        }
+    }
+
+    private void link(Join<I> join) {
+        join.slot = slot;
+        join.prev = tails[slot];
+        if (join.prev == null) {
+            heads[slot] = join;
+        } else {
+            join.prev.next = join;
+        }
+        tails[slot] = join;
+    }
+
+    private void unlink(Join<I> join) {
+        if (join.prev == null) {
+            heads[join.slot] = join.next;
+        } else {
+            join.prev.next = join.next;
+        }
+        if (join.next == null) {
+            tails[join.slot] = join.prev;
+        } else {
+            join.next.prev = join.prev;
+        }
+        join.prev = null;
+        join.next = null;
+    }
+}
@@ -0,0 +1,135 @@
+package storm.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded single producer, single consumer ring of preallocated {@link Record} slots between the reader thread of
+ * a {@link SocketReceiver} and its executor. The reader fills the slot returned by {@link #claim()} and makes it
+ * visible with {@link #publish()}, the spout reads up to {@link #available()} slots with {@link #get(int)} and
+ * hands them back with {@link #release(int)}. Only the producer ever waits, the consumer never blocks.
+ */
+public class RecordRingBuffer {
+
+    private static final int SPIN_TRIES = 100;
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    /**
+     * One received event, a json line or the fields of a decoded record. The geo code of a decoded record is
+     * its {@link benchmark.common.codec.GeoKeys} id or, outside the dictionary, the code itself in line.
+     */
+    public static class Record {
+        public String line;
+        public int key;
+        public double value;
+        public long ts;
+        public long sendTs;
+    }
+
+    private final Record[] slots;
+    private final int mask;
+
+    // next sequence the producer publishes, written by the producer only
+    private final Sequence tail = new Sequence();
+    // next sequence the consumer reads, written by the consumer only
+    private final Sequence head = new Sequence();
+
+    // producer side copy of head, refreshed only when the ring looks full
+    private long cachedHead = 0;
+    // consumer side copy of tail, refreshed only when the ring looks empty
+    private long cachedTail = 0;
+
+    /**
+     * @param capacity rounded up to the next power of two
+     */
+    public RecordRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        slots = new Record[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Record();
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Number of published but not yet released records, safe to call from any thread.
+     */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    /**
+     * Returns the next free slot, waiting while the ring is full. Producer thread only.
+     *
+     * @return null if the producer thread was interrupted while waiting
+     */
+    public Record claim() {
+        long next = tail.get();
+        if (next - cachedHead >= slots.length) {
+            int tries = 0;
+            while (next - (cachedHead = head.get()) >= slots.length) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return null;
+                }
+                tries = idle(tries);
+            }
+        }
+        return slots[(int) next & mask];
+    }
+
+    /**
+     * Makes the slot returned by the last {@link #claim()} visible to the consumer. Producer thread only.
+     */
+    public void publish() {
+        tail.lazySet(tail.get() + 1);
+    }
+
+    /**
+     * Number of records that can be read without waiting. Consumer thread only.
+     */
+    public int available() {
+        long current = head.get();
+        if (cachedTail == current) {
+            cachedTail = tail.get();
+        }
+        return (int) (cachedTail - current);
+    }
+
+    /**
+     * @param offset position relative to the oldest unreleased record, below the last {@link #available()}
+     */
+    public Record get(int offset) {
+        return slots[(int) (head.get() + offset) & mask];
+    }
+
+    /**
+     * Hands the {@code count} oldest records back to the producer. Consumer thread only.
+     */
+    public void release(int count) {
+        for (int i = 0; i < count; i++) {
+            get(i).line = null;
+        }
+        head.lazySet(head.get() + count);
+    }
+
+    private static int idle(int tries) {
+        if (tries < SPIN_TRIES) {
+            return tries + 1;
+        }
+        if (tries < 2 * SPIN_TRIES) {
+            Thread.yield();
+            return tries + 1;
+        }
+        LockSupport.parkNanos(PARK_NANOS);
+        return tries;
+    }
+
+    /**
+     * Sequence counter padded so that head and tail do not share a cache line.
+     */
+    @SuppressWarnings("unused")
+    private static class Sequence extends AtomicLong {
+        private long p1, p2, p3, p4, p5, p6, p7;
+    }
+}
@@ -0,0 +1,100 @@
+package storm.benchmark;
+
+import benchmark.common.sink.ResultSink;
+import benchmark.common.sink.ResultSinkFactory;
+import org.apache.storm.Config;
+import org.apache.storm.metric.api.CountMetric;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.topology.OutputFieldsDeclarer;
+import org.apache.storm.topology.base.BaseRichBolt;
+import org.apache.storm.tuple.Tuple;
+import org.apache.storm.utils.TupleUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Terminal bolt writing the results to a {@link ResultSink} instead of the HdfsBolt. Reads the output of
+ * {@link StormBenchmark.FinalTSBolt}, where "ts" holds the latency and "ts_start" the window timestamp, or of
+ * {@link StormBenchmark.FinalTSJoinBolt} with its "latency" and "ts" fields. Tick tuples flush the sink when
+ * the input is idle. Tuples that could not be written are failed and counted in the "sink_errors" metric; the
+ * error itself is reported at most once every {@link #ERROR_REPORT_INTERVAL_MS}, with the number of errors since.
+ */
+public class ResultSinkBolt extends BaseRichBolt {
+    private static final long ERROR_REPORT_INTERVAL_MS = 10000;
+    private static final int METRICS_BUCKET_SECS = 10;
+
+    private final ResultSinkFactory sinks;
+    private OutputCollector _collector;
+    private ResultSink _sink;
+    private CountMetric _errors;
+    private long _unreported;
+    private long _lastReport;
+
+    public ResultSinkBolt(ResultSinkFactory sinks) {
+        this.sinks = sinks;
+    }
+
+    @Override
+    public void prepare(Map conf, TopologyContext context, OutputCollector collector) {
+        _collector = collector;
+        try {
+            _sink = sinks.create("storm-" + context.getThisComponentId() + "-" + context.getThisTaskId());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        _errors = context.registerMetric("sink_errors", new CountMetric(), METRICS_BUCKET_SECS);
+    }
+
+    @Override
+    public void execute(Tuple tuple) {
+        try {
+            if (TupleUtils.isTick(tuple)) {
+                _sink.flush();
+            } else if (tuple.contains("latency")) {
+                _sink.write(tuple.getLongByField("latency"), tuple.getLongByField("ts"), tuple.getLongByField("start_ts"));
+            } else {
+                _sink.write(tuple.getLongByField("ts"), tuple.getLongByField("ts_start"), tuple.getLongByField("start_ts"));
+            }
+        } catch (IOException e) {
+            _errors.incr();
+            reportError(e);
+            _collector.fail(tuple);
+            return;
+        }
+        _collector.ack(tuple);
+    }
+
+    private void reportError(IOException e) {
+        _unreported++;
+        long now = System.currentTimeMillis();
+        if (now - _lastReport >= ERROR_REPORT_INTERVAL_MS) {
+            _collector.reportError(new IOException(_unreported + " sink errors since the last report", e));
+            _unreported = 0;
+            _lastReport = now;
+        }
+    }
+
+    @Override
+    public void cleanup() {
+        try {
+            _sink.close();
+        } catch (IOException e) {
+            _collector.reportError(e);
+        }
+    }
+
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        Map<String, Object> conf = new HashMap<>();
+        conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, 1);
+        return conf;
+    }
+
+    @Override
+    public void declareOutputFields(OutputFieldsDeclarer declarer) {
+    }
+}
@@ -1,37 +1,85 @@
 package storm.benchmark;
 
 
+import benchmark.common.CommonConfig;
 import org.apache.storm.Config;
 import org.apache.storm.generated.GlobalStreamId;
+import org.apache.storm.metric.api.CountMetric;
 import org.apache.storm.task.OutputCollector;
 import org.apache.storm.task.TopologyContext;
 import org.apache.storm.topology.OutputFieldsDeclarer;
 import org.apache.storm.topology.base.BaseRichBolt;
 import org.apache.storm.tuple.Fields;
 import org.apache.storm.tuple.Tuple;
-import org.apache.storm.utils.TimeCacheMap;
+import org.apache.storm.utils.TupleUtils;
 
 import java.util.*;
 
-public class SingleJoinBolt extends BaseRichBolt {
+/**
+ * Joins one tuple of every source on the fields they have in common and emits the configured output fields.
+ * Pending joins keep only the projected output values, in {@link PendingJoins} keyed by the id value itself when
+ * there is a single id field, and expire on its timing wheel advanced by tick tuples once the message timeout has
+ * passed. At most {@code maxPending} joins are pending: beyond that the oldest one is evicted, or the new tuple
+ * is dropped with the {@link #REJECT} policy.
+ * <p>
+ * Unreliable joins ack their inputs on arrival and emit unanchored, so an expired, evicted or rejected join is
+ * only counted. Reliable joins keep the input tuples of a pending join, emit the output anchored to all of them
+ * and ack them then; the inputs of a join that expires, is evicted or rejected are failed, so the spouts replay
+ * them. Hits, misses, expirations, evictions and rejections are reported as metrics every minute.
+ */
+public class SingleJoinBolt extends BaseRichBolt implements PendingJoins.Listener<Tuple> {
+    public static final String EVICT_OLDEST = "oldest";
+    public static final String REJECT = "reject";
+    public static final int DEFAULT_MAX_PENDING = 100000;
+    private static final int METRICS_BUCKET_SECS = 60;
+
     OutputCollector _collector;
-    Fields _idFields;
     Fields _outFields;
-    int _numSources;
-    TimeCacheMap<List<Object>, Map<GlobalStreamId, Tuple>> _pending;
-    Map<String, GlobalStreamId> _fieldLocations;
+    int _maxPending;
+    String _policy;
+    boolean _reliable;
+    int _sourceCount;
+    Map<String, Map<String, Source>> _sources;
+    PendingJoins<Tuple> _pending;
+    CountMetric _hits;
+    CountMetric _misses;
+    CountMetric _expired;
+    CountMetric _evicted;
+    CountMetric _rejected;
 
+    /**
+     * A reliable join without a limit on the pending joins, as the join of Storm's examples.
+     */
     public SingleJoinBolt(Fields outFields) {
+        this(outFields, Integer.MAX_VALUE, EVICT_OLDEST, true);
+    }
+
+    /**
+     * @param policy   what to do with a new join once {@code maxPending} joins are pending, {@link #EVICT_OLDEST}
+     *                 or {@link #REJECT}
+     * @param reliable whether the output is anchored to the inputs and lost joins fail their inputs
+     */
+    public SingleJoinBolt(Fields outFields, int maxPending, String policy, boolean reliable) {
         _outFields = outFields;
+        _maxPending = maxPending;
+        _policy = policy;
+        _reliable = reliable;
+    }
+
+    /**
+     * A join configured with {@code storm.join.max.pending} and {@code storm.join.policy}, reliable unless
+     * {@code storm.reliability} is "none".
+     */
+    public static SingleJoinBolt fromConfig(Fields outFields) {
+        return new SingleJoinBolt(outFields, CommonConfig.STORM_JOIN_MAX_PENDING(), CommonConfig.STORM_JOIN_POLICY(),
+                !CommonConfig.STORM_RELIABILITY().equals(CommonConfig.STORM_UNRELIABLE));
     }
 
     @Override
     public void prepare(Map conf, TopologyContext context, OutputCollector collector) {
-        _fieldLocations = new HashMap<String, GlobalStreamId>();
         _collector = collector;
         int timeout = ((Number) conf.get(Config.TOPOLOGY_MESSAGE_TIMEOUT_SECS)).intValue();
-        _pending = new TimeCacheMap<List<Object>, Map<GlobalStreamId, Tuple>>(timeout, new ExpireCallback());
-        _numSources = context.getThisSources().size();
+
         Set<String> idFields = null;
         for (GlobalStreamId source : context.getThisSources().keySet()) {
             Fields fields = context.getComponentOutputFields(source.get_componentId(), source.get_streamId());
@@ -40,59 +88,176 @@ public class SingleJoinBolt extends BaseRichBolt {
                 idFields = setFields;
             else
                 idFields.retainAll(setFields);
+        }
+        List<String> ids = new ArrayList<String>(idFields);
 
-            for (String outfield : _outFields) {
-                for (String sourcefield : fields) {
-                    if (outfield.equals(sourcefield)) {
-                        _fieldLocations.put(outfield, source);
-                    }
+        _sources = new HashMap<>();
+        Set<String> located = new HashSet<>();
+        for (GlobalStreamId source : context.getThisSources().keySet()) {
+            Fields fields = context.getComponentOutputFields(source.get_componentId(), source.get_streamId());
+            List<Integer> outPositions = new ArrayList<>();
+            List<Integer> fieldIndexes = new ArrayList<>();
+            for (int i = 0; i < _outFields.size(); i++) {
+                if (fields.contains(_outFields.get(i))) {
+                    outPositions.add(i);
+                    fieldIndexes.add(fields.fieldIndex(_outFields.get(i)));
+                    located.add(_outFields.get(i));
                 }
             }
+            int[] idIndexes = new int[ids.size()];
+            for (int i = 0; i < ids.size(); i++) {
+                idIndexes[i] = fields.fieldIndex(ids.get(i));
+            }
+            Map<String, Source> streams = _sources.get(source.get_componentId());
+            if (streams == null) {
+                streams = new HashMap<>();
+                _sources.put(source.get_componentId(), streams);
+            }
+            streams.put(source.get_streamId(), new Source(_sourceCount, idIndexes, toArray(outPositions), toArray(fieldIndexes)));
+            _sourceCount++;
         }
-        _idFields = new Fields(new ArrayList<String>(idFields));
+        // a join expires after between timeout and timeout + 1 ticks of one second
+        _pending = new PendingJoins<>(timeout + 1, _maxPending, REJECT.equals(_policy), _sourceCount,
+                _outFields.size(), _reliable, this);
 
-        if (_fieldLocations.size() != _outFields.size()) {
+        if (located.size() != _outFields.size()) {
             throw new RuntimeException("Cannot find all outfields among sources");
         }
+
+        _hits = context.registerMetric("join_hits", new CountMetric(), METRICS_BUCKET_SECS);
+        _misses = context.registerMetric("join_misses", new CountMetric(), METRICS_BUCKET_SECS);
+        _expired = context.registerMetric("join_expired", new CountMetric(), METRICS_BUCKET_SECS);
+        _evicted = context.registerMetric("join_evicted", new CountMetric(), METRICS_BUCKET_SECS);
+        _rejected = context.registerMetric("join_rejected", new CountMetric(), METRICS_BUCKET_SECS);
     }
 
     @Override
     public void execute(Tuple tuple) {
-        List<Object> id = tuple.select(_idFields);
-        GlobalStreamId streamId = new GlobalStreamId(tuple.getSourceComponent(), tuple.getSourceStreamId());
-        if (!_pending.containsKey(id)) {
-            _pending.put(id, new HashMap<GlobalStreamId, Tuple>());
+        if (TupleUtils.isTick(tuple)) {
+            _pending.tick();
+            return;
         }
-        Map<GlobalStreamId, Tuple> parts = _pending.get(id);
-        if (parts.containsKey(streamId))
-            throw new RuntimeException("Received same side of single join twice");
-        parts.put(streamId, tuple);
-        if (parts.size() == _numSources) {
-            _pending.remove(id);
-            List<Object> joinResult = new ArrayList<Object>();
-            for (String outField : _outFields) {
-                GlobalStreamId loc = _fieldLocations.get(outField);
-                joinResult.add(parts.get(loc).getValueByField(outField));
+        Source source = _sources.get(tuple.getSourceComponent()).get(tuple.getSourceStreamId());
+        Object id = source.id(tuple);
+        PendingJoins.Join<Tuple> parts = _pending.get(id);
+        if (parts == null) {
+            parts = _pending.open(id);
+            if (parts == null) {
+                _rejected.incr();
+                if (_reliable) {
+                    _collector.fail(tuple);
+                } else {
+                    _collector.ack(tuple);
+                }
+                return;
             }
-            _collector.emit(new ArrayList<Tuple>(parts.values()), joinResult);
-
-            for (Tuple part : parts.values()) {
-                _collector.ack(part);
+            _misses.incr();
+        } else {
+            _hits.incr();
+        }
+        if (parts.has(source.index) && !_reliable) {
+            throw new RuntimeException("Received same side of single join twice");
+        }
+        Tuple replaced = _pending.arrive(parts, source.index, _reliable ? tuple : null);
+        if (replaced != null) {
+            // a replay that overtook the expiry of its first attempt, whose tuple tree has timed out anyway
+            _collector.fail(replaced);
+        }
+        for (int i = 0; i < source.outPositions.length; i++) {
+            parts.values[source.outPositions[i]] = tuple.getValue(source.fieldIndexes[i]);
+        }
+        if (!_reliable) {
+            _collector.ack(tuple);
+        }
+        if (_pending.isComplete(parts)) {
+            _pending.remove(parts);
+            if (_reliable) {
+                List<Tuple> anchors = new ArrayList<>(_sourceCount);
+                for (int i = 0; i < _sourceCount; i++) {
+                    anchors.add(parts.input(i));
+                }
+                _collector.emit(anchors, Arrays.asList(parts.values));
+                for (Tuple input : anchors) {
+                    _collector.ack(input);
+                }
+            } else {
+                _collector.emit(Arrays.asList(parts.values));
             }
         }
     }
 
+    @Override
+    public void expired(PendingJoins.Join<Tuple> join) {
+        failInputs(join);
+        _expired.incr();
+    }
+
+    @Override
+    public void evicted(PendingJoins.Join<Tuple> join) {
+        failInputs(join);
+        _evicted.incr();
+    }
+
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        Map<String, Object> conf = new HashMap<>();
+        conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, 1);
+        return conf;
+    }
+
     @Override
     public void declareOutputFields(OutputFieldsDeclarer declarer) {
         declarer.declare(_outFields);
     }
 
-    private class ExpireCallback implements TimeCacheMap.ExpiredCallback<List<Object>, Map<GlobalStreamId, Tuple>> {
-        @Override
-        public void expire(List<Object> id, Map<GlobalStreamId, Tuple> tuples) {
-            for (Tuple tuple : tuples.values()) {
-                _collector.fail(tuple);
+    /**
+     * Fails the inputs a lost join has received so far, for reliable joins.
+     */
+    private void failInputs(PendingJoins.Join<Tuple> parts) {
+        for (int i = 0; i < _sourceCount; i++) {
+            Tuple input = parts.input(i);
+            if (input != null) {
+                _collector.fail(input);
+            }
+        }
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Where the id and output fields of one input stream are.
+     */
+    private static class Source {
+        final int index;
+        final int[] idIndexes;
+        final int[] outPositions;
+        final int[] fieldIndexes;
+
+        Source(int index, int[] idIndexes, int[] outPositions, int[] fieldIndexes) {
+            this.index = index;
+            this.idIndexes = idIndexes;
+            this.outPositions = outPositions;
+            this.fieldIndexes = fieldIndexes;
+        }
+
+        /**
+         * The id value itself for a single id field, a list of the values otherwise.
+         */
+        Object id(Tuple tuple) {
+            if (idIndexes.length == 1) {
+                return tuple.getValue(idIndexes[0]);
+            }
+            List<Object> id = new ArrayList<>(idIndexes.length);
+            for (int index : idIndexes) {
+                id.add(tuple.getValue(index));
             }
+            return id;
         }
     }
 }
@@ -1,67 +1,222 @@
 package storm.benchmark;
 
+import benchmark.common.CommonConfig;
+import benchmark.common.codec.GeoKeys;
+import org.apache.storm.metric.api.CountMetric;
+import org.apache.storm.metric.api.IMetric;
 import org.apache.storm.spout.SpoutOutputCollector;
 import org.apache.storm.task.TopologyContext;
 import org.apache.storm.topology.OutputFieldsDeclarer;
 import org.apache.storm.topology.base.BaseRichSpout;
 import org.apache.storm.tuple.Fields;
 import org.apache.storm.tuple.Values;
-import org.apache.storm.utils.Utils;
 
-import java.io.*;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.HashMap;
 import java.util.Map;
-import org.apache.storm.utils.Utils;
 
 /**
  * Created by jeka01 on 03/09/16.
+ *
+ * Reads the generator on a {@link SocketRecordReader} thread, so {@link #nextTuple()} only takes the records
+ * already in the ring and returns at once when there are none. With {@code emitBatch} greater than zero up to
+ * that many records are emitted as one tuple of arrays, which {@link StormBenchmark.DeserializeBolt} unpacks.
+ * Binary records are always decoded by the spout, json lines only if {@code decodeJson} is set.
+ * Registers the metrics "ingest_rate" (records per second read from the socket), "queue_depth", "reconnects",
+ * "malformed_lines" (json lines the reader could not decode and skipped) and "emitted_tuples".
+ * <p>
+ * A reliable spout emits every tuple with a message id and keeps its values until it is acked; failed tuples are
+ * emitted again, with their original start_ts, before any new record. The number of tuples awaiting their ack is
+ * bounded by {@code topology.max.spout.pending}. Replays are reported as "replayed_tuples".
  */
 
 public class SocketReceiver extends BaseRichSpout {
+    private static final int METRICS_BUCKET_SECS = 10;
+    // records emitted per call when not batching, so one call does not hold the executor for long
+    private static final int MAX_EMITS_PER_CALL = 64;
+
     //The O/P collector
     private SpoutOutputCollector collector;
-    //The socket
-    private Socket clientSocket;
     private int port;
     private String hostname;
-    private BufferedReader in;
+    private String codec;
+    private int batchSize;
+    private int emitBatch;
+    private int queueCapacity;
+    private boolean reliable;
+    private boolean decodeJson;
+    private transient RecordRingBuffer ring;
+    private transient SocketRecordReader reader;
+    private transient Thread readerThread;
+    private transient CountMetric emitted;
+    private transient CountMetric replayed;
+    private transient long nextId;
+    private transient HashMap<Long, Values> pending;
+    private transient ArrayDeque<Long> failed;
+
     public SocketReceiver(String hostname,int port){
+        this(hostname, port, CommonConfig.JSON_CODEC, 0);
+    }
+
+    /**
+     * With the binary codec the spout decodes records itself and emits the same fields as
+     * {@link StormBenchmark.DeserializeBolt}, so the topology can skip the deserializer.
+     */
+    public SocketReceiver(String hostname, int port, String codec, int batchSize){
+        this(hostname, port, codec, batchSize, 0, 64 * 1024, false, false);
+    }
+
+    /**
+     * @param emitBatch     records per emitted tuple, 0 to emit every record as its own tuple
+     * @param queueCapacity records buffered between the reader thread and the spout
+     * @param reliable      whether tuples are emitted with message ids and replayed when they fail
+     * @param decodeJson    whether json lines are decoded on the reader thread and emitted as
+     *                      ("geo", "ts", "price", "start_ts") like binary records
+     */
+    public SocketReceiver(String hostname, int port, String codec, int batchSize, int emitBatch, int queueCapacity,
+                          boolean reliable, boolean decodeJson){
         this.port = port;
         this.hostname =  hostname;
+        this.codec = codec;
+        this.batchSize = batchSize;
+        this.emitBatch = emitBatch;
+        this.queueCapacity = queueCapacity;
+        this.reliable = reliable;
+        this.decodeJson = decodeJson;
     }
 
     public void open(Map conf, TopologyContext context, SpoutOutputCollector collector){
         this.collector=collector;
-        try {
-            this.clientSocket = new Socket(hostname , port);
-            InputStream inFromServer = clientSocket.getInputStream();
-            DataInputStream reader = new DataInputStream(inFromServer);
-            in = new BufferedReader(new InputStreamReader(reader, "UTF-8"));
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        ring = new RecordRingBuffer(queueCapacity);
+        reader = new SocketRecordReader(hostname, port, isBinary(), batchSize, decodeJson, ring);
+        readerThread = new Thread(reader, "socket-receiver-" + hostname + ":" + port);
+        readerThread.setDaemon(true);
+        readerThread.start();
+
+        pending = new HashMap<>();
+        failed = new ArrayDeque<>();
+
+        emitted = context.registerMetric("emitted_tuples", new CountMetric(), METRICS_BUCKET_SECS);
+        replayed = context.registerMetric("replayed_tuples", new CountMetric(), METRICS_BUCKET_SECS);
+        context.registerMetric("queue_depth", (IMetric) () -> ring.size(), METRICS_BUCKET_SECS);
+        context.registerMetric("reconnects", (IMetric) () -> reader.reconnects(), METRICS_BUCKET_SECS);
+        context.registerMetric("malformed_lines", (IMetric) () -> reader.malformed(), METRICS_BUCKET_SECS);
+        context.registerMetric("ingest_rate", new IMetric() {
+            private long lastCount = 0;
+            private long lastNanos = System.nanoTime();
+
+            @Override
+            public Object getValueAndReset() {
+                long count = reader.received();
+                long now = System.nanoTime();
+                double rate = (count - lastCount) * 1e9 / Math.max(now - lastNanos, 1);
+                lastCount = count;
+                lastNanos = now;
+                return rate;
+            }
+        }, METRICS_BUCKET_SECS);
+    }
+
+    @Override
+    public void close() {
+        readerThread.interrupt();
+    }
+
+    private boolean isBinary() {
+        return CommonConfig.BINARY_CODEC.equals(codec);
+    }
+
+    private boolean isDecoded() {
+        return isBinary() || decodeJson;
+    }
 
+    private static String geo(RecordRingBuffer.Record record) {
+        return record.key >= 0 ? GeoKeys.name(record.key) : record.line;
     }
 
     public void nextTuple(){
-        try {
-            String jsonStr  = in.readLine();
-	 //  if( jsonStr == null ){	
-	   //   collector.emit(new Values("null"));
-	  // }
-	   // else {
-		
-	      collector.emit(new Values(jsonStr));
-	  // } 
-
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (!failed.isEmpty()) {
+            Long id = failed.poll();
+            collector.emit(pending.get(id), id);
+            replayed.incr();
+            return;
         }
+        int available = ring.available();
+        if (available == 0) {
+            return;
+        }
+        if (emitBatch > 0) {
+            int count = Math.min(available, emitBatch);
+            emitBatch(count);
+            ring.release(count);
+            emitted.incr();
+            return;
+        }
+        int count = Math.min(available, MAX_EMITS_PER_CALL);
+        for (int i = 0; i < count; i++) {
+            RecordRingBuffer.Record record = ring.get(i);
+            if (isDecoded()) {
+                emit(new Values(geo(record), record.ts, record.value, record.sendTs));
+            } else {
+                emit(new Values(record.line));
+            }
+        }
+        ring.release(count);
+        emitted.incrBy(count);
+    }
+
+    private void emitBatch(int count) {
+        if (!isDecoded()) {
+            String[] lines = new String[count];
+            for (int i = 0; i < count; i++) {
+                lines[i] = ring.get(i).line;
+            }
+            emit(new Values((Object) lines));
+            return;
+        }
+        String[] geos = new String[count];
+        long[] ts = new long[count];
+        double[] prices = new double[count];
+        long[] startTs = new long[count];
+        for (int i = 0; i < count; i++) {
+            RecordRingBuffer.Record record = ring.get(i);
+            geos[i] = geo(record);
+            ts[i] = record.ts;
+            prices[i] = record.value;
+            startTs[i] = record.sendTs;
+        }
+        emit(new Values(geos, ts, prices, startTs));
+    }
+
+    private void emit(Values values) {
+        if (!reliable) {
+            collector.emit(values);
+            return;
+        }
+        Long id = nextId++;
+        pending.put(id, values);
+        collector.emit(values, id);
+    }
+
+    @Override
+    public void ack(Object msgId) {
+        pending.remove(msgId);
+    }
+
+    @Override
+    public void fail(Object msgId) {
+        failed.add((Long) msgId);
     }
 
     @Override
     public void declareOutputFields(OutputFieldsDeclarer outputFieldsDeclarer) {
-        outputFieldsDeclarer.declare(new Fields("json_string"));
+        if (emitBatch > 0) {
+            outputFieldsDeclarer.declare(isDecoded() ? new Fields("geos", "ts", "prices", "start_ts")
+                    : new Fields("json_strings"));
+        } else if (isDecoded()) {
+            outputFieldsDeclarer.declare(new Fields("geo", "ts", "price", "start_ts"));
+        } else {
+            outputFieldsDeclarer.declare(new Fields("json_string"));
+        }
     }
 }
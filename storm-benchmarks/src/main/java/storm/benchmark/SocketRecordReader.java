@@ -0,0 +1,208 @@
+package storm.benchmark;
+
+import benchmark.common.codec.BinaryEventCodec;
+import benchmark.common.codec.JsonEventCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background reader of a {@link SocketReceiver}. Reads the generator socket through a {@link SocketChannel} into
+ * a heap buffer, splits it into json lines or {@link BinaryEventCodec} records and publishes them to a
+ * {@link RecordRingBuffer}, json lines either as strings or already decoded; when the ring is full it stops
+ * reading, which pushes back on the generator through TCP. Json lines that fail to decode are counted and
+ * skipped. A closed or failed connection is reopened with an exponential backoff until the thread is interrupted.
+ */
+public class SocketRecordReader implements Runnable {
+    private static final Logger LOG = LoggerFactory.getLogger(SocketRecordReader.class);
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final long MIN_BACKOFF_MS = 100;
+    private static final long MAX_BACKOFF_MS = 5000;
+
+    private final String hostname;
+    private final int port;
+    private final boolean binary;
+    private final boolean framed;
+    private final JsonEventCodec json;
+    private final RecordRingBuffer ring;
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+    private final AtomicLong malformed = new AtomicLong();
+
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+    private int remainingInFrame = 0;
+
+    /**
+     * @param batchSize the {@code datasourcesocket.batchsize} the generator was started with, binary records are
+     *                  length-prefixed when it is greater than zero
+     * @param decodeJson whether json lines are decoded into the record fields instead of kept as strings
+     */
+    public SocketRecordReader(String hostname, int port, boolean binary, int batchSize, boolean decodeJson,
+                              RecordRingBuffer ring) {
+        this.hostname = hostname;
+        this.port = port;
+        this.binary = binary;
+        this.framed = binary && batchSize > 0;
+        this.json = decodeJson ? new JsonEventCodec() : null;
+        this.ring = ring;
+    }
+
+    /**
+     * Records published since the reader started, safe to call from any thread.
+     */
+    public long received() {
+        return received.get();
+    }
+
+    /**
+     * Json lines skipped because they could not be decoded, safe to call from any thread.
+     */
+    public long malformed() {
+        return malformed.get();
+    }
+
+    /**
+     * Connection attempts after the first one, safe to call from any thread.
+     */
+    public long reconnects() {
+        return reconnects.get();
+    }
+
+    @Override
+    public void run() {
+        long backoff = MIN_BACKOFF_MS;
+        boolean first = true;
+        while (!Thread.currentThread().isInterrupted()) {
+            if (!first) {
+                reconnects.incrementAndGet();
+            }
+            first = false;
+            try (SocketChannel channel = SocketChannel.open(new InetSocketAddress(hostname, port))) {
+                LOG.info("Connected to {}:{}", hostname, port);
+                backoff = MIN_BACKOFF_MS;
+                buffer.clear();
+                remainingInFrame = 0;
+                while (channel.read(buffer) >= 0) {
+                    buffer.flip();
+                    if (!drain()) {
+                        return;
+                    }
+                    buffer.compact();
+                    if (!buffer.hasRemaining()) {
+                        // a json line longer than the buffer
+                        buffer = ByteBuffer.allocate(buffer.capacity() * 2).put((ByteBuffer) buffer.flip());
+                    }
+                }
+                LOG.warn("Connection to {}:{} closed by the generator", hostname, port);
+            } catch (IOException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                LOG.warn("Connection to {}:{} failed: {}", hostname, port, e.toString());
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                return;
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+        }
+    }
+
+    /**
+     * Publishes every complete record in the buffer, leaving its position at the first incomplete one.
+     *
+     * @return false if interrupted while waiting for space in the ring
+     */
+    private boolean drain() {
+        return binary ? drainRecords() : drainLines();
+    }
+
+    private boolean drainRecords() {
+        while (true) {
+            if (framed && remainingInFrame == 0) {
+                if (buffer.remaining() < BinaryEventCodec.FRAME_HEADER_BYTES) {
+                    return true;
+                }
+                remainingInFrame = buffer.getInt();
+                continue;
+            }
+            if (buffer.remaining() < BinaryEventCodec.RECORD_BYTES) {
+                return true;
+            }
+            RecordRingBuffer.Record record = ring.claim();
+            if (record == null) {
+                return false;
+            }
+            int offset = buffer.position();
+            record.key = BinaryEventCodec.key(buffer, offset);
+            record.value = BinaryEventCodec.value(buffer, offset);
+            record.ts = BinaryEventCodec.ts(buffer, offset);
+            record.sendTs = BinaryEventCodec.sendTs(buffer, offset);
+            buffer.position(offset + BinaryEventCodec.RECORD_BYTES);
+            ring.publish();
+            received.lazySet(received.get() + 1);
+            if (framed) {
+                remainingInFrame--;
+            }
+        }
+    }
+
+    private boolean drainLines() {
+        byte[] bytes = buffer.array();
+        int start = buffer.position();
+        int limit = buffer.limit();
+        for (int i = start; i < limit; i++) {
+            if (bytes[i] != '\n') {
+                continue;
+            }
+            int end = i > start && bytes[i - 1] == '\r' ? i - 1 : i;
+            if (end > start) {
+                if (json != null && !parse(bytes, start, end)) {
+                    start = i + 1;
+                    continue;
+                }
+                RecordRingBuffer.Record record = ring.claim();
+                if (record == null) {
+                    return false;
+                }
+                if (json == null) {
+                    record.line = new String(bytes, start, end - start, StandardCharsets.UTF_8);
+                } else {
+                    record.key = json.key();
+                    record.line = json.key() < 0 ? json.geo() : null;
+                    record.value = json.value();
+                    record.ts = json.ts();
+                    record.sendTs = json.sendTs();
+                }
+                ring.publish();
+                received.lazySet(received.get() + 1);
+            }
+            start = i + 1;
+        }
+        buffer.position(start);
+        return true;
+    }
+
+    /**
+     * Decodes one json line. A malformed or truncated line is counted, only the first one is logged.
+     */
+    private boolean parse(byte[] bytes, int start, int end) {
+        try {
+            json.parse(bytes, start, end - start);
+            return true;
+        } catch (RuntimeException e) {
+            if (malformed.getAndIncrement() == 0) {
+                LOG.warn("Skipping malformed json line from {}:{}: {}", hostname, port, e.toString());
+            }
+            return false;
+        }
+    }
+}
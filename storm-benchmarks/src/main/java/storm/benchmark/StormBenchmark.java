@@ -1,6 +1,9 @@
 package storm.benchmark;
 
 import benchmark.common.CommonConfig;
+import benchmark.common.codec.JsonEventCodec;
+import benchmark.common.sink.ResultSinkFactory;
+import benchmark.common.window.PaneWindowState;
 import org.apache.hadoop.util.hash.Hash;
 import org.apache.storm.Config;
 import org.apache.storm.LocalCluster;
@@ -18,6 +21,7 @@ import org.apache.storm.hdfs.bolt.sync.SyncPolicy;
 import org.apache.storm.task.OutputCollector;
 import org.apache.storm.task.TopologyContext;
 import org.apache.storm.topology.BoltDeclarer;
+import org.apache.storm.topology.IRichBolt;
 import org.apache.storm.topology.OutputFieldsDeclarer;
 import org.apache.storm.topology.TopologyBuilder;
 import org.apache.storm.topology.base.BaseRichBolt;
@@ -26,7 +30,6 @@ import org.apache.storm.tuple.Fields;
 import org.apache.storm.tuple.Tuple;
 import org.apache.storm.tuple.Values;
 import org.apache.storm.windowing.TupleWindow;
-import org.json.JSONObject;
 
 import java.util.*;
 import java.util.concurrent.TimeUnit;
@@ -38,29 +41,65 @@ import static org.apache.storm.topology.base.BaseWindowedBolt.Duration;
  */
 public class StormBenchmark {
 
+    private static final int DEFAULT_ACKED_BATCH = 100;
+
     public static class DeserializeBolt extends BaseRichBolt {
         OutputCollector _collector;
+        boolean _anchored;
+        JsonEventCodec _codec;
+
+        public DeserializeBolt() {
+            this(true);
+        }
+
+        /**
+         * @param anchored whether output tuples are anchored to their input, only useful with a reliable spout
+         */
+        public DeserializeBolt(boolean anchored) {
+            _anchored = anchored;
+        }
 
         @Override
         public void prepare(Map conf, TopologyContext context, OutputCollector collector) {
             _collector = collector;
+            _codec = new JsonEventCodec();
         }
 
+        /**
+         * Takes a json line, or a batch of json lines or binary records from a batching {@link SocketReceiver}.
+         */
         @Override
         public void execute(Tuple tuple) {
+            Object value = tuple.getValue(0);
+            if (value instanceof String) {
+                emit(tuple, (String) value);
+            } else if (value instanceof String[] && tuple.size() == 1) {
+                for (String json : (String[]) value) {
+                    emit(tuple, json);
+                }
+            } else {
+                String[] geos = (String[]) value;
+                long[] ts = (long[]) tuple.getValue(1);
+                double[] prices = (double[]) tuple.getValue(2);
+                long[] startTs = (long[]) tuple.getValue(3);
+                for (int i = 0; i < geos.length; i++) {
+                    emitFrom(_collector, _anchored, tuple, new Values(geos[i], ts[i], prices[i], startTs[i]));
+                }
+            }
+            _collector.ack(tuple);
+        }
 
-            JSONObject obj = new JSONObject(tuple.getString(0));
-            String geo = obj.getString("key");
-            Double price = obj.getDouble("value");
-            Long ts = obj.getLong("ts");
-            Long startTS = System.currentTimeMillis();
-            _collector.emit(tuple, new Values(
+        private void emit(Tuple tuple, String json) {
+            JsonEventCodec obj = _codec.parse(json);
+            String geo = obj.geo();
+            double price = obj.value();
+            long ts = obj.ts();
+            emitFrom(_collector, _anchored, tuple, new Values(
                     geo,
                     ts,
                     price,
-                    startTS
+                    obj.sendTs()
           	  ));
-             _collector.ack(tuple);
         }
 
         @Override
@@ -71,19 +110,30 @@ public class StormBenchmark {
 
     public static class DeserializeAndGroupBolt extends BaseRichBolt {
         OutputCollector _collector;
+        boolean _anchored;
+        JsonEventCodec _codec;
+
+        public DeserializeAndGroupBolt() {
+            this(true);
+        }
+
+        public DeserializeAndGroupBolt(boolean anchored) {
+            _anchored = anchored;
+        }
 
         @Override
         public void prepare(Map conf, TopologyContext context, OutputCollector collector) {
             _collector = collector;
+            _codec = new JsonEventCodec();
         }
 
         @Override
         public void execute(Tuple tuple) {
 
-            JSONObject obj = new JSONObject(tuple.getString(0));
-            String group = obj.getString("key") + obj.getDouble("value");
-            Long ts = obj.getLong("ts");
-            _collector.emit(tuple, new Values(
+            JsonEventCodec obj = _codec.parse(tuple.getString(0));
+            String group = obj.geo() + obj.value();
+            long ts = obj.ts();
+            emitFrom(_collector, _anchored, tuple, new Values(
                     group,
                     ts
             ));
@@ -174,30 +224,48 @@ public class StormBenchmark {
 
     }
 
-//    public static class FinalTSJoinBolt extends BaseRichBolt {
-//        OutputCollector _collector;
-//
-//        @Override
-//        public void prepare(Map conf, TopologyContext context, OutputCollector collector) {
-//            _collector = collector;
-//        }
-//
-//        @Override
-//        public void execute(Tuple tuple) {
-//            _collector.emit(tuple, new Values( System.currentTimeMillis() - tuple.getLongByField("max_ts"), tuple.getLongByField("max_ts") ));
-//            _collector.ack(tuple);
-//        }
-//
-//        @Override
-//        public void declareOutputFields(OutputFieldsDeclarer declarer) {
-//            declarer.declare(new Fields( "interval", "max_ts"));
-//        }
-//    }
+    public static class FinalTSJoinBolt extends BaseRichBolt {
+        OutputCollector _collector;
+        boolean _anchored;
+
+        public FinalTSJoinBolt() {
+            this(true);
+        }
+
+        public FinalTSJoinBolt(boolean anchored) {
+            _anchored = anchored;
+        }
+
+        @Override
+        public void prepare(Map conf, TopologyContext context, OutputCollector collector) {
+            _collector = collector;
+        }
+
+        @Override
+        public void execute(Tuple tuple) {
+            emitFrom(_collector, _anchored, tuple, new Values( System.currentTimeMillis() - tuple.getLong(0), tuple.getLong(0), tuple.getLong(1) ));
+            _collector.ack(tuple);
+        }
+
+        @Override
+        public void declareOutputFields(OutputFieldsDeclarer declarer) {
+            declarer.declare(new Fields( "latency", "ts", "start_ts"));
+        }
+    }
 
 
 
     public static class FinalTSBolt extends BaseRichBolt {
         OutputCollector _collector;
+        boolean _anchored;
+
+        public FinalTSBolt() {
+            this(true);
+        }
+
+        public FinalTSBolt(boolean anchored) {
+            _anchored = anchored;
+        }
 
         @Override
         public void prepare(Map conf, TopologyContext context, OutputCollector collector) {
@@ -207,7 +275,7 @@ public class StormBenchmark {
         @Override
         public void execute(Tuple tuple) {
             Long ts = System.currentTimeMillis() -  tuple.getLong(1);
-            _collector.emit(tuple, new Values(tuple.getString(0), ts , tuple.getLong(1), tuple.getDouble(2), tuple.getInteger(3), tuple.getLong(4) ));
+            emitFrom(_collector, _anchored, tuple, new Values(tuple.getString(0), ts , tuple.getLong(1), tuple.getDouble(2), tuple.getInteger(3), tuple.getLong(4) ));
             _collector.ack(tuple);
         }
 
@@ -219,7 +287,53 @@ public class StormBenchmark {
 
 
 
-    private static HdfsBolt createSink() {
+    private static void emitFrom(OutputCollector collector, boolean anchored, Tuple input, Values values) {
+        if (anchored) {
+            collector.emit(input, values);
+        } else {
+            collector.emit(values);
+        }
+    }
+
+    private static boolean anchored() {
+        return !CommonConfig.STORM_RELIABILITY().equals(CommonConfig.STORM_UNRELIABLE);
+    }
+
+    /**
+     * Micro-batch size of the spouts, batched acking tracks whole batches so it always batches.
+     */
+    private static int spoutBatch() {
+        if (CommonConfig.STORM_RELIABILITY().equals(CommonConfig.STORM_BATCHED_ACKING)
+                && CommonConfig.STORM_SPOUT_BATCH() == 0) {
+            return DEFAULT_ACKED_BATCH;
+        }
+        return CommonConfig.STORM_SPOUT_BATCH();
+    }
+
+    /**
+     * Sets up acking for {@code storm.reliability}: "none" runs without ackers, "atleastonce" tracks and replays
+     * every record from the spout, "batched" tracks one micro-batch of records per spout tuple, trading replay
+     * granularity for a fraction of the acker traffic. The pane window and join bolts ack their input once it is
+     * added to their state, so the guarantee ends there. Storm's windowed bolt acks only on expiry and is
+     * rejected in the reliable modes, see {@link #slidingAverage(TopologyBuilder, int)}.
+     */
+    private static void configureReliability(Config conf) {
+        if (!anchored()) {
+            conf.setNumAckers(0);
+            return;
+        }
+        conf.setNumAckers(CommonConfig.STORM_ACKERS());
+        conf.setMaxSpoutPending(CommonConfig.STORM_MAX_SPOUT_PENDING());
+    }
+
+    /**
+     * The terminal bolt for {@code output.sink}, an HdfsBolt by default or a {@link ResultSinkBolt}.
+     */
+    private static IRichBolt createSink() {
+        ResultSinkFactory sinks = ResultSinkFactory.fromConfig();
+        if (sinks.isEnabled()) {
+            return new ResultSinkBolt(sinks);
+        }
         RecordFormat format = new DelimitedRecordFormat()
                 .withFieldDelimiter(",");
 
@@ -243,51 +357,152 @@ public class StormBenchmark {
     }
 
 
-    private static StormTopology windowedAggregation(TopologyBuilder builder){
+    /**
+     * Declares one spout per generator endpoint and returns the components emitting deserialized
+     * ("geo", "ts", "price", "start_ts") tuples. Binary spouts decode records themselves, json spouts and
+     * spouts emitting batches ({@code storm.spout.batch}) go through the event_deserializer bolt.
+     */
+    private static List<String> eventSources(TopologyBuilder builder){
+        return eventSources(builder, CommonConfig.DATASOURCE_PORTS(), "event_deserializer");
+    }
+
+    /**
+     * Spouts that decode json themselves and emit every record as its own tuple, so that the first bolt can
+     * group on "geo" without a deserializer in between.
+     */
+    private static List<String> decodingSources(TopologyBuilder builder){
+        List<String> spouts = new ArrayList<>();
         for (String host: CommonConfig.DATASOURCE_HOSTS()){
             for(Integer port: CommonConfig.DATASOURCE_PORTS()){
-                builder.setSpout("source"+host + "" + port, new SocketReceiver(host, port),1);
+                builder.setSpout("source"+host + "" + port, new SocketReceiver(host, port,
+                        CommonConfig.DATASOURCE_CODEC(), CommonConfig.DATASOURCE_BATCHSIZE(),
+                        0, CommonConfig.STORM_SPOUT_QUEUE(), anchored(), true),1);
+                spouts.add("source"+host + "" + port);
             }
         }
-        BoltDeclarer bolt= builder.setBolt("event_deserializer", new DeserializeBolt(), CommonConfig.PARALLELISM());
+        return spouts;
+    }
+
+    /**
+     * Like {@link #eventSources(TopologyBuilder)} for a subset of the generator ports, with a deserializer bolt of
+     * the given name.
+     */
+    private static List<String> eventSources(TopologyBuilder builder, List<Integer> ports, String deserializer){
+        List<String> spouts = new ArrayList<>();
         for (String host: CommonConfig.DATASOURCE_HOSTS()){
-            for(Integer port: CommonConfig.DATASOURCE_PORTS()) {
-                bolt = bolt.shuffleGrouping("source"+host +"" + port);
+            for(Integer port: ports){
+                builder.setSpout("source"+host + "" + port, new SocketReceiver(host, port,
+                        CommonConfig.DATASOURCE_CODEC(), CommonConfig.DATASOURCE_BATCHSIZE(),
+                        spoutBatch(), CommonConfig.STORM_SPOUT_QUEUE(), anchored(), false),1);
+                spouts.add("source"+host + "" + port);
             }
         }
-        builder.setBolt("sliding_avg", new SlidingWindowAvgBolt()
+        if (CommonConfig.DATASOURCE_CODEC().equals(CommonConfig.BINARY_CODEC) && spoutBatch() == 0) {
+            return spouts;
+        }
+        BoltDeclarer bolt= builder.setBolt(deserializer, new DeserializeBolt(anchored()), CommonConfig.PARALLELISM());
+        for (String spout: spouts) {
+            bolt = bolt.shuffleGrouping(spout);
+        }
+        return Collections.singletonList(deserializer);
+    }
+
+    /**
+     * Declares the "sliding_avg" bolt, Storm's windowed bolt or, with {@code storm.window.operator: pane}, the
+     * {@link PaneWindowAvgBolt} that keeps per pane partial aggregates instead of the tuples of the window.
+     */
+    private static BoltDeclarer slidingAverage(TopologyBuilder builder, int parallelism){
+        if (CommonConfig.STORM_WINDOW_OPERATOR().equals(CommonConfig.STORM_PANE_WINDOW)) {
+            return builder.setBolt("sliding_avg", new PaneWindowAvgBolt(CommonConfig.SLIDING_WINDOW_LENGTH(),
+                    CommonConfig.SLIDING_WINDOW_SLIDE()), parallelism);
+        }
+        if (anchored()) {
+            // the windowed bolt acks a tuple only when it leaves the window, so max.spout.pending would cap the
+            // throughput at that many tuples per window length and slide
+            throw new IllegalArgumentException("storm.reliability: " + CommonConfig.STORM_RELIABILITY()
+                    + " needs storm.window.operator: " + CommonConfig.STORM_PANE_WINDOW
+                    + ", Storm's windowed bolt holds the acks of a whole window");
+        }
+        return builder.setBolt("sliding_avg", new SlidingWindowAvgBolt()
                 .withWindow(new Duration(CommonConfig.SLIDING_WINDOW_LENGTH(), TimeUnit.MILLISECONDS),
                         new Duration(CommonConfig.SLIDING_WINDOW_SLIDE(), TimeUnit.MILLISECONDS))
-                ,CommonConfig.PARALLELISM()).fieldsGrouping("event_deserializer", new Fields("geo") );
-        builder.setBolt("event_filter", new FinalTSBolt(), CommonConfig.PARALLELISM()).shuffleGrouping("sliding_avg");
+                , parallelism);
+    }
+
+    private static StormTopology windowedAggregation(TopologyBuilder builder){
+        if (CommonConfig.STORM_CHAINED()) {
+            return chainedWindowedAggregation(builder);
+        }
+        List<String> sources = eventSources(builder);
+        BoltDeclarer bolt = slidingAverage(builder, CommonConfig.PARALLELISM());
+        for (String source: sources) {
+            bolt = bolt.fieldsGrouping(source, new Fields("geo"));
+        }
+        builder.setBolt("event_filter", new FinalTSBolt(anchored()), CommonConfig.PARALLELISM()).shuffleGrouping("sliding_avg");
         builder.setBolt("hdfsbolt", createSink(), CommonConfig.PARALLELISM()).shuffleGrouping("event_filter");
         return builder.createTopology();
 
     }
 
+    /**
+     * The keyed aggregation with {@code storm.chained: true}, one hop less per stage: the spouts decode records,
+     * a {@link ChainedWindowAvgBolt} windows and stamps the latency and the sink reads it with local-or-shuffle
+     * grouping. The fields grouping on "geo" is the only hop that has to cross executors, as in Flink's keyBy.
+     * The chained bolt is a pane window reading one record per tuple, so the topology needs
+     * {@code storm.window.operator: pane} and no spout batching.
+     */
+    private static StormTopology chainedWindowedAggregation(TopologyBuilder builder){
+        if (!CommonConfig.STORM_WINDOW_OPERATOR().equals(CommonConfig.STORM_PANE_WINDOW)) {
+            throw new IllegalArgumentException("storm.chained needs storm.window.operator: "
+                    + CommonConfig.STORM_PANE_WINDOW + ", not " + CommonConfig.STORM_WINDOW_OPERATOR());
+        }
+        if (spoutBatch() > 0) {
+            throw new IllegalArgumentException("storm.chained emits one record per tuple, it does not support "
+                    + "storm.spout.batch or storm.reliability: " + CommonConfig.STORM_BATCHED_ACKING);
+        }
+        BoltDeclarer bolt = builder.setBolt("sliding_avg", new ChainedWindowAvgBolt(CommonConfig.SLIDING_WINDOW_LENGTH(),
+                CommonConfig.SLIDING_WINDOW_SLIDE()), CommonConfig.PARALLELISM());
+        for (String source: decodingSources(builder)) {
+            bolt = bolt.fieldsGrouping(source, new Fields("geo"));
+        }
+        builder.setBolt("hdfsbolt", createSink(), CommonConfig.PARALLELISM()).localOrShuffleGrouping("sliding_avg");
+        return builder.createTopology();
+    }
+
     private static StormTopology allWindowedAggregation(TopologyBuilder builder){
-        for (String host: CommonConfig.DATASOURCE_HOSTS()){
-            for(Integer port: CommonConfig.DATASOURCE_PORTS()){
-                builder.setSpout("source"+host + "" + port, new SocketReceiver(host, port),1);
-            }
+        List<String> sources = eventSources(builder);
+        if (CommonConfig.STORM_WINDOW_OPERATOR().equals(CommonConfig.STORM_PANE_WINDOW)) {
+            return combinedAllWindowedAggregation(builder, sources);
         }
-        BoltDeclarer bolt= builder.setBolt("event_deserializer", new DeserializeBolt(), CommonConfig.PARALLELISM());
-        for (String host: CommonConfig.DATASOURCE_HOSTS()){
-            for(Integer port: CommonConfig.DATASOURCE_PORTS()) {
-                bolt = bolt.shuffleGrouping("source"+host +"" + port);
-            }
+        BoltDeclarer bolt = slidingAverage(builder, 1);
+        for (String source: sources) {
+            bolt = bolt.fieldsGrouping(source, new Fields("geo"));
         }
-        builder.setBolt("sliding_avg", new SlidingWindowAvgBolt()
-                        .withWindow(new Duration(CommonConfig.SLIDING_WINDOW_LENGTH(), TimeUnit.MILLISECONDS),
-                                new Duration(CommonConfig.SLIDING_WINDOW_SLIDE(), TimeUnit.MILLISECONDS))
-                ,1).fieldsGrouping("event_deserializer", new Fields("geo") );
-        builder.setBolt("event_filter", new FinalTSBolt(), CommonConfig.PARALLELISM()).shuffleGrouping("sliding_avg");
+        builder.setBolt("event_filter", new FinalTSBolt(anchored()), CommonConfig.PARALLELISM()).shuffleGrouping("sliding_avg");
         builder.setBolt("hdfsbolt", createSink(), CommonConfig.PARALLELISM()).shuffleGrouping("event_filter");
         return builder.createTopology();
 
     }
 
 
+    /**
+     * Global window in two stages: parallel "partial_avg" tasks combine their input per pane, the single
+     * "sliding_avg" task merges one partial per task and pane instead of every tuple.
+     */
+    private static StormTopology combinedAllWindowedAggregation(TopologyBuilder builder, List<String> sources){
+        long paneMs = PaneWindowState.paneMs(CommonConfig.SLIDING_WINDOW_LENGTH(), CommonConfig.SLIDING_WINDOW_SLIDE());
+        BoltDeclarer partials = builder.setBolt("partial_avg", new PanePartialBolt(paneMs), CommonConfig.PARALLELISM());
+        for (String source: sources) {
+            partials = partials.localOrShuffleGrouping(source);
+        }
+        builder.setBolt("sliding_avg", new PaneMergeBolt(CommonConfig.SLIDING_WINDOW_LENGTH(),
+                CommonConfig.SLIDING_WINDOW_SLIDE()), 1).globalGrouping("partial_avg");
+        builder.setBolt("event_filter", new FinalTSBolt(anchored()), CommonConfig.PARALLELISM()).shuffleGrouping("sliding_avg");
+        builder.setBolt("hdfsbolt", createSink(), CommonConfig.PARALLELISM()).shuffleGrouping("event_filter");
+        return builder.createTopology();
+    }
+
+
 //    private static StormTopology dummyConsumer(TopologyBuilder builder) {
 //        for (String host: CommonConfig.DATASOURCE_HOSTS()){
 //            for(Integer port: CommonConfig.DATASOURCE_PORTS()){
@@ -305,110 +520,31 @@ public class StormBenchmark {
 //    }
 
 
-//    public static class SlidingWindowJoinBolt extends BaseWindowedBolt {
-//
-//        private OutputCollector collector;
-//        private HashMap<String, HashMap<Long, Integer>> probeMap = new HashMap<>();
-//        private String probeStreamID;
-//        public SlidingWindowJoinBolt(String probeStream){
-//            this.probeStreamID = probeStream;
-//        }
-//
-//        @Override
-//        public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
-//            this.collector = collector;
-//        }
-//
-//        @Override
-//        public void execute(TupleWindow inputWindow) {
-//
-//            List<Tuple> newTestTuples = new ArrayList<>();
-//
-//            for (Tuple t : inputWindow.getExpired() ){
-//                if (t.getSourceGlobalStreamId().get_componentId().equals(probeStreamID)){
-//                    String key = t.getStringByField("group");
-//                    HashMap<Long, Integer> hm = probeMap.get(key);
-//                    Integer count = hm.get(t.getLongByField("ts"));
-//                    count --;
-//                    if (count <= 0){
-//                        hm.remove(t.getLongByField("ts"));
-//                    } else {
-//                        hm.put(t.getLongByField("ts"), count);
-//                    }
-//                    if (hm.size() == 0) {
-//                        probeMap.remove(key);
-//                    } else {
-//                        probeMap.put(key, hm);
-//                    }
-//                }
-//            }
-//            for (Tuple t: inputWindow.getNew()){
-//                if (t.getSourceGlobalStreamId().get_componentId().equals(probeStreamID)){
-//                    String key = t.getStringByField("group");
-//                    HashMap<Long, Integer> hm = probeMap.getOrDefault(key, new HashMap<Long, Integer>());
-//                    hm.put(t.getLongByField("ts"), hm.getOrDefault(t.getLongByField("ts"), 0) + 1   );
-//                    probeMap.put(key,hm);
-//                } else {
-//                    newTestTuples.add(t);
-//                }
-//            }
-//
-//            for (Tuple t: newTestTuples){
-//                String key = t.getStringByField("group");
-//                if (probeMap.containsKey(key)){
-//                    HashMap<Long, Integer> hm = probeMap.get(key);
-//                    for (Map.Entry<Long, Integer> entry : hm.entrySet()) {
-//                        for (int i = 0; i < entry.getValue(); i++){
-//                            collector.emit(new Values(  Math.max( t.getLongByField("ts"), entry.getKey()))   );
-//                        }
-//                    }
-//                }
-//            }
-//
-//
-//
-//        }
-//        @Override
-//        public void declareOutputFields(OutputFieldsDeclarer declarer) {
-//            declarer.declare(new Fields("max_ts"));
-//        }
-//
-//    }
-
-
-
-//    private static StormTopology windowedJoin(TopologyBuilder builder){
-//        for (String host: CommonConfig.DATASOURCE_HOSTS()){
-//            for(Integer port: CommonConfig.DATASOURCE_PORTS()) {
-//                builder.setSpout("source"+host + "" + port, new SocketReceiver(host, port),1);
-//            }
-//        }
-//        BoltDeclarer joinBolt1= builder.setBolt("event_deserializer1", new DeserializeAndGroupBolt(), CommonConfig.PARALLELISM());
-//        BoltDeclarer joinBolt2= builder.setBolt("event_deserializer2", new DeserializeAndGroupBolt(), CommonConfig.PARALLELISM());
-//
-//        int i = 0;
-//        for (String host: CommonConfig.DATASOURCE_HOSTS()) {
-//            for (Integer port : CommonConfig.DATASOURCE_PORTS()) {
-//                if (i % 2 == 0){
-//                    joinBolt1 = joinBolt1.shuffleGrouping("source"+host + "" + port);
-//                } else {
-//                    joinBolt2 = joinBolt2.shuffleGrouping("source"+host + "" + port);
-//                }
-//                i++;
-//            }
-//        }
-//
-//        builder.setBolt("sliding_join", new SlidingWindowJoinBolt("event_deserializer1")
-//                .withWindow(new Duration(CommonConfig.SLIDING_WINDOW_LENGTH(), TimeUnit.MILLISECONDS),
-//                        new Duration(CommonConfig.SLIDING_WINDOW_SLIDE(), TimeUnit.MILLISECONDS)),CommonConfig.PARALLELISM())
-//                .fieldsGrouping("event_deserializer1", new Fields("group") )
-//                .fieldsGrouping("event_deserializer2", new Fields("group") );
-//        builder.setBolt("event_filter", new FinalTSJoinBolt(), CommonConfig.PARALLELISM()).shuffleGrouping("sliding_join");
-//        builder.setBolt("hdfsbolt", createSink(), CommonConfig.PARALLELISM()).shuffleGrouping("event_filter");
-//        return builder.createTopology();
-//
-//    }
-//
+    /**
+     * Joins the streams of the even and the odd generator ports on "geo", like the Flink and Spark join.
+     */
+    private static StormTopology windowedJoin(TopologyBuilder builder){
+        List<Integer> leftPorts = new ArrayList<>();
+        List<Integer> rightPorts = new ArrayList<>();
+        for (int i = 0; i < CommonConfig.DATASOURCE_PORTS().size(); i++) {
+            (i % 2 == 0 ? leftPorts : rightPorts).add(CommonConfig.DATASOURCE_PORTS().get(i));
+        }
+        List<String> left = eventSources(builder, leftPorts, "event_deserializer1");
+        List<String> right = eventSources(builder, rightPorts, "event_deserializer2");
+        BoltDeclarer join = builder.setBolt("sliding_join", new SymmetricHashJoinBolt(left,
+                CommonConfig.SLIDING_WINDOW_LENGTH(),
+                PaneWindowState.paneMs(CommonConfig.SLIDING_WINDOW_LENGTH(), CommonConfig.SLIDING_WINDOW_SLIDE()),
+                CommonConfig.JOIN_FILTER_FACTOR()), CommonConfig.PARALLELISM());
+        for (String source: left) {
+            join = join.fieldsGrouping(source, new Fields("geo"));
+        }
+        for (String source: right) {
+            join = join.fieldsGrouping(source, new Fields("geo"));
+        }
+        builder.setBolt("event_filter", new FinalTSJoinBolt(anchored()), CommonConfig.PARALLELISM()).shuffleGrouping("sliding_join");
+        builder.setBolt("hdfsbolt", createSink(), CommonConfig.PARALLELISM()).shuffleGrouping("event_filter");
+        return builder.createTopology();
+    }
 
     public static void main(String[] args) throws Exception {
 
@@ -422,12 +558,20 @@ public class StormBenchmark {
             topology = windowedAggregation(builder);
         } else if(CommonConfig.BENCHMARKING_USECASE().equals(CommonConfig.ALLWINDOWED_AGGREGATION_USECASE)){
             topology = allWindowedAggregation(builder);
+        } else if(CommonConfig.BENCHMARKING_USECASE().equals(CommonConfig.JOIN_USECASE)){
+            topology = windowedJoin(builder);
+        } else {
+            throw new Exception("Unsupported use case on Storm: " + CommonConfig.BENCHMARKING_USECASE());
         }
 
         Config conf = new Config();
+        // partials of the two stage global aggregation and batches of the spouts
+        conf.registerSerialization(String[].class);
+        conf.registerSerialization(double[].class);
+        conf.registerSerialization(long[].class);
+        configureReliability(conf);
         if (runningMode.equals("cluster")) {
 //            conf.setNumWorkers(CommonConfig.STORM_WORKERS());
-  //          conf.setNumAckers(CommonConfig.STORM_ACKERS());
             StormSubmitter.submitTopologyWithProgressBar(args[2], conf, topology);
         } else if (runningMode.equals("local")) {
 
@@ -0,0 +1,99 @@
+package storm.benchmark;
+
+import benchmark.common.join.JoinKeyBuckets;
+import benchmark.common.join.JoinSide;
+import org.apache.storm.Config;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.topology.OutputFieldsDeclarer;
+import org.apache.storm.topology.base.BaseRichBolt;
+import org.apache.storm.tuple.Fields;
+import org.apache.storm.tuple.Tuple;
+import org.apache.storm.tuple.Values;
+import org.apache.storm.utils.TupleUtils;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Windowed equi join of two streams of ("geo", "ts", "price", "start_ts") tuples on "geo". Every arriving tuple
+ * probes the other side for tuples of the same key that arrived within the window length, then is added to its
+ * own side, so each pair is produced exactly once. Both sides keep per key the ts and start_ts of their tuples
+ * in the primitive arrays of {@link JoinKeyBuckets}, shared with Flink's hash join operator, bucketed by arrival
+ * time; a bucket older than the window is dropped as a whole.
+ * Like the Flink join, a pair is emitted as ("ts", "start_ts") of its newer tuple and only if that start_ts is
+ * a multiple of {@code filterFactor}.
+ */
+public class SymmetricHashJoinBolt extends BaseRichBolt implements JoinKeyBuckets.Pairs {
+
+    private final Set<String> leftSources;
+    private final long lengthMs;
+    private final long bucketMs;
+    private final int filterFactor;
+    private OutputCollector _collector;
+    private JoinSide _left;
+    private JoinSide _right;
+
+    /**
+     * @param leftSources components of the left input, every other source is the right input
+     */
+    public SymmetricHashJoinBolt(List<String> leftSources, long lengthMs, long bucketMs, int filterFactor) {
+        this.leftSources = new HashSet<>(leftSources);
+        this.lengthMs = lengthMs;
+        this.bucketMs = bucketMs;
+        this.filterFactor = filterFactor;
+    }
+
+    @Override
+    public void prepare(Map conf, TopologyContext context, OutputCollector collector) {
+        _collector = collector;
+        // the bucket currently filled plus the ones still overlapping the window
+        int buckets = (int) ((lengthMs + bucketMs - 1) / bucketMs) + 1;
+        _left = new JoinSide(buckets, 0);
+        _right = new JoinSide(buckets, 0);
+    }
+
+    @Override
+    public void execute(Tuple tuple) {
+        long now = System.currentTimeMillis();
+        long bucket = now / bucketMs;
+        long oldest = (now - lengthMs) / bucketMs;
+        if (TupleUtils.isTick(tuple)) {
+            _left.evictIdleKeys(oldest);
+            _right.evictIdleKeys(oldest);
+            return;
+        }
+        boolean left = leftSources.contains(tuple.getSourceComponent());
+        String key = tuple.getString(0);
+        int id = JoinSide.id(key);
+        long ts = tuple.getLong(1);
+        long startTs = tuple.getLong(3);
+
+        JoinKeyBuckets other = (left ? _right : _left).get(id, key);
+        if (other != null) {
+            other.probe(oldest, ts, startTs, filterFactor, this);
+        }
+        (left ? _left : _right).getOrCreate(id, key).add(bucket, ts, startTs);
+        _collector.ack(tuple);
+    }
+
+    @Override
+    public void emit(long ts, long startTs) {
+        _collector.emit(new Values(ts, startTs));
+    }
+
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        Map<String, Object> conf = new HashMap<>();
+        conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, 1);
+        return conf;
+    }
+
+    @Override
+    public void declareOutputFields(OutputFieldsDeclarer declarer) {
+        declarer.declare(new Fields("ts", "start_ts"));
+    }
+}
@@ -0,0 +1,188 @@
+package storm.benchmark;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PendingJoinsTest {
+
+    /**
+     * Records the ids of the joins handed to the listener.
+     */
+    private static class Lost implements PendingJoins.Listener<String> {
+        final List<Object> expired = new ArrayList<>();
+        final List<Object> evicted = new ArrayList<>();
+        final List<String> inputs = new ArrayList<>();
+
+        @Override
+        public void expired(PendingJoins.Join<String> join) {
+            expired.add(join.id);
+            collectInputs(join);
+        }
+
+        @Override
+        public void evicted(PendingJoins.Join<String> join) {
+            evicted.add(join.id);
+            collectInputs(join);
+        }
+
+        private void collectInputs(PendingJoins.Join<String> join) {
+            for (int i = 0; i < 2; i++) {
+                if (join.input(i) != null) {
+                    inputs.add(join.input(i));
+                }
+            }
+        }
+    }
+
+    private static PendingJoins<String> joins(int slots, int maxPending, boolean reject, Lost lost) {
+        return new PendingJoins<>(slots, maxPending, reject, 2, 3, true, lost);
+    }
+
+    @Test
+    public void joinCompletesOnceEverySideArrived() {
+        Lost lost = new Lost();
+        PendingJoins<String> joins = joins(4, 10, false, lost);
+        PendingJoins.Join<String> join = joins.open("a");
+        assertEquals(3, join.values.length);
+        assertNull(joins.arrive(join, 0, "left"));
+        assertTrue(join.has(0));
+        assertFalse(join.has(1));
+        assertFalse(joins.isComplete(join));
+        assertSame(join, joins.get("a"));
+
+        assertNull(joins.arrive(join, 1, "right"));
+        assertTrue(joins.isComplete(join));
+        assertEquals("left", join.input(0));
+        assertEquals("right", join.input(1));
+
+        joins.remove(join);
+        assertNull(joins.get("a"));
+        assertEquals(0, joins.size());
+        // a removed join no longer expires
+        for (int i = 0; i < 8; i++) {
+            joins.tick();
+        }
+        assertTrue(lost.expired.isEmpty());
+    }
+
+    @Test
+    public void joinsExpireWhenTheWheelComesRoundToTheirSlot() {
+        Lost lost = new Lost();
+        PendingJoins<String> joins = joins(3, 10, false, lost);
+        joins.arrive(joins.open("a"), 0, "a0");
+        joins.tick();
+        joins.arrive(joins.open("b"), 1, "b1");
+        joins.open("c");
+
+        joins.tick();
+        assertTrue(lost.expired.isEmpty());
+        joins.tick();
+        assertEquals(1, lost.expired.size());
+        assertEquals("a", lost.expired.get(0));
+        assertEquals("a0", lost.inputs.get(0));
+        assertNull(joins.get("a"));
+        assertEquals(2, joins.size());
+
+        joins.tick();
+        assertEquals(3, lost.expired.size());
+        assertEquals("b", lost.expired.get(1));
+        assertEquals("c", lost.expired.get(2));
+        assertEquals(0, joins.size());
+        assertTrue(lost.evicted.isEmpty());
+    }
+
+    @Test
+    public void removingFromTheMiddleOfASlotKeepsTheOthersLinked() {
+        Lost lost = new Lost();
+        PendingJoins<String> joins = joins(2, 10, false, lost);
+        joins.open("a");
+        PendingJoins.Join<String> b = joins.open("b");
+        joins.open("c");
+        joins.remove(b);
+        joins.tick();
+        joins.tick();
+        assertEquals(2, lost.expired.size());
+        assertEquals("a", lost.expired.get(0));
+        assertEquals("c", lost.expired.get(1));
+        assertEquals(0, joins.size());
+    }
+
+    @Test
+    public void fullJoinsEvictTheOldest() {
+        Lost lost = new Lost();
+        PendingJoins<String> joins = joins(4, 2, false, lost);
+        joins.arrive(joins.open("a"), 0, "a0");
+        joins.tick();
+        joins.open("b");
+        joins.tick();
+
+        assertTrue(joins.open("c") != null);
+        assertEquals(1, lost.evicted.size());
+        assertEquals("a", lost.evicted.get(0));
+        assertEquals("a0", lost.inputs.get(0));
+        assertNull(joins.get("a"));
+        assertEquals(2, joins.size());
+
+        // the oldest is found across the wrap of the wheel, and within a slot in arrival order
+        joins.tick();
+        joins.tick();
+        joins.open("d");
+        assertEquals("b", lost.evicted.get(1));
+        joins.open("e");
+        assertEquals("c", lost.evicted.get(2));
+        assertEquals(2, joins.size());
+        assertTrue(lost.expired.isEmpty());
+    }
+
+    @Test
+    public void fullJoinsRejectNewOnes() {
+        Lost lost = new Lost();
+        PendingJoins<String> joins = joins(4, 2, true, lost);
+        joins.open("a");
+        joins.open("b");
+        assertNull(joins.open("c"));
+        assertNull(joins.get("c"));
+        assertEquals(2, joins.size());
+        assertTrue(lost.evicted.isEmpty());
+
+        // room again once one completes
+        joins.remove(joins.get("a"));
+        assertTrue(joins.open("c") != null);
+    }
+
+    @Test
+    public void sameSideArrivingTwiceReplacesTheFirstInput() {
+        Lost lost = new Lost();
+        PendingJoins<String> joins = joins(4, 10, false, lost);
+        PendingJoins.Join<String> join = joins.open("a");
+        assertNull(joins.arrive(join, 0, "first"));
+        assertEquals("first", joins.arrive(join, 0, "replay"));
+        assertEquals("replay", join.input(0));
+        assertFalse(joins.isComplete(join));
+        assertNull(joins.arrive(join, 1, "right"));
+        assertTrue(joins.isComplete(join));
+    }
+
+    @Test
+    public void inputsAreNotKeptForUnreliableJoins() {
+        PendingJoins<String> joins = new PendingJoins<>(4, 10, false, 2, 1, false, new Lost());
+        PendingJoins.Join<String> join = joins.open("a");
+        assertNull(joins.arrive(join, 0, "first"));
+        assertNull(joins.arrive(join, 0, "replay"));
+        assertNull(join.input(0));
+        assertTrue(join.has(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooManySourcesAreRejected() {
+        new PendingJoins<String>(4, 10, false, 32, 1, false, new Lost());
+    }
+}
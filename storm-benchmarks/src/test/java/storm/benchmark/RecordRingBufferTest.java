@@ -0,0 +1,113 @@
+package storm.benchmark;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RecordRingBufferTest {
+
+    @Test
+    public void slotsWrapAroundInOrder() {
+        RecordRingBuffer ring = new RecordRingBuffer(4);
+        long next = 0;
+        long expected = 0;
+        // several laps, with batches that straddle the end of the slot array
+        for (int lap = 0; lap < 10; lap++) {
+            for (int i = 0; i < 3; i++) {
+                ring.claim().ts = next++;
+                ring.publish();
+            }
+            assertEquals(3, ring.size());
+            int available = ring.available();
+            assertEquals(3, available);
+            for (int i = 0; i < available; i++) {
+                assertEquals(expected++, ring.get(i).ts);
+            }
+            ring.release(available);
+            assertEquals(0, ring.size());
+        }
+    }
+
+    @Test
+    public void emptyRingHasNothingAvailable() {
+        RecordRingBuffer ring = new RecordRingBuffer(4);
+        assertEquals(0, ring.available());
+        ring.claim();
+        // claimed but not yet published
+        assertEquals(0, ring.available());
+        ring.publish();
+        assertEquals(1, ring.available());
+    }
+
+    @Test
+    public void releaseDropsLinesAndSlotsAreReused() {
+        RecordRingBuffer ring = new RecordRingBuffer(2);
+        RecordRingBuffer.Record first = ring.claim();
+        first.line = "{\"key\":\"AF\"}";
+        ring.publish();
+        ring.claim();
+        ring.publish();
+        assertEquals(2, ring.available());
+        ring.release(2);
+        assertNull(first.line);
+        assertSame(first, ring.claim());
+    }
+
+    @Test
+    public void interruptedProducerGivesUpOnFullRing() {
+        RecordRingBuffer ring = new RecordRingBuffer(2);
+        for (int i = 0; i < 2; i++) {
+            ring.claim();
+            ring.publish();
+        }
+        Thread.currentThread().interrupt();
+        try {
+            assertNull(ring.claim());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    public void producerWaitsForConsumerWhenFull() throws InterruptedException {
+        final RecordRingBuffer ring = new RecordRingBuffer(16);
+        final int records = 100000;
+        Thread producer = new Thread() {
+            public void run() {
+                for (int i = 0; i < records; i++) {
+                    RecordRingBuffer.Record record = ring.claim();
+                    if (record == null) {
+                        return;
+                    }
+                    record.ts = i;
+                    record.sendTs = i + 1;
+                    ring.publish();
+                }
+            }
+        };
+        producer.start();
+        long expected = 0;
+        long deadline = System.currentTimeMillis() + 10000;
+        while (expected < records && System.currentTimeMillis() < deadline) {
+            int available = ring.available();
+            assertTrue(available <= 16);
+            for (int i = 0; i < available; i++) {
+                assertEquals(expected, ring.get(i).ts);
+                assertEquals(expected + 1, ring.get(i).sendTs);
+                expected++;
+            }
+            ring.release(available);
+            if (available == 0) {
+                // the consumer never blocks, leave the producer the core
+                Thread.yield();
+            }
+        }
+        producer.interrupt();
+        producer.join();
+        assertEquals(records, expected);
+        assertEquals(0, ring.size());
+    }
+}
@@ -19,10 +19,16 @@ public class CommonConfig {
     private static String SPARK_MASTER = "spark.master";
     private static String DATASOURCE_PORTS = "datasourcesocket.ports";
     private static String DATASOURCE_HOSTS = "datasourcesocket.hosts";
+    private static String DATASOURCE_CODEC = "datasourcesocket.codec";
+    private static String DATASOURCE_BATCHSIZE = "datasourcesocket.batchsize";
 
     private static String FLUSH_RATE = "flush.rate";
     private static String FLINK_OUTPUT = "flink.output";
     private static String SPARK_OUTPUT = "spark.output";
+    private static String SPARK_API = "spark.api";
+    private static String SPARK_TRIGGER = "spark.trigger";
+    private static String SPARK_TRIGGER_INTERVAL_MS = "spark.trigger.interval.ms";
+    private static String SPARK_SOURCE_CAPACITY = "spark.source.capacity";
     private static String STORM_OUTPUT = "storm.output";
     private static String HDFS_URI = "output.hdfs.url";
 
@@ -35,8 +41,39 @@ public class CommonConfig {
     private static String OUTPUT_BATCHSIZE_KB = "output.batchsize.kb";
     private static String STORM_WORKERS = "storm.workers";
     private static String STORM_ACKERS = "storm.ackers";
+    private static String STORM_WINDOW_OPERATOR = "storm.window.operator";
+    private static String STORM_SPOUT_BATCH = "storm.spout.batch";
+    private static String STORM_SPOUT_QUEUE = "storm.spout.queue";
+    private static String STORM_RELIABILITY = "storm.reliability";
+    private static String STORM_MAX_SPOUT_PENDING = "storm.max.spout.pending";
+    private static String STORM_CHAINED = "storm.chained";
+    private static String STORM_JOIN_MAX_PENDING = "storm.join.max.pending";
+    private static String STORM_JOIN_POLICY = "storm.join.policy";
     private static String PARALLELISM = "parallelism";
     private static String OUTPUT_SYNC_POLICY_COUNT = "output.sync.policy.count";
+    private static String FLINK_WINDOW_OPERATOR = "flink.window.operator";
+    private static String FLINK_SOURCE = "flink.source";
+    private static String FLINK_JOIN_OPERATOR = "flink.join.operator";
+    private static String FLINK_GENERATOR_RATE = "flink.generator.rate";
+    private static String FLINK_GENERATOR_DURATION_S = "flink.generator.duration.s";
+    private static String FLINK_SWEEP_BUFFER_TIMEOUTS = "flink.sweep.buffer.timeouts";
+    private static String FLINK_SWEEP_NETWORK_BUFFERS = "flink.sweep.network.buffers";
+    private static String FLINK_SWEEP_PARALLELISM = "flink.sweep.parallelism";
+    private static String FLINK_CHECKPOINT_INTERVAL_MS = "flink.checkpoint.interval.ms";
+    private static String FLINK_CHECKPOINT_MODE = "flink.checkpoint.mode";
+    private static String FLINK_STATE_BACKEND = "flink.state.backend";
+    private static String FLINK_CHECKPOINT_DIR = "flink.checkpoint.dir";
+    private static String FLINK_ROCKSDB_LOCAL_DIR = "flink.rocksdb.local.dir";
+    private static String FLINK_WEB_URL = "flink.web.url";
+    private static String JOIN_MAX_KEY_EVENTS = "join.max.key.events";
+    private static String FLINK_TIME_CHARACTERISTIC = "flink.time.characteristic";
+    private static String FLINK_WATERMARK_LAG_MS = "flink.watermark.lag.ms";
+    private static String FLINK_ALLOWED_LATENESS_MS = "flink.allowed.lateness.ms";
+    private static String OUTPUT_SINK = "output.sink";
+    private static String OUTPUT_FILE_DIR = "output.file.dir";
+    private static String OUTPUT_FILE_SEGMENT_MB = "output.file.segment.mb";
+    private static String DATASINK_HOST = "datasinksocket.host";
+    private static String DATASINK_PORT = "datasinksocket.port";
 
     public static String AGGREGATION_USECASE = "KeyedWindowedAggregation";
     public static String JOIN_USECASE = "WindowedJoin";
@@ -45,8 +82,70 @@ public class CommonConfig {
     public static String SPARK_WINDOW_USE = "spark.window.use";
     public static String JOIN_FILTER_FACTOR = "join.filter.factor";
 
+    public static String JSON_CODEC = "json";
+    public static String BINARY_CODEC = "binary";
+
+    public static String STORM_WINDOWED_BOLT = "windowedbolt";
+    public static String STORM_PANE_WINDOW = "pane";
+
+    public static String STORM_UNRELIABLE = "none";
+    public static String STORM_AT_LEAST_ONCE = "atleastonce";
+    public static String STORM_BATCHED_ACKING = "batched";
+
+    public static String SPARK_DSTREAM = "dstream";
+    public static String SPARK_STRUCTURED = "structured";
+
+    public static String SPARK_MICROBATCH_TRIGGER = "microbatch";
+    public static String SPARK_CONTINUOUS_TRIGGER = "continuous";
+
+    public static String FLINK_WINDOW_FOLD = "fold";
+    public static String FLINK_PANE_WINDOW = "pane";
+
+    public static String FLINK_SOCKET_SOURCE = "socket";
+    public static String FLINK_PARALLEL_SOURCE = "parallel";
+    public static String FLINK_GENERATOR_SOURCE = "generator";
+
+    public static String FLINK_WINDOW_JOIN = "window";
+    public static String FLINK_HASH_JOIN = "hash";
+
+    public static String EXACTLY_ONCE = "exactlyonce";
+    public static String AT_LEAST_ONCE = "atleastonce";
+
+    public static String MEMORY_BACKEND = "memory";
+    public static String FS_BACKEND = "fs";
+    public static String ROCKSDB_BACKEND = "rocksdb";
+
+    public static String PROCESSING_TIME = "processing";
+    public static String EVENT_TIME = "event";
+
+    public static String HDFS_SINK = "hdfs";
+    public static String FILE_SINK = "file";
+    public static String SOCKET_SINK = "socket";
+    public static String NULL_SINK = "null";
+    public static String ACCUMULATOR_SINK = "accumulator";
+
     private static HashMap instance = null;
 
+    /**
+     * Overrides a setting of the loaded configuration, for drivers that run a benchmark with several settings.
+     */
+    public static void set(String key, Object value) {
+        instance.put(key, value);
+    }
+
+    private static List<Long> longList(String key, long defaultValue) {
+        List<Long> values = new ArrayList<>();
+        Object configured = instance.get(key);
+        if (configured == null) {
+            values.add(defaultValue);
+        } else {
+            for (Object value : (List) configured) {
+                values.add(new Long(value.toString()));
+            }
+        }
+        return values;
+    }
+
     public static void initializeConfig(String confPath) {
         try {
             YamlReader reader = new YamlReader(new FileReader(confPath));
@@ -60,7 +159,31 @@ public class CommonConfig {
         return new Integer(instance.get(STORM_WORKERS).toString());
     }
     public static int STORM_ACKERS() {
-        return new Integer(instance.get(STORM_ACKERS).toString());
+        return new Integer(instance.getOrDefault(STORM_ACKERS, 1).toString());
+    }
+    public static String STORM_RELIABILITY() {
+        return instance.getOrDefault(STORM_RELIABILITY, STORM_UNRELIABLE).toString();
+    }
+    public static boolean STORM_CHAINED() {
+        return new Boolean(instance.getOrDefault(STORM_CHAINED, false).toString());
+    }
+    public static int STORM_MAX_SPOUT_PENDING() {
+        return new Integer(instance.getOrDefault(STORM_MAX_SPOUT_PENDING, 1000).toString());
+    }
+    public static int STORM_JOIN_MAX_PENDING() {
+        return new Integer(instance.getOrDefault(STORM_JOIN_MAX_PENDING, 100000).toString());
+    }
+    public static String STORM_JOIN_POLICY() {
+        return instance.getOrDefault(STORM_JOIN_POLICY, "oldest").toString();
+    }
+    public static String STORM_WINDOW_OPERATOR() {
+        return instance.getOrDefault(STORM_WINDOW_OPERATOR, STORM_WINDOWED_BOLT).toString();
+    }
+    public static int STORM_SPOUT_BATCH() {
+        return new Integer(instance.getOrDefault(STORM_SPOUT_BATCH, 0).toString());
+    }
+    public static int STORM_SPOUT_QUEUE() {
+        return new Integer(instance.getOrDefault(STORM_SPOUT_QUEUE, 65536).toString());
     }
     public static int PARALLELISM() {
         return new Integer(instance.get(PARALLELISM).toString());
@@ -82,6 +205,12 @@ public class CommonConfig {
     public static List<String> DATASOURCE_HOSTS() {
         return (List<String>) instance.get(DATASOURCE_HOSTS);
     }
+    public static String DATASOURCE_CODEC() {
+        return instance.getOrDefault(DATASOURCE_CODEC, JSON_CODEC).toString();
+    }
+    public static int DATASOURCE_BATCHSIZE() {
+        return new Integer(instance.getOrDefault(DATASOURCE_BATCHSIZE, 0).toString());
+    }
     public static long FLUSH_RATE() {
         return new Long(instance.get(FLUSH_RATE).toString());
     }
@@ -91,6 +220,18 @@ public class CommonConfig {
     public static String SPARK_OUTPUT() {
         return instance.get(SPARK_OUTPUT).toString();
     }
+    public static String SPARK_API() {
+        return instance.getOrDefault(SPARK_API, SPARK_DSTREAM).toString();
+    }
+    public static String SPARK_TRIGGER() {
+        return instance.getOrDefault(SPARK_TRIGGER, SPARK_MICROBATCH_TRIGGER).toString();
+    }
+    public static long SPARK_TRIGGER_INTERVAL_MS() {
+        return new Long(instance.getOrDefault(SPARK_TRIGGER_INTERVAL_MS, 0).toString());
+    }
+    public static int SPARK_SOURCE_CAPACITY() {
+        return new Integer(instance.getOrDefault(SPARK_SOURCE_CAPACITY, 1000000).toString());
+    }
     public static String STORM_OUTPUT() {
         return instance.get(STORM_OUTPUT).toString();
     }
@@ -111,7 +252,75 @@ public class CommonConfig {
         return instance.get(HDFS_URI).toString();
     }
     public static int OUTPUT_SYNC_POLICY_COUNT() {return new Integer(instance.get(OUTPUT_SYNC_POLICY_COUNT).toString());}
+    public static String FLINK_WINDOW_OPERATOR() {
+        return instance.getOrDefault(FLINK_WINDOW_OPERATOR, FLINK_WINDOW_FOLD).toString();
+    }
+    public static String FLINK_SOURCE() {
+        return instance.getOrDefault(FLINK_SOURCE, FLINK_SOCKET_SOURCE).toString();
+    }
+    public static String FLINK_JOIN_OPERATOR() {
+        return instance.getOrDefault(FLINK_JOIN_OPERATOR, FLINK_WINDOW_JOIN).toString();
+    }
+    public static double FLINK_GENERATOR_RATE() {
+        return new Double(instance.getOrDefault(FLINK_GENERATOR_RATE, 0).toString());
+    }
+    public static long FLINK_GENERATOR_DURATION_S() {
+        return new Long(instance.getOrDefault(FLINK_GENERATOR_DURATION_S, 60).toString());
+    }
+    public static List<Long> FLINK_SWEEP_BUFFER_TIMEOUTS() {
+        return longList(FLINK_SWEEP_BUFFER_TIMEOUTS, FLUSH_RATE());
+    }
+    public static List<Long> FLINK_SWEEP_NETWORK_BUFFERS() {
+        return longList(FLINK_SWEEP_NETWORK_BUFFERS, 2048);
+    }
+    public static List<Long> FLINK_SWEEP_PARALLELISM() {
+        return longList(FLINK_SWEEP_PARALLELISM, PARALLELISM());
+    }
+    public static long FLINK_CHECKPOINT_INTERVAL_MS() {
+        return new Long(instance.getOrDefault(FLINK_CHECKPOINT_INTERVAL_MS, 0).toString());
+    }
+    public static String FLINK_CHECKPOINT_MODE() {
+        return instance.getOrDefault(FLINK_CHECKPOINT_MODE, EXACTLY_ONCE).toString();
+    }
+    public static String FLINK_STATE_BACKEND() {
+        return instance.getOrDefault(FLINK_STATE_BACKEND, MEMORY_BACKEND).toString();
+    }
+    public static String FLINK_CHECKPOINT_DIR() {
+        return instance.getOrDefault(FLINK_CHECKPOINT_DIR, "file:///tmp/flink-checkpoints").toString();
+    }
+    public static String FLINK_ROCKSDB_LOCAL_DIR() {
+        Object dir = instance.get(FLINK_ROCKSDB_LOCAL_DIR);
+        return dir == null ? null : dir.toString();
+    }
+    public static String FLINK_WEB_URL() {
+        return instance.getOrDefault(FLINK_WEB_URL, "http://localhost:8081").toString();
+    }
+    public static String FLINK_TIME_CHARACTERISTIC() {
+        return instance.getOrDefault(FLINK_TIME_CHARACTERISTIC, PROCESSING_TIME).toString();
+    }
+    public static long FLINK_WATERMARK_LAG_MS() {
+        return new Long(instance.getOrDefault(FLINK_WATERMARK_LAG_MS, 0).toString());
+    }
+    public static long FLINK_ALLOWED_LATENESS_MS() {
+        return new Long(instance.getOrDefault(FLINK_ALLOWED_LATENESS_MS, 0).toString());
+    }
+    public static String OUTPUT_SINK() {
+        return instance.getOrDefault(OUTPUT_SINK, HDFS_SINK).toString();
+    }
+    public static String OUTPUT_FILE_DIR() {
+        return instance.getOrDefault(OUTPUT_FILE_DIR, "/tmp/benchmark-output").toString();
+    }
+    public static long OUTPUT_FILE_SEGMENT_MB() {
+        return new Long(instance.getOrDefault(OUTPUT_FILE_SEGMENT_MB, 64).toString());
+    }
+    public static String DATASINK_HOST() {
+        return instance.getOrDefault(DATASINK_HOST, "localhost").toString();
+    }
+    public static int DATASINK_PORT() {
+        return new Integer(instance.getOrDefault(DATASINK_PORT, 0).toString());
+    }
     public static boolean SPARK_WINDOW_USE() {return new Boolean(instance.get(SPARK_WINDOW_USE).toString());}
     public static int JOIN_FILTER_FACTOR() {return new Integer(instance.get(JOIN_FILTER_FACTOR).toString());}
+    public static int JOIN_MAX_KEY_EVENTS() {return new Integer(instance.getOrDefault(JOIN_MAX_KEY_EVENTS, 0).toString());}
 
 }
@@ -0,0 +1,51 @@
+package benchmark.common.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-width binary layout of a generated event, see data-generator/README.md:
+ * <pre>
+ *   int   key      id of the geo code, see {@link GeoKeys}
+ *   float value    price
+ *   long  ts       event timestamp in epoch millis
+ *   long  send_ts  time the generator wrote the event to the socket, in epoch millis
+ * </pre>
+ * All fields are big-endian. When batching is enabled each group of records is preceded by an int holding the
+ * number of records in the group.
+ */
+public final class BinaryEventCodec {
+
+    public static final int RECORD_BYTES = 24;
+    public static final int FRAME_HEADER_BYTES = 4;
+
+    private static final int KEY_OFFSET = 0;
+    private static final int VALUE_OFFSET = 4;
+    private static final int TS_OFFSET = 8;
+    private static final int SEND_TS_OFFSET = 16;
+
+    private BinaryEventCodec() {
+    }
+
+    public static void encode(ByteBuffer out, int key, float value, long ts, long sendTs) {
+        out.putInt(key);
+        out.putFloat(value);
+        out.putLong(ts);
+        out.putLong(sendTs);
+    }
+
+    public static int key(ByteBuffer in, int recordOffset) {
+        return in.getInt(recordOffset + KEY_OFFSET);
+    }
+
+    public static float value(ByteBuffer in, int recordOffset) {
+        return in.getFloat(recordOffset + VALUE_OFFSET);
+    }
+
+    public static long ts(ByteBuffer in, int recordOffset) {
+        return in.getLong(recordOffset + TS_OFFSET);
+    }
+
+    public static long sendTs(ByteBuffer in, int recordOffset) {
+        return in.getLong(recordOffset + SEND_TS_OFFSET);
+    }
+}
@@ -0,0 +1,82 @@
+package benchmark.common.codec;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes a stream of {@link BinaryEventCodec} records into reusable primitive fields.
+ * Not thread safe, each receiver keeps its own instance.
+ */
+public class BinaryEventReader {
+    private final DataInputStream in;
+    private final boolean batched;
+    private final byte[] record = new byte[BinaryEventCodec.RECORD_BYTES];
+    private final ByteBuffer view = ByteBuffer.wrap(record);
+    private int remainingInFrame = 0;
+
+    private int key;
+    private float value;
+    private long ts;
+    private long sendTs;
+
+    /**
+     * @param batchSize the {@code datasourcesocket.batchsize} the generator was started with, records are
+     *                  length-prefixed when it is greater than zero
+     */
+    public BinaryEventReader(InputStream in, int batchSize) {
+        this.in = new DataInputStream(new BufferedInputStream(in, 64 * 1024));
+        this.batched = batchSize > 0;
+    }
+
+    /**
+     * Reads the next record. Blocks until one is available.
+     *
+     * @return false when the stream is closed
+     */
+    public boolean next() throws IOException {
+        try {
+            while (batched && remainingInFrame == 0) {
+                remainingInFrame = in.readInt();
+            }
+            in.readFully(record);
+        } catch (EOFException e) {
+            return false;
+        }
+        if (batched) {
+            remainingInFrame--;
+        }
+        key = BinaryEventCodec.key(view, 0);
+        value = BinaryEventCodec.value(view, 0);
+        ts = BinaryEventCodec.ts(view, 0);
+        sendTs = BinaryEventCodec.sendTs(view, 0);
+        return true;
+    }
+
+    public int key() {
+        return key;
+    }
+
+    public String geo() {
+        return GeoKeys.name(key);
+    }
+
+    public float value() {
+        return value;
+    }
+
+    public long ts() {
+        return ts;
+    }
+
+    public long sendTs() {
+        return sendTs;
+    }
+
+    public void close() throws IOException {
+        in.close();
+    }
+}
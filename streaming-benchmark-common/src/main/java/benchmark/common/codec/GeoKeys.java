@@ -0,0 +1,61 @@
+package benchmark.common.codec;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Dictionary of the geo codes the data generator emits as record keys.
+ * The binary wire format only carries the index into {@link #ALL}, engines turn it back into the code with {@link #name(int)}.
+ */
+public final class GeoKeys {
+
+    public static final String[] ALL = {
+            "AF", "AX", "AL", "DZ", "AS", "AD", "AO", "AI", "AQ", "AG", "AR", "AM", "AW", "AC", "AU", "AT", "AZ", "BS", "BH", "BB",
+            "BD", "BY", "BE", "BZ", "BJ", "BM", "BT", "BW", "BO", "BA", "BV", "BR", "IO", "BN", "BG", "BF", "BI", "KH", "CM", "CA",
+            "CV", "KY", "CF", "TD", "CL", "CN", "CX", "CC", "CO", "KM", "CG", "CD", "CK", "CR", "CI", "HR", "CU", "CY", "CZ", "CS",
+            "DK", "DJ", "DM", "DO", "TP", "EC", "EG", "SV", "GQ", "ER", "EE", "ET", "EU", "FK", "FO", "FJ", "FI", "FR", "FX", "GF",
+            "PF", "TF", "MK", "GA", "GM", "GE", "DE", "GH", "GI", "GB", "GR", "GL", "GD", "GP", "GU", "GT", "GG", "GN", "GW", "GY"};
+
+    private static final HashMap<String, Integer> IDS = new HashMap<>();
+    // ids of two letter upper case codes, indexed by (first - 'A') * 26 + (second - 'A')
+    private static final int[] PAIR_IDS = new int[26 * 26];
+
+    static {
+        Arrays.fill(PAIR_IDS, -1);
+        for (int i = 0; i < ALL.length; i++) {
+            IDS.put(ALL[i], i);
+            PAIR_IDS[(ALL[i].charAt(0) - 'A') * 26 + (ALL[i].charAt(1) - 'A')] = i;
+        }
+    }
+
+    private GeoKeys() {
+    }
+
+    public static int size() {
+        return ALL.length;
+    }
+
+    public static String name(int id) {
+        return ALL[id];
+    }
+
+    /**
+     * @return the id of the given geo code, or -1 if it is not part of the dictionary
+     */
+    public static int id(String geo) {
+        Integer id = IDS.get(geo);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Allocation free lookup of a two letter code.
+     *
+     * @return the id of the code, or -1 if it is not part of the dictionary
+     */
+    public static int id(char first, char second) {
+        if (first < 'A' || first > 'Z' || second < 'A' || second > 'Z') {
+            return -1;
+        }
+        return PAIR_IDS[(first - 'A') * 26 + (second - 'A')];
+    }
+}
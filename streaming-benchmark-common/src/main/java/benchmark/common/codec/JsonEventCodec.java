@@ -0,0 +1,291 @@
+package benchmark.common.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Allocation free parser and encoder for the json events the data generator emits:
+ * <pre>
+ *   { "key":"AF","value":"50.8758","ts": "1792182854973","send_ts": "1792182854975"}
+ * </pre>
+ * {@code send_ts} is the time the generator wrote the event, lines without it are taken as sent at {@code ts}.
+ * Fields are scanned straight into primitives, quoted and unquoted numbers are both accepted and unknown fields
+ * are skipped. Known geo codes resolve to the shared {@link GeoKeys} strings, only a key outside the dictionary
+ * allocates. Instances keep the last parsed event and are not thread safe, every operator instance owns one.
+ */
+public class JsonEventCodec {
+
+    private static final byte[] KEY_PREFIX = "{ \"key\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] VALUE_PREFIX = "\",\"value\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TS_PREFIX = "\",\"ts\": \"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SEND_TS_PREFIX = "\",\"send_ts\": \"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SUFFIX = "\"}".getBytes(StandardCharsets.US_ASCII);
+    private static final int VALUE_DECIMALS = 4;
+    private static final int VALUE_SCALE = 10000;
+
+    private CharSequence chars;
+    private byte[] bytes;
+    private int pos;
+    private int end;
+
+    private int key;
+    private String geo;
+    private double value;
+    private long ts;
+    private long sendTs;
+    private boolean hasSendTs;
+
+    public JsonEventCodec parse(CharSequence line) {
+        this.chars = line;
+        this.bytes = null;
+        scan(0, line.length());
+        return this;
+    }
+
+    public JsonEventCodec parse(byte[] buffer, int offset, int length) {
+        this.chars = null;
+        this.bytes = buffer;
+        scan(offset, offset + length);
+        return this;
+    }
+
+    /**
+     * Writes one event without a line terminator. The price is written with four decimals.
+     */
+    public static void encode(ByteBuffer out, int key, float value, long ts, long sendTs) {
+        out.put(KEY_PREFIX);
+        String geo = GeoKeys.name(key);
+        for (int i = 0; i < geo.length(); i++) {
+            out.put((byte) geo.charAt(i));
+        }
+        out.put(VALUE_PREFIX);
+        long scaled = Math.round((double) value * VALUE_SCALE);
+        if (scaled < 0) {
+            out.put((byte) '-');
+            scaled = -scaled;
+        }
+        putDigits(out, scaled / VALUE_SCALE, 1);
+        out.put((byte) '.');
+        putDigits(out, scaled % VALUE_SCALE, VALUE_DECIMALS);
+        out.put(TS_PREFIX);
+        putLong(out, ts);
+        out.put(SEND_TS_PREFIX);
+        putLong(out, sendTs);
+        out.put(SUFFIX);
+    }
+
+    private static void putLong(ByteBuffer out, long number) {
+        if (number < 0) {
+            out.put((byte) '-');
+            number = -number;
+        }
+        putDigits(out, number, 1);
+    }
+
+    /**
+     * Writes the decimal digits of a non negative number, left padded with zeros to {@code minDigits}.
+     */
+    private static void putDigits(ByteBuffer out, long number, int minDigits) {
+        int digits = 1;
+        for (long n = number / 10; n > 0; n /= 10) {
+            digits++;
+        }
+        for (int i = digits; i < minDigits; i++) {
+            out.put((byte) '0');
+        }
+        int start = out.position();
+        out.position(start + digits);
+        for (int i = start + digits - 1; i >= start; i--) {
+            out.put(i, (byte) ('0' + number % 10));
+            number /= 10;
+        }
+    }
+
+    /**
+     * @return the {@link GeoKeys} id of the key, or -1 if it is not part of the dictionary
+     */
+    public int key() {
+        return key;
+    }
+
+    public String geo() {
+        return geo;
+    }
+
+    public double value() {
+        return value;
+    }
+
+    public long ts() {
+        return ts;
+    }
+
+    public long sendTs() {
+        return hasSendTs ? sendTs : ts;
+    }
+
+    private char at(int i) {
+        return bytes != null ? (char) (bytes[i] & 0xff) : chars.charAt(i);
+    }
+
+    private void scan(int start, int limit) {
+        pos = start;
+        end = limit;
+        key = -1;
+        geo = null;
+        value = 0;
+        ts = 0;
+        sendTs = 0;
+        hasSendTs = false;
+        while (skipTo('"')) {
+            int nameStart = ++pos;
+            if (!skipTo('"')) {
+                break;
+            }
+            int nameLength = pos - nameStart;
+            pos++;
+            if (!skipTo(':')) {
+                break;
+            }
+            pos++;
+            skipWhitespace();
+            if (nameLength == 3 && at(nameStart) == 'k') {
+                readKey();
+            } else if (nameLength == 5 && at(nameStart) == 'v') {
+                boolean quoted = skipQuote();
+                value = readDouble();
+                if (quoted) {
+                    skipQuote();
+                }
+            } else if (nameLength == 2 && at(nameStart) == 't') {
+                ts = readQuotedLong();
+            } else if (nameLength == 7 && at(nameStart) == 's') {
+                sendTs = readQuotedLong();
+                hasSendTs = true;
+            }
+            skipValue();
+        }
+        if (geo == null) {
+            throw new IllegalArgumentException("Event has no key: " + text(start, limit));
+        }
+    }
+
+    private void readKey() {
+        boolean quoted = at(pos) == '"';
+        int start = quoted ? pos + 1 : pos;
+        int stop = start;
+        while (stop < end && at(stop) != '"' && at(stop) != ',' && at(stop) != '}') {
+            stop++;
+        }
+        key = stop - start == 2 ? GeoKeys.id(at(start), at(start + 1)) : -1;
+        geo = key >= 0 ? GeoKeys.name(key) : text(start, stop);
+        pos = quoted && stop < end ? stop + 1 : stop;
+    }
+
+    private long readQuotedLong() {
+        boolean quoted = skipQuote();
+        long result = readLong();
+        if (quoted) {
+            skipQuote();
+        }
+        return result;
+    }
+
+    private long readLong() {
+        boolean negative = pos < end && at(pos) == '-';
+        if (negative) {
+            pos++;
+        }
+        long result = 0;
+        while (pos < end) {
+            char c = at(pos);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            result = result * 10 + (c - '0');
+            pos++;
+        }
+        return negative ? -result : result;
+    }
+
+    private double readDouble() {
+        boolean negative = pos < end && at(pos) == '-';
+        if (negative) {
+            pos++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean fraction = false;
+        while (pos < end) {
+            char c = at(pos);
+            if (c == '.') {
+                fraction = true;
+            } else if (c >= '0' && c <= '9') {
+                // digits beyond what a long holds do not change a double
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    digits++;
+                    if (fraction) {
+                        scale--;
+                    }
+                } else if (!fraction) {
+                    scale++;
+                }
+            } else {
+                break;
+            }
+            pos++;
+        }
+        if (pos < end && (at(pos) == 'e' || at(pos) == 'E')) {
+            pos++;
+            if (pos < end && at(pos) == '+') {
+                pos++;
+            }
+            scale += (int) readLong();
+        }
+        double result = scale < 0 ? mantissa / Math.pow(10, -scale) : mantissa * Math.pow(10, scale);
+        return negative ? -result : result;
+    }
+
+    private void skipValue() {
+        boolean quoted = false;
+        while (pos < end) {
+            char c = at(pos);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (!quoted && (c == ',' || c == '}')) {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private boolean skipQuote() {
+        if (pos < end && at(pos) == '"') {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void skipWhitespace() {
+        while (pos < end && Character.isWhitespace(at(pos))) {
+            pos++;
+        }
+    }
+
+    private boolean skipTo(char c) {
+        while (pos < end && at(pos) != c) {
+            pos++;
+        }
+        return pos < end;
+    }
+
+    private String text(int start, int stop) {
+        if (chars != null) {
+            return chars.subSequence(start, stop).toString();
+        }
+        return new String(bytes, start, stop - start, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,127 @@
+package benchmark.common.join;
+
+import java.util.Arrays;
+
+/**
+ * Events of one key on one side of a symmetric hash join, Flink's hash join operator and Storm's hash join bolt,
+ * the ts and start_ts of each kept in primitive arrays, in a ring of arrival time buckets. A bucket id is the arrival time divided by the bucket length; the
+ * slot of a bucket is its id modulo the ring size, so a slot is reused, with its arrays, once the bucket it
+ * held has expired.
+ */
+public class JoinKeyBuckets {
+
+    /**
+     * Receives the (ts, start_ts) of the newer event of every pair passing the filter.
+     */
+    public interface Pairs {
+        void emit(long ts, long startTs);
+    }
+
+    private final long[] bucketIds;
+    private final int[] sizes;
+    private final long[][] ts;
+    private final long[][] startTs;
+    private final int maxEvents;
+    private int events;
+
+    /**
+     * @param maxEvents events kept, the oldest bucket is dropped beyond, 0 for no limit besides the window
+     */
+    public JoinKeyBuckets(int buckets, int maxEvents) {
+        bucketIds = new long[buckets];
+        Arrays.fill(bucketIds, -1);
+        sizes = new int[buckets];
+        ts = new long[buckets][];
+        startTs = new long[buckets][];
+        this.maxEvents = maxEvents;
+    }
+
+    /**
+     * @return the events dropped to stay within {@code maxEvents}
+     */
+    public int add(long bucket, long eventTs, long eventStartTs) {
+        int slot = (int) (bucket % bucketIds.length);
+        if (bucketIds[slot] != bucket) {
+            // the slot still holds an expired bucket, drop it and reuse its arrays
+            events -= sizes[slot];
+            bucketIds[slot] = bucket;
+            sizes[slot] = 0;
+        }
+        int dropped = 0;
+        if (maxEvents > 0 && events >= maxEvents) {
+            dropped = dropOldest(slot);
+        }
+        int size = sizes[slot];
+        if (ts[slot] == null) {
+            ts[slot] = new long[16];
+            startTs[slot] = new long[16];
+        } else if (size == ts[slot].length) {
+            ts[slot] = Arrays.copyOf(ts[slot], size * 2);
+            startTs[slot] = Arrays.copyOf(startTs[slot], size * 2);
+        }
+        ts[slot][size] = eventTs;
+        startTs[slot][size] = eventStartTs;
+        sizes[slot] = size + 1;
+        events++;
+        return dropped;
+    }
+
+    /**
+     * Drops the oldest bucket other than the current one, or clears the current one if it is the only one left.
+     *
+     * @return the events dropped
+     */
+    private int dropOldest(int current) {
+        int victim = current;
+        for (int slot = 0; slot < bucketIds.length; slot++) {
+            if (slot != current && sizes[slot] > 0 && (victim == current || bucketIds[slot] < bucketIds[victim])) {
+                victim = slot;
+            }
+        }
+        int dropped = sizes[victim];
+        events -= dropped;
+        sizes[victim] = 0;
+        return dropped;
+    }
+
+    /**
+     * Pairs an event of the other side with the events of buckets not older than {@code oldest}, emitting the
+     * pairs whose start_ts is a multiple of {@code filterFactor}.
+     *
+     * @return the pairs emitted
+     */
+    public int probe(long oldest, long eventTs, long eventStartTs, int filterFactor, Pairs out) {
+        int emitted = 0;
+        for (int slot = 0; slot < bucketIds.length; slot++) {
+            if (bucketIds[slot] < oldest) {
+                continue;
+            }
+            long[] otherTs = ts[slot];
+            long[] otherStartTs = startTs[slot];
+            for (int i = 0; i < sizes[slot]; i++) {
+                boolean newer = eventTs >= otherTs[i];
+                long joinedStartTs = newer ? eventStartTs : otherStartTs[i];
+                if (joinedStartTs % filterFactor == 0) {
+                    out.emit(newer ? eventTs : otherTs[i], joinedStartTs);
+                    emitted++;
+                }
+            }
+        }
+        return emitted;
+    }
+
+    /**
+     * @return the events of buckets not older than {@code oldest}, expired buckets are released
+     */
+    public long size(long oldest) {
+        for (int slot = 0; slot < bucketIds.length; slot++) {
+            if (bucketIds[slot] < oldest && sizes[slot] > 0) {
+                events -= sizes[slot];
+                sizes[slot] = 0;
+                ts[slot] = null;
+                startTs[slot] = null;
+            }
+        }
+        return events;
+    }
+}
@@ -0,0 +1,90 @@
+package benchmark.common.join;
+
+import benchmark.common.codec.GeoKeys;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * The {@link JoinKeyBuckets} of one input of a symmetric hash join, {@link GeoKeys} dictionary keys by id and
+ * other keys by name.
+ */
+public class JoinSide {
+    private final int buckets;
+    private final int maxKeyEvents;
+    private final JoinKeyBuckets[] byId = new JoinKeyBuckets[GeoKeys.size()];
+    private final Map<String, JoinKeyBuckets> byName = new HashMap<>();
+    private int keys;
+
+    /**
+     * @param maxKeyEvents events kept per key, 0 for no limit besides the window
+     */
+    public JoinSide(int buckets, int maxKeyEvents) {
+        this.buckets = buckets;
+        this.maxKeyEvents = maxKeyEvents;
+    }
+
+    /**
+     * Allocation free lookup of the dictionary id of a key.
+     *
+     * @return the {@link GeoKeys} id of {@code geo}, -1 if it is not in the dictionary
+     */
+    public static int id(String geo) {
+        return geo.length() == 2 ? GeoKeys.id(geo.charAt(0), geo.charAt(1)) : -1;
+    }
+
+    /**
+     * @param id the {@link GeoKeys} id of {@code geo}, -1 if it is not in the dictionary
+     */
+    public JoinKeyBuckets get(int id, String geo) {
+        return id >= 0 ? byId[id] : byName.get(geo);
+    }
+
+    public JoinKeyBuckets getOrCreate(int id, String geo) {
+        JoinKeyBuckets key = get(id, geo);
+        if (key == null) {
+            key = new JoinKeyBuckets(buckets, maxKeyEvents);
+            if (id >= 0) {
+                byId[id] = key;
+            } else {
+                byName.put(geo, key);
+            }
+            keys++;
+        }
+        return key;
+    }
+
+    public int keys() {
+        return keys;
+    }
+
+    /**
+     * Releases the expired buckets and drops the keys left without events.
+     *
+     * @return the events still in the window
+     */
+    public long evictIdleKeys(long oldest) {
+        long events = 0;
+        for (int id = 0; id < byId.length; id++) {
+            if (byId[id] != null) {
+                long size = byId[id].size(oldest);
+                if (size == 0) {
+                    byId[id] = null;
+                    keys--;
+                }
+                events += size;
+            }
+        }
+        Iterator<JoinKeyBuckets> named = byName.values().iterator();
+        while (named.hasNext()) {
+            long size = named.next().size(oldest);
+            if (size == 0) {
+                named.remove();
+                keys--;
+            }
+            events += size;
+        }
+        return events;
+    }
+}
@@ -0,0 +1,101 @@
+package benchmark.common.latency;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency recorder backed by an HdrHistogram {@link Recorder}. Values are kept with
+ * {@value #SIGNIFICANT_DIGITS} significant digits up to {@code highestTrackableValue}, larger ones are clamped
+ * to it and negative ones, caused by clock skew between hosts, to 0. Recording is wait free and does not
+ * allocate, so any number of threads may record while one thread takes {@link #intervalSnapshot()}s. Every
+ * snapshot is also added to the running {@link #total()}, which can be merged with the totals of other workers.
+ */
+public class LatencyRecorder {
+
+    public static final int SIGNIFICANT_DIGITS = 3;
+    public static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    private final long highestTrackableValue;
+    private final Recorder recorder;
+    private final Histogram total;
+    private Histogram interval;
+
+    /**
+     * Tracks latencies in milliseconds up to one hour.
+     */
+    public LatencyRecorder() {
+        this(TimeUnit.HOURS.toMillis(1));
+    }
+
+    public LatencyRecorder(long highestTrackableValue) {
+        this.highestTrackableValue = highestTrackableValue;
+        this.recorder = new Recorder(1, highestTrackableValue, SIGNIFICANT_DIGITS);
+        this.total = new Histogram(1, highestTrackableValue, SIGNIFICANT_DIGITS);
+    }
+
+    public void recordValue(long value) {
+        recorder.recordValue(clamp(value));
+    }
+
+    /**
+     * Returns the values recorded since the previous snapshot and adds them to {@link #total()}. The returned
+     * histogram is reused by the next call.
+     */
+    public synchronized Histogram intervalSnapshot() {
+        interval = recorder.getIntervalHistogram(interval);
+        total.add(interval);
+        return interval;
+    }
+
+    /**
+     * All values up to the last {@link #intervalSnapshot()}.
+     */
+    public synchronized Histogram total() {
+        return total;
+    }
+
+    /**
+     * Adds the values of another worker to {@link #total()}.
+     */
+    public synchronized void merge(Histogram other) {
+        total.add(other);
+    }
+
+    public void merge(LatencyRecorder other) {
+        Histogram otherTotal;
+        synchronized (other) {
+            other.intervalSnapshot();
+            otherTotal = other.total.copy();
+        }
+        merge(otherTotal);
+    }
+
+    /**
+     * One line with count, mean, {@link #PERCENTILES} and max of a histogram.
+     */
+    public static String summary(Histogram histogram) {
+        StringBuilder line = new StringBuilder();
+        line.append("count ").append(histogram.getTotalCount());
+        line.append(String.format(" mean %.2f", histogram.getTotalCount() == 0 ? 0.0 : histogram.getMean()));
+        for (double percentile : PERCENTILES) {
+            line.append(" p").append(percentile % 1 == 0 ? String.valueOf((long) percentile) : String.valueOf(percentile));
+            line.append(' ').append(histogram.getValueAtPercentile(percentile));
+        }
+        line.append(" max ").append(histogram.getMaxValue());
+        return line.toString();
+    }
+
+    /**
+     * Writes the full percentile distribution of a histogram in HdrHistogram's text format, which its plotter reads.
+     */
+    public static void printDistribution(Histogram histogram, PrintStream out) {
+        histogram.outputPercentileDistribution(out, 1.0);
+    }
+
+    private long clamp(long value) {
+        return value < 0 ? 0 : Math.min(value, highestTrackableValue);
+    }
+}
@@ -0,0 +1,114 @@
+package benchmark.common.sink;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary latency log on local disk. Results are written as fixed records of three big-endian longs, latency, ts
+ * and start_ts, into memory mapped segment files {@code <name>-<segment>.lat} of {@code segmentBytes}; writing
+ * is a copy into the page cache, the kernel writes the pages back on its own. A full segment is left to the
+ * kernel and the next one mapped, the last one is cut to its records on {@link #close()}. A segment of a run that
+ * did not close its log ends with zeroed records, {@link #read(Path, Visitor)} stops at the first one.
+ */
+public class MappedLatencyLog implements ResultSink {
+
+    public static final String SUFFIX = ".lat";
+    public static final int RECORD_BYTES = 3 * Long.BYTES;
+
+    /**
+     * Receives the records of a log file.
+     */
+    public interface Visitor {
+        void record(long latencyMs, long ts, long startTs);
+    }
+
+    private final Path directory;
+    private final String name;
+    private final long segmentBytes;
+    private int segment = -1;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    /**
+     * @param segmentBytes size of a segment file, rounded down to whole records
+     */
+    public MappedLatencyLog(Path directory, String name, long segmentBytes) throws IOException {
+        this.directory = directory;
+        this.name = name;
+        this.segmentBytes = Math.max(segmentBytes / RECORD_BYTES, 1) * RECORD_BYTES;
+        Files.createDirectories(directory);
+        nextSegment();
+    }
+
+    @Override
+    public void write(long latencyMs, long ts, long startTs) throws IOException {
+        if (buffer.remaining() < RECORD_BYTES) {
+            nextSegment();
+        }
+        buffer.putLong(latencyMs);
+        buffer.putLong(ts);
+        buffer.putLong(startTs);
+    }
+
+    /**
+     * Nothing to do, the records are in the page cache as soon as they are written.
+     */
+    @Override
+    public void flush() {
+    }
+
+    private void nextSegment() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+        segment++;
+        Path file = directory.resolve(name + "-" + segment + SUFFIX);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+    }
+
+    @Override
+    public void close() throws IOException {
+        int written = buffer.position();
+        buffer = null;
+        channel.truncate(written);
+        channel.close();
+    }
+
+    /**
+     * Reads the records of one segment file.
+     */
+    public static void read(Path file, Visitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            while (records.remaining() >= RECORD_BYTES) {
+                long latency = records.getLong();
+                long ts = records.getLong();
+                long startTs = records.getLong();
+                if (latency == 0 && ts == 0 && startTs == 0) {
+                    return;
+                }
+                visitor.record(latency, ts, startTs);
+            }
+        }
+    }
+
+    public static boolean isLog(Path file) {
+        return file.getFileName().toString().endsWith(SUFFIX);
+    }
+
+    /**
+     * Prints the records of the given log files as {@code latency,ts,start_ts} lines.
+     */
+    public static void main(String[] args) throws IOException {
+        for (String file : args) {
+            read(Paths.get(file), (latency, ts, startTs) -> System.out.println(latency + "," + ts + "," + startTs));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package benchmark.common.sink;
+
+import benchmark.common.latency.LatencyRecorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps nothing but a {@link LatencyRecorder} of the result latencies, logged every {@code reportIntervalMs} and
+ * for the whole run when the sink is closed. Measures the engine without any storage in the path. Thread safe.
+ */
+public class NullResultSink implements ResultSink {
+    private static final Logger LOG = LoggerFactory.getLogger(NullResultSink.class);
+
+    private final String name;
+    private final long reportIntervalMs;
+    private final LatencyRecorder latencies = new LatencyRecorder();
+    private volatile long nextReport;
+
+    public NullResultSink(String name, long reportIntervalMs) {
+        this.name = name;
+        this.reportIntervalMs = reportIntervalMs;
+        this.nextReport = System.currentTimeMillis() + reportIntervalMs;
+    }
+
+    @Override
+    public void write(long latencyMs, long ts, long startTs) {
+        latencies.recordValue(latencyMs);
+        if (reportIntervalMs > 0 && System.currentTimeMillis() >= nextReport) {
+            report();
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    private synchronized void report() {
+        long now = System.currentTimeMillis();
+        if (now < nextReport) {
+            return;
+        }
+        nextReport = now + reportIntervalMs;
+        LOG.info("{} interval {}", name, LatencyRecorder.summary(latencies.intervalSnapshot()));
+    }
+
+    @Override
+    public synchronized void close() {
+        latencies.intervalSnapshot();
+        LOG.info("{} total {}", name, LatencyRecorder.summary(latencies.total()));
+    }
+}
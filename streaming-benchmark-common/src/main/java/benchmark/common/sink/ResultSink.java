@@ -0,0 +1,20 @@
+package benchmark.common.sink;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Destination of the benchmark results when they do not go to HDFS, see {@link ResultSinkFactory}. A sink only
+ * keeps what the latency analysis needs: the latency the engine measured for a result, its event timestamp and
+ * the time the generator sent the input it was computed from, its {@code send_ts}. The latency against the send
+ * time is {@code latencyMs + ts - startTs}. Sinks are not thread safe unless noted otherwise.
+ */
+public interface ResultSink extends Closeable {
+
+    void write(long latencyMs, long ts, long startTs) throws IOException;
+
+    /**
+     * Pushes buffered results out, engines call it when their input is idle.
+     */
+    void flush() throws IOException;
+}
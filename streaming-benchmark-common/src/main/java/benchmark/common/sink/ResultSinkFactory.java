@@ -0,0 +1,122 @@
+package benchmark.common.sink;
+
+import benchmark.common.CommonConfig;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Creates the {@link ResultSink} selected with {@code output.sink} on the workers, where {@link CommonConfig} is
+ * not initialized: the settings are read once on the client by {@link #fromConfig()} and shipped with the
+ * serialized operators.
+ * <ul>
+ *   <li>{@code file}: a {@link MappedLatencyLog} per sink in {@code output.file.dir}, segments of
+ *   {@code output.file.segment.mb}</li>
+ *   <li>{@code socket}: a {@link SocketResultSink} to {@code datasinksocket.host} and {@code datasinksocket.port}</li>
+ *   <li>{@code null}: a {@link NullResultSink}</li>
+ * </ul>
+ * {@code hdfs}, the default, is left to the engines' own HDFS writers.
+ */
+public class ResultSinkFactory implements Serializable {
+
+    private static final long SOCKET_FLUSH_INTERVAL_MS = 100;
+    private static final long NULL_REPORT_INTERVAL_MS = 10000;
+    private static final Map<String, ResultSink> SHARED = new HashMap<>();
+
+    private final String type;
+    private final String directory;
+    private final long segmentBytes;
+    private final String host;
+    private final int port;
+
+    public ResultSinkFactory(String type, String directory, long segmentBytes, String host, int port) {
+        this.type = type;
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.host = host;
+        this.port = port;
+    }
+
+    public static ResultSinkFactory fromConfig() {
+        return new ResultSinkFactory(CommonConfig.OUTPUT_SINK(), CommonConfig.OUTPUT_FILE_DIR(),
+                CommonConfig.OUTPUT_FILE_SEGMENT_MB() * 1024L * 1024L,
+                CommonConfig.DATASINK_HOST(), CommonConfig.DATASINK_PORT());
+    }
+
+    /**
+     * Whether the results go to a {@link ResultSink} rather than to HDFS.
+     */
+    public boolean isEnabled() {
+        return !CommonConfig.HDFS_SINK.equals(type);
+    }
+
+    /**
+     * @param name unique per sink instance, names the log files of the file sink
+     */
+    public ResultSink create(String name) throws IOException {
+        if (CommonConfig.FILE_SINK.equals(type)) {
+            return new MappedLatencyLog(Paths.get(directory), name, segmentBytes);
+        } else if (CommonConfig.SOCKET_SINK.equals(type)) {
+            return new SocketResultSink(host, port, SOCKET_FLUSH_INTERVAL_MS);
+        } else if (CommonConfig.NULL_SINK.equals(type)) {
+            return new NullResultSink(name, NULL_REPORT_INTERVAL_MS);
+        }
+        throw new IllegalArgumentException("Unsupported output.sink: " + type);
+    }
+
+    /**
+     * One thread safe sink per JVM and name, for engines that run short lived tasks on long lived executors.
+     * It is closed when the JVM exits.
+     */
+    public ResultSink shared(String name) throws IOException {
+        synchronized (SHARED) {
+            ResultSink sink = SHARED.get(name);
+            if (sink == null) {
+                sink = synchronize(create(name));
+                SHARED.put(name, sink);
+                ResultSink closing = sink;
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        closing.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }));
+            }
+            return sink;
+        }
+    }
+
+    /**
+     * Wraps {@code sink} so that it can be written and flushed from several threads.
+     */
+    public static ResultSink synchronize(ResultSink sink) {
+        return new SynchronizedSink(sink);
+    }
+
+    private static class SynchronizedSink implements ResultSink {
+        private final ResultSink sink;
+
+        SynchronizedSink(ResultSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public synchronized void write(long latencyMs, long ts, long startTs) throws IOException {
+            sink.write(latencyMs, ts, startTs);
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            sink.flush();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            sink.close();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package benchmark.common.sink;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Streams result latencies to the data generator's {@code SinkSocket}, one line per result with the latency
+ * against the event timestamp and the latency against the send time, {@code latency,send_latency}. Lines are
+ * formatted into a direct buffer without allocating and sent when it is full, when {@code flushIntervalMs}
+ * passed since the last send or on {@link #flush()}.
+ */
+public class SocketResultSink implements ResultSink {
+    private static final int BUFFER_BYTES = 64 * 1024;
+    // sign and 19 digits of each number, the separator and the newline of the longest line
+    private static final int MAX_LINE_BYTES = 42;
+
+    private final SocketChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private final byte[] digits = new byte[MAX_LINE_BYTES];
+    private final long flushIntervalMs;
+    private long lastFlush = System.currentTimeMillis();
+
+    public SocketResultSink(String host, int port, long flushIntervalMs) throws IOException {
+        this.channel = SocketChannel.open(new InetSocketAddress(host, port));
+        this.flushIntervalMs = flushIntervalMs;
+    }
+
+    @Override
+    public void write(long latencyMs, long ts, long startTs) throws IOException {
+        if (buffer.remaining() < MAX_LINE_BYTES) {
+            flush();
+        }
+        int i = digits.length;
+        digits[--i] = '\n';
+        i = putDigits(latencyMs + ts - startTs, i);
+        digits[--i] = ',';
+        i = putDigits(latencyMs, i);
+        buffer.put(digits, i, digits.length - i);
+        if (System.currentTimeMillis() - lastFlush >= flushIntervalMs) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the digits of {@code number} into {@link #digits}, right aligned before {@code end}.
+     *
+     * @return the index of the first character
+     */
+    private int putDigits(long number, int end) {
+        int i = end;
+        long value = Math.abs(number);
+        do {
+            digits[--i] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        if (number < 0) {
+            digits[--i] = '-';
+        }
+        return i;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        lastFlush = System.currentTimeMillis();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
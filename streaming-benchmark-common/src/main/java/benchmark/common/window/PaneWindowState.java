@@ -0,0 +1,181 @@
+package benchmark.common.window;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Processing time sliding window of per key price sums and counts, kept as partial aggregates per pane instead
+ * of raw tuples. A pane spans the greatest common divisor of window length and slide, the window is the last
+ * {@code length / pane} panes and is emitted every {@code slide / pane} panes. Keys are mapped to slots of
+ * primitive arrays; when a pane expires its partials are subtracted from the window totals in O(keys) and keys
+ * whose window count drops to zero are evicted and their slot reused. Memory depends on the number of keys and
+ * panes, not on the number of tuples in the window.
+ */
+public class PaneWindowState implements Serializable {
+
+    /**
+     * Receives the aggregate of every key with a non empty window when the window slides.
+     */
+    public interface Emitter {
+        /**
+         * @param ts      highest event timestamp seen for the key
+         * @param startTs highest send timestamp (start_ts) of the panes added since the previous slide
+         */
+        void emit(String key, long ts, double sum, long count, long startTs);
+    }
+
+    private static final int INITIAL_KEYS = 128;
+
+    private final long paneMs;
+    private final int panes;
+    private final int panesPerSlide;
+    private long current = -1;
+
+    private final HashMap<String, Integer> slots = new HashMap<>();
+    private String[] keys = new String[INITIAL_KEYS];
+    private int[] free = new int[INITIAL_KEYS];
+    private int freeCount = 0;
+    private int used = 0;
+
+    private double[][] paneSum;
+    private long[][] paneCount;
+    private final long[] paneStartTs;
+    private double[] windowSum = new double[INITIAL_KEYS];
+    private long[] windowCount = new long[INITIAL_KEYS];
+    private long[] latestTs = new long[INITIAL_KEYS];
+
+    public PaneWindowState(long lengthMs, long slideMs) {
+        this.paneMs = paneMs(lengthMs, slideMs);
+        this.panes = (int) (lengthMs / paneMs);
+        this.panesPerSlide = (int) (slideMs / paneMs);
+        this.paneSum = new double[panes][INITIAL_KEYS];
+        this.paneCount = new long[panes][INITIAL_KEYS];
+        this.paneStartTs = new long[panes];
+    }
+
+    /**
+     * Adds a partial aggregate to the current pane, the one of the time last passed to
+     * {@link #advance(long, Emitter)}.
+     *
+     * @throws IllegalStateException if {@link #advance(long, Emitter)} was never called
+     */
+    public void add(String key, double sum, long count, long ts, long startTs) {
+        if (current < 0) {
+            throw new IllegalStateException("advance(nowMs, emitter) must be called before add, to start the current pane");
+        }
+        Integer boxed = slots.get(key);
+        int slot = boxed != null ? boxed : allocate(key);
+        int pane = (int) (current % panes);
+        paneSum[pane][slot] += sum;
+        paneCount[pane][slot] += count;
+        paneStartTs[pane] = Math.max(paneStartTs[pane], startTs);
+        windowSum[slot] += sum;
+        windowCount[slot] += count;
+        latestTs[slot] = Math.max(latestTs[slot], ts);
+    }
+
+    /**
+     * Closes the panes that ended before {@code nowMs}, emitting the window at every slide boundary passed.
+     */
+    public void advance(long nowMs, Emitter emitter) {
+        long target = nowMs / paneMs;
+        if (current < 0) {
+            current = target;
+            return;
+        }
+        while (current < target) {
+            if (slots.isEmpty()) {
+                // nothing left to emit or expire, skip the idle panes at once
+                Arrays.fill(paneStartTs, 0);
+                current = target;
+                return;
+            }
+            current++;
+            if (current % panesPerSlide == 0) {
+                emitWindow(emitter);
+            }
+            expire((int) (current % panes));
+        }
+    }
+
+    /**
+     * Pane length for a window, the greatest common divisor of length and slide.
+     */
+    public static long paneMs(long lengthMs, long slideMs) {
+        return gcd(lengthMs, slideMs);
+    }
+
+    public int keyCount() {
+        return slots.size();
+    }
+
+    private void emitWindow(Emitter emitter) {
+        long startTs = 0;
+        for (int p = 1; p <= panesPerSlide && p <= panes; p++) {
+            startTs = Math.max(startTs, paneStartTs[(int) ((current - p) % panes)]);
+        }
+        for (int slot = 0; slot < used; slot++) {
+            if (keys[slot] != null && windowCount[slot] > 0) {
+                emitter.emit(keys[slot], latestTs[slot], windowSum[slot], windowCount[slot], startTs);
+            }
+        }
+    }
+
+    private void expire(int pane) {
+        double[] sums = paneSum[pane];
+        long[] counts = paneCount[pane];
+        for (int slot = 0; slot < used; slot++) {
+            if (counts[slot] != 0) {
+                windowSum[slot] -= sums[slot];
+                windowCount[slot] -= counts[slot];
+                sums[slot] = 0;
+                counts[slot] = 0;
+                if (windowCount[slot] <= 0) {
+                    evict(slot);
+                }
+            }
+        }
+        paneStartTs[pane] = 0;
+    }
+
+    private int allocate(String key) {
+        int slot;
+        if (freeCount > 0) {
+            slot = free[--freeCount];
+        } else {
+            if (used == keys.length) {
+                grow(keys.length * 2);
+            }
+            slot = used++;
+        }
+        keys[slot] = key;
+        slots.put(key, slot);
+        return slot;
+    }
+
+    private void evict(int slot) {
+        slots.remove(keys[slot]);
+        keys[slot] = null;
+        windowSum[slot] = 0;
+        windowCount[slot] = 0;
+        latestTs[slot] = 0;
+        free[freeCount++] = slot;
+    }
+
+    private void grow(int capacity) {
+        keys = Arrays.copyOf(keys, capacity);
+        free = Arrays.copyOf(free, capacity);
+        windowSum = Arrays.copyOf(windowSum, capacity);
+        windowCount = Arrays.copyOf(windowCount, capacity);
+        latestTs = Arrays.copyOf(latestTs, capacity);
+        for (int p = 0; p < panes; p++) {
+            paneSum[p] = Arrays.copyOf(paneSum[p], capacity);
+            paneCount[p] = Arrays.copyOf(paneCount[p], capacity);
+        }
+    }
+
+    private static long gcd(long a, long b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+}
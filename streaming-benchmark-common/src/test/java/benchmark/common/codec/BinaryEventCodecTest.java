@@ -0,0 +1,79 @@
+package benchmark.common.codec;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BinaryEventCodecTest {
+
+    @Test
+    public void recordsAreFixedWidthAndBigEndian() {
+        ByteBuffer out = ByteBuffer.allocate(2 * BinaryEventCodec.RECORD_BYTES);
+        BinaryEventCodec.encode(out, 3, 12.5f, 1478000000123L, 1478000000150L);
+        assertEquals(BinaryEventCodec.RECORD_BYTES, out.position());
+        assertEquals(3, out.getInt(0));
+        BinaryEventCodec.encode(out, GeoKeys.size() - 1, -1.0f, -7L, -6L);
+
+        assertEquals(3, BinaryEventCodec.key(out, 0));
+        assertEquals(12.5f, BinaryEventCodec.value(out, 0), 0.0f);
+        assertEquals(1478000000123L, BinaryEventCodec.ts(out, 0));
+        assertEquals(1478000000150L, BinaryEventCodec.sendTs(out, 0));
+        int second = BinaryEventCodec.RECORD_BYTES;
+        assertEquals(GeoKeys.size() - 1, BinaryEventCodec.key(out, second));
+        assertEquals(-1.0f, BinaryEventCodec.value(out, second), 0.0f);
+        assertEquals(-7L, BinaryEventCodec.ts(out, second));
+        assertEquals(-6L, BinaryEventCodec.sendTs(out, second));
+    }
+
+    @Test
+    public void readerDecodesUnframedStream() throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(3 * BinaryEventCodec.RECORD_BYTES);
+        for (int i = 0; i < 3; i++) {
+            BinaryEventCodec.encode(out, i, i + 0.5f, 100L + i, 200L + i);
+        }
+        BinaryEventReader reader = new BinaryEventReader(new ByteArrayInputStream(out.array()), 0);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(reader.next());
+            assertEquals(GeoKeys.name(i), reader.geo());
+            assertEquals(i + 0.5f, reader.value(), 0.0f);
+            assertEquals(100L + i, reader.ts());
+            assertEquals(200L + i, reader.sendTs());
+        }
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void readerSkipsFrameHeadersIncludingEmptyFrames() throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(4 * BinaryEventCodec.FRAME_HEADER_BYTES + 3 * BinaryEventCodec.RECORD_BYTES);
+        out.putInt(2);
+        BinaryEventCodec.encode(out, 1, 1.0f, 1L, 1L);
+        BinaryEventCodec.encode(out, 2, 2.0f, 2L, 2L);
+        out.putInt(0);
+        out.putInt(1);
+        BinaryEventCodec.encode(out, 3, 3.0f, 3L, 3L);
+        BinaryEventReader reader = new BinaryEventReader(new ByteArrayInputStream(out.array(), 0, out.position()), 2);
+        for (int i = 1; i <= 3; i++) {
+            assertTrue(reader.next());
+            assertEquals(i, reader.key());
+            assertEquals(i, reader.ts());
+        }
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void readerStopsAtTruncatedRecord() throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(2 * BinaryEventCodec.RECORD_BYTES);
+        BinaryEventCodec.encode(out, 1, 1.0f, 1L, 1L);
+        BinaryEventCodec.encode(out, 2, 2.0f, 2L, 2L);
+        BinaryEventReader reader = new BinaryEventReader(
+                new ByteArrayInputStream(out.array(), 0, out.position() - 1), 0);
+        assertTrue(reader.next());
+        assertFalse(reader.next());
+    }
+}
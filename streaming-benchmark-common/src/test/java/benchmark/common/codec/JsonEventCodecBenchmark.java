@@ -0,0 +1,91 @@
+package benchmark.common.codec;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link JsonEventCodec} with the per tuple {@code new JSONObject(s)} the engines used before.
+ * Run {@link #main} from the module's test classpath, or {@code org.openjdk.jmh.Main JsonEventCodecBenchmark -prof gc}
+ * to also see the bytes allocated per parsed event.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonEventCodecBenchmark {
+
+    private static final int EVENTS = 1024;
+
+    private String[] lines = new String[EVENTS];
+    private byte[][] bytes = new byte[EVENTS][];
+    private JsonEventCodec codec = new JsonEventCodec();
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        Random rand = new Random(93285L);
+        for (int i = 0; i < EVENTS; i++) {
+            // same layout as data.source.model.Event#toJson
+            lines[i] = "{ \"key\":\"" + GeoKeys.name(i % GeoKeys.size()) + "\",\"value\":\""
+                    + Float.toString(rand.nextFloat() * 95.0f + 5.0f) + "\"" + ",\"ts\": \"" + (1478000000000L + i) + "\"}";
+            bytes[i] = lines[i].getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (EVENTS - 1);
+        return next;
+    }
+
+    @Benchmark
+    public void orgJson(Blackhole bh) {
+        JSONObject obj = new JSONObject(lines[nextIndex()]);
+        bh.consume(obj.getString("key"));
+        bh.consume(obj.getDouble("value"));
+        bh.consume(obj.getLong("ts"));
+    }
+
+    @Benchmark
+    public void codecFromString(Blackhole bh) {
+        JsonEventCodec obj = codec.parse(lines[nextIndex()]);
+        bh.consume(obj.geo());
+        bh.consume(obj.value());
+        bh.consume(obj.ts());
+    }
+
+    @Benchmark
+    public void codecFromBytes(Blackhole bh) {
+        byte[] line = bytes[nextIndex()];
+        JsonEventCodec obj = codec.parse(line, 0, line.length);
+        bh.consume(obj.geo());
+        bh.consume(obj.value());
+        bh.consume(obj.ts());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(JsonEventCodecBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,106 @@
+package benchmark.common.codec;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class JsonEventCodecTest {
+
+    private final JsonEventCodec codec = new JsonEventCodec();
+
+    @Test
+    public void parsesGeneratorLayout() {
+        codec.parse("{ \"key\":\"AF\",\"value\":\"50.8758\",\"ts\": \"1792182854973\"}");
+        assertEquals(GeoKeys.id("AF"), codec.key());
+        assertSame(GeoKeys.name(GeoKeys.id("AF")), codec.geo());
+        assertEquals(50.8758, codec.value(), 1e-9);
+        assertEquals(1792182854973L, codec.ts());
+        // no send_ts: the event was sent at its timestamp
+        assertEquals(1792182854973L, codec.sendTs());
+    }
+
+    @Test
+    public void parsesSendTimestamp() {
+        codec.parse("{ \"key\":\"AF\",\"value\":\"1\",\"ts\": \"100\",\"send_ts\": \"140\"}");
+        assertEquals(100L, codec.ts());
+        assertEquals(140L, codec.sendTs());
+        codec.parse("{\"key\":\"AF\",\"value\":\"1\",\"ts\":\"7\"}");
+        assertEquals(7L, codec.sendTs());
+    }
+
+    @Test
+    public void acceptsUnquotedNumbersWhitespaceAndAnyFieldOrder() {
+        codec.parse("{\"ts\" : 42 , \"value\" : -3.5e2, \"key\" : \"GB\" }");
+        assertSame(GeoKeys.name(GeoKeys.id("GB")), codec.geo());
+        assertEquals(-350.0, codec.value(), 1e-9);
+        assertEquals(42L, codec.ts());
+    }
+
+    @Test
+    public void skipsUnknownFieldsWithSeparatorsInStrings() {
+        codec.parse("{\"note\":\"a,b}c\",\"key\":\"DE\",\"extra\":[1,2],\"value\":\"1.5\",\"ts\":\"7\"}");
+        assertSame(GeoKeys.name(GeoKeys.id("DE")), codec.geo());
+        assertEquals(1.5, codec.value(), 1e-9);
+        assertEquals(7L, codec.ts());
+    }
+
+    @Test
+    public void keepsKeysOutsideTheDictionary() {
+        codec.parse("{\"key\":\"ZZ\",\"value\":\"1\",\"ts\":\"1\"}");
+        assertEquals(-1, codec.key());
+        assertEquals("ZZ", codec.geo());
+        codec.parse("{\"key\":\"region-7\",\"value\":\"1\",\"ts\":\"1\"}");
+        assertEquals(-1, codec.key());
+        assertEquals("region-7", codec.geo());
+    }
+
+    @Test
+    public void parsesByteRangeOnly() {
+        byte[] bytes = "xx{\"key\":\"FR\",\"value\":\"2.25\",\"ts\":\"99\"}{\"key\":\"GB\"}".getBytes(StandardCharsets.US_ASCII);
+        codec.parse(bytes, 2, bytes.length - 2 - "{\"key\":\"GB\"}".length());
+        assertSame(GeoKeys.name(GeoKeys.id("FR")), codec.geo());
+        assertEquals(2.25, codec.value(), 1e-9);
+        assertEquals(99L, codec.ts());
+    }
+
+    @Test
+    public void resetsFieldsMissingFromTheNextEvent() {
+        codec.parse("{\"key\":\"AF\",\"value\":\"3\",\"ts\":\"5\"}");
+        codec.parse("{\"key\":\"AF\"}");
+        assertEquals(0.0, codec.value(), 0.0);
+        assertEquals(0L, codec.ts());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEventWithoutKey() {
+        codec.parse("{\"value\":\"3\",\"ts\":\"5\"}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTruncatedLine() {
+        codec.parse("{ \"ke");
+    }
+
+    @Test
+    public void encodedEventsParseBack() {
+        ByteBuffer out = ByteBuffer.allocate(128);
+        JsonEventCodec.encode(out, GeoKeys.id("AX"), 5.00004f, 1478000000123L, 1478000000456L);
+        codec.parse(out.array(), 0, out.position());
+        assertSame(GeoKeys.name(GeoKeys.id("AX")), codec.geo());
+        // four decimals, rounded
+        assertEquals(5.0, codec.value(), 1e-9);
+        assertEquals(1478000000123L, codec.ts());
+        assertEquals(1478000000456L, codec.sendTs());
+
+        out.clear();
+        JsonEventCodec.encode(out, 0, -0.5f, -1L, -2L);
+        codec.parse(out.array(), 0, out.position());
+        assertEquals(-0.5, codec.value(), 1e-9);
+        assertEquals(-1L, codec.ts());
+        assertEquals(-2L, codec.sendTs());
+    }
+}
@@ -0,0 +1,162 @@
+package benchmark.common.join;
+
+import benchmark.common.codec.GeoKeys;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class JoinKeyBucketsTest {
+
+    /**
+     * (ts, start_ts) of the pairs emitted by the last probe.
+     */
+    private final List<long[]> pairs = new ArrayList<>();
+
+    private final JoinKeyBuckets.Pairs out = new JoinKeyBuckets.Pairs() {
+        public void emit(long ts, long startTs) {
+            pairs.add(new long[]{ts, startTs});
+        }
+    };
+
+    @Before
+    public void clear() {
+        pairs.clear();
+    }
+
+    private int probe(JoinKeyBuckets key, long oldest, long ts, long startTs, int filterFactor) {
+        clear();
+        return key.probe(oldest, ts, startTs, filterFactor, out);
+    }
+
+    @Test
+    public void probeEmitsTheNewerEventOfEveryPair() {
+        JoinKeyBuckets key = new JoinKeyBuckets(3, 0);
+        key.add(0, 10, 100);
+        key.add(0, 30, 300);
+        assertEquals(2, probe(key, 0, 20, 200, 1));
+        assertEquals(20, pairs.get(0)[0]);
+        assertEquals(200, pairs.get(0)[1]);
+        assertEquals(30, pairs.get(1)[0]);
+        assertEquals(300, pairs.get(1)[1]);
+    }
+
+    @Test
+    public void probeFiltersOnTheStartTsOfThePair() {
+        JoinKeyBuckets key = new JoinKeyBuckets(3, 0);
+        key.add(0, 10, 3);
+        key.add(0, 11, 4);
+        // the probing event is newer, its start_ts decides
+        assertEquals(0, probe(key, 0, 20, 5, 2));
+        assertEquals(2, probe(key, 0, 20, 6, 2));
+        // the kept events are newer, theirs decide
+        assertEquals(1, probe(key, 0, 1, 5, 2));
+        assertEquals(4, pairs.get(0)[1]);
+    }
+
+    @Test
+    public void probeSkipsBucketsOlderThanTheWindow() {
+        JoinKeyBuckets key = new JoinKeyBuckets(3, 0);
+        key.add(0, 1, 1);
+        key.add(1, 2, 2);
+        key.add(2, 3, 3);
+        assertEquals(3, probe(key, 0, 10, 10, 1));
+        assertEquals(2, probe(key, 1, 10, 10, 1));
+        assertEquals(1, probe(key, 2, 10, 10, 1));
+    }
+
+    @Test
+    public void slotOfAnExpiredBucketIsReused() {
+        JoinKeyBuckets key = new JoinKeyBuckets(2, 0);
+        key.add(0, 1, 1);
+        key.add(0, 2, 2);
+        key.add(1, 3, 3);
+        assertEquals(3, key.size(0));
+        // bucket 2 takes the slot of bucket 0
+        key.add(2, 4, 4);
+        assertEquals(2, key.size(0));
+        assertEquals(2, probe(key, 0, 10, 10, 1));
+    }
+
+    @Test
+    public void bucketsGrowBeyondTheirInitialArrays() {
+        JoinKeyBuckets key = new JoinKeyBuckets(2, 0);
+        for (int i = 0; i < 100; i++) {
+            key.add(5, i, i);
+        }
+        assertEquals(100, key.size(5));
+        assertEquals(100, probe(key, 5, 1000, 1000, 1));
+    }
+
+    @Test
+    public void sizeReleasesExpiredBuckets() {
+        JoinKeyBuckets key = new JoinKeyBuckets(3, 0);
+        key.add(0, 1, 1);
+        key.add(1, 2, 2);
+        key.add(1, 3, 3);
+        assertEquals(3, key.size(0));
+        assertEquals(2, key.size(1));
+        assertEquals(0, key.size(2));
+        assertEquals(0, probe(key, 0, 10, 10, 1));
+    }
+
+    @Test
+    public void limitDropsTheOldestOtherBucket() {
+        JoinKeyBuckets key = new JoinKeyBuckets(4, 3);
+        key.add(0, 1, 1);
+        key.add(1, 2, 2);
+        key.add(2, 3, 3);
+        assertEquals(1, key.add(2, 4, 4));
+        assertEquals(3, key.size(0));
+        assertEquals(3, probe(key, 0, 10, 10, 1));
+        for (long[] pair : pairs) {
+            assertEquals(10, pair[0]);
+        }
+        // bucket 1 goes next
+        assertEquals(1, key.add(3, 5, 5));
+        assertEquals(3, key.size(0));
+    }
+
+    @Test
+    public void limitClearsTheCurrentBucketWhenItIsTheOnlyOne() {
+        JoinKeyBuckets key = new JoinKeyBuckets(2, 2);
+        key.add(0, 1, 1);
+        key.add(0, 2, 2);
+        assertEquals(2, key.add(0, 3, 3));
+        assertEquals(1, key.size(0));
+        assertEquals(1, probe(key, 0, 0, 0, 1));
+        assertEquals(3, pairs.get(0)[0]);
+    }
+
+    @Test
+    public void sideKeepsDictionaryAndOtherKeysApart() {
+        JoinSide side = new JoinSide(2, 0);
+        int id = GeoKeys.id("AF");
+        JoinKeyBuckets af = side.getOrCreate(id, "AF");
+        assertSame(af, side.get(id, "AF"));
+        JoinKeyBuckets other = side.getOrCreate(-1, "not a geo");
+        assertSame(other, side.get(-1, "not a geo"));
+        assertNull(side.get(-1, "AF"));
+        assertEquals(2, side.keys());
+    }
+
+    @Test
+    public void sideEvictsKeysWithoutEventsInTheWindow() {
+        JoinSide side = new JoinSide(2, 0);
+        side.getOrCreate(GeoKeys.id("AF"), "AF").add(0, 1, 1);
+        side.getOrCreate(GeoKeys.id("GB"), "GB").add(1, 2, 2);
+        side.getOrCreate(-1, "x").add(0, 3, 3);
+        assertEquals(3, side.evictIdleKeys(0));
+        assertEquals(1, side.evictIdleKeys(1));
+        assertEquals(1, side.keys());
+        assertNull(side.get(GeoKeys.id("AF"), "AF"));
+        assertNull(side.get(-1, "x"));
+        assertEquals(0, side.evictIdleKeys(2));
+        assertEquals(0, side.keys());
+    }
+}
@@ -0,0 +1,167 @@
+package benchmark.common.window;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PaneWindowStateTest {
+
+    /**
+     * (ts, count, startTs) of every key emitted by the last advance, its sum is in {@link #sums}.
+     */
+    private final Map<String, long[]> emitted = new HashMap<>();
+    private final Map<String, Double> sums = new HashMap<>();
+    private int slides;
+
+    private final PaneWindowState.Emitter emitter = new PaneWindowState.Emitter() {
+        public void emit(String key, long ts, double sum, long count, long startTs) {
+            emitted.put(key, new long[]{ts, count, startTs});
+            sums.put(key, sum);
+        }
+    };
+
+    @Before
+    public void clear() {
+        emitted.clear();
+        sums.clear();
+    }
+
+    private void advance(PaneWindowState window, long nowMs) {
+        clear();
+        window.advance(nowMs, emitter);
+    }
+
+    @Test
+    public void paneIsGcdOfLengthAndSlide() {
+        assertEquals(2000, PaneWindowState.paneMs(10000, 4000));
+        assertEquals(1000, PaneWindowState.paneMs(3000, 1000));
+        assertEquals(5000, PaneWindowState.paneMs(5000, 5000));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void addBeforeTheFirstAdvanceIsRejected() {
+        new PaneWindowState(3000, 1000).add("AF", 1.0, 1, 1, 1);
+    }
+
+    @Test
+    public void windowCoversTheLastPanesAndExpiresTheOldest() {
+        PaneWindowState window = new PaneWindowState(3000, 1000);
+        advance(window, 0);
+        window.add("AF", 2.0, 1, 10, 100);
+        advance(window, 999);
+        assertTrue(emitted.isEmpty());
+
+        advance(window, 1000);
+        assertEquals(2.0, sums.get("AF"), 0.0);
+        assertEquals(1, emitted.get("AF")[1]);
+        window.add("AF", 4.0, 1, 20, 200);
+
+        advance(window, 2000);
+        assertEquals(6.0, sums.get("AF"), 0.0);
+        assertEquals(2, emitted.get("AF")[1]);
+        assertEquals(20, emitted.get("AF")[0]);
+
+        // the window still spans panes 0 to 2
+        advance(window, 3000);
+        assertEquals(6.0, sums.get("AF"), 0.0);
+
+        // pane 0 expired
+        advance(window, 4000);
+        assertEquals(4.0, sums.get("AF"), 0.0);
+        assertEquals(1, emitted.get("AF")[1]);
+
+        // pane 1 expired, the key is evicted
+        advance(window, 5000);
+        assertTrue(emitted.isEmpty());
+        assertEquals(0, window.keyCount());
+    }
+
+    @Test
+    public void emitsOnlyAtSlideBoundaries() {
+        PaneWindowState window = new PaneWindowState(3000, 2000);
+        advance(window, 0);
+        window.add("GB", 1.0, 1, 1, 1);
+        advance(window, 1000);
+        assertTrue(emitted.isEmpty());
+        advance(window, 2000);
+        assertEquals(1, emitted.get("GB")[1]);
+        advance(window, 3000);
+        assertTrue(emitted.isEmpty());
+    }
+
+    @Test
+    public void passingSeveralPanesAtOnceEmitsEverySlide() {
+        PaneWindowState window = new PaneWindowState(2000, 1000);
+        advance(window, 0);
+        window.add("DE", 3.0, 3, 5, 5);
+        slides = 0;
+        window.advance(10000, new PaneWindowState.Emitter() {
+            public void emit(String key, long ts, double sum, long count, long startTs) {
+                slides++;
+                assertEquals(3, count);
+            }
+        });
+        // the pane is in the windows ending at 1000 and 2000, then expires
+        assertEquals(2, slides);
+        assertEquals(0, window.keyCount());
+    }
+
+    @Test
+    public void startTsIsTheHighestOfThePanesSinceTheLastSlide() {
+        PaneWindowState window = new PaneWindowState(3000, 2000);
+        advance(window, 0);
+        window.add("AF", 1.0, 1, 1, 300);
+        advance(window, 1000);
+        window.add("AF", 1.0, 1, 2, 200);
+        advance(window, 2000);
+        assertEquals(300, emitted.get("AF")[2]);
+        window.add("AF", 1.0, 1, 3, 150);
+        advance(window, 4000);
+        // only the panes added since the previous slide count, the one holding 300 has expired
+        assertEquals(150, emitted.get("AF")[2]);
+        assertEquals(3, emitted.get("AF")[0]);
+        assertEquals(2, emitted.get("AF")[1]);
+    }
+
+    @Test
+    public void evictedSlotsAreReusedAndArraysGrow() {
+        PaneWindowState window = new PaneWindowState(1000, 1000);
+        advance(window, 0);
+        for (int i = 0; i < 300; i++) {
+            window.add("k" + i, i, 1, i, i);
+        }
+        assertEquals(300, window.keyCount());
+        advance(window, 1000);
+        assertEquals(300, emitted.size());
+        assertEquals(299.0, sums.get("k299"), 0.0);
+        assertEquals(0, window.keyCount());
+
+        window.add("other", 1.0, 1, 1, 1);
+        window.add("k0", 2.0, 2, 1, 1);
+        advance(window, 2000);
+        assertEquals(2, emitted.size());
+        assertEquals(2, emitted.get("k0")[1]);
+        assertNull(emitted.get("k1"));
+    }
+
+    @Test
+    public void idlePanesAreSkipped() {
+        PaneWindowState window = new PaneWindowState(3000, 1000);
+        advance(window, 0);
+        window.add("AF", 1.0, 1, 1, 1);
+        advance(window, 3000);
+        assertEquals(0, window.keyCount());
+        advance(window, 1000000);
+        assertTrue(emitted.isEmpty());
+        window.add("GB", 5.0, 1, 1000000, 1000000);
+        advance(window, 1001000);
+        assertEquals(5.0, sums.get("GB"), 0.0);
+        assertNull(sums.get("AF"));
+    }
+}